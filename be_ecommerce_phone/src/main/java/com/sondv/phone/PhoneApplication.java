@@ -5,13 +5,13 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.context.annotation.ComponentScan;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @EnableCaching
 @SpringBootApplication(exclude = {RedisRepositoriesAutoConfiguration.class})
-@ComponentScan(basePackages = "com.sondv.phone")
 @EnableAsync
+@EnableScheduling
 public class PhoneApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,90 @@
+package com.sondv.phone.config;
+
+import com.sondv.phone.service.CatalogVersionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// GET có điều kiện cho các endpoint danh mục sản phẩm: ETag lấy từ bộ đếm phiên bản trong bộ nhớ,
+// If-None-Match khớp thì trả 304 ngay tại đây, không gọi controller/service/cơ sở dữ liệu.
+@Component
+@RequiredArgsConstructor
+public class CatalogETagInterceptor implements HandlerInterceptor {
+
+    private static final Pattern PRODUCT_PATH = Pattern.compile("^/api/products/(\\d{1,18})$");
+    private static final Pattern RELATED_PATH = Pattern.compile("^/api/products/\\d+/related$");
+
+    private final CatalogVersionService catalogVersionService;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        String eTag = resolveETag(request.getRequestURI().substring(request.getContextPath().length()));
+        if (eTag == null) {
+            return true;
+        }
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        // Cho phép lưu nhưng luôn hỏi lại máy chủ; đặt sẵn để Spring Security không ghi đè bằng no-store
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, no-cache");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return false;
+        }
+        return true;
+    }
+
+    private String resolveETag(String path) {
+        switch (path) {
+            case "/api/products", "/api/products/filtered", "/api/products/search" -> {
+                return catalogVersionService.listETag(CatalogVersionService.CATALOG);
+            }
+            case "/api/products/featured" -> {
+                return catalogVersionService.listETag(CatalogVersionService.FEATURED);
+            }
+            case "/api/products/newest" -> {
+                return catalogVersionService.listETag(CatalogVersionService.NEWEST);
+            }
+            case "/api/products/bestselling" -> {
+                return catalogVersionService.listETag(CatalogVersionService.BESTSELLING);
+            }
+            case "/api/categories" -> {
+                return catalogVersionService.listETag(CatalogVersionService.CATEGORIES);
+            }
+            default -> {
+            }
+        }
+        if (RELATED_PATH.matcher(path).matches()) {
+            return catalogVersionService.listETag(CatalogVersionService.RELATED);
+        }
+        Matcher product = PRODUCT_PATH.matcher(path);
+        if (product.matches()) {
+            return catalogVersionService.productETag(Long.parseLong(product.group(1)));
+        }
+        return null;
+    }
+
+    // If-None-Match dùng so sánh yếu: bỏ tiền tố W/ và chấp nhận danh sách nhiều ETag hoặc "*"
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
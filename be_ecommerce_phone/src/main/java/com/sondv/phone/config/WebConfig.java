@@ -9,7 +9,8 @@ import org.springframework.web.servlet.config.annotation.*;
 public class WebConfig {
 
     @Bean
-    public WebMvcConfigurer corsConfigurer(@Value("${frontend.url:http://localhost:3000}") String frontendUrl) {
+    public WebMvcConfigurer corsConfigurer(@Value("${frontend.url:http://localhost:3000}") String frontendUrl,
+                                           CatalogETagInterceptor catalogETagInterceptor) {
 
         return new WebMvcConfigurer() {
             @Override
@@ -21,6 +22,12 @@ public class WebConfig {
                         .exposedHeaders("*")
                         .allowCredentials(true);
             }
+
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(catalogETagInterceptor)
+                        .addPathPatterns("/api/products", "/api/products/**", "/api/categories");
+            }
         };
     }
 }
@@ -6,6 +6,7 @@ import com.sondv.phone.entity.Order;
 import com.sondv.phone.entity.Product;
 import com.sondv.phone.entity.User;
 import com.sondv.phone.service.AdminService;
+import com.sondv.phone.service.BestSellerLeaderboard;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -43,8 +44,9 @@ public class AdminController {
     }
 
     @GetMapping("/top-products")
-    public ResponseEntity<List<Product>> getTopSellingProducts(@RequestParam(defaultValue = "5") int limit) {
-        return ResponseEntity.ok(adminService.getTopSellingProducts(limit));
+    public ResponseEntity<List<Product>> getTopSellingProducts(@RequestParam(defaultValue = "5") int limit,
+                                                               @RequestParam(defaultValue = "all") String window) {
+        return ResponseEntity.ok(adminService.getTopSellingProducts(BestSellerLeaderboard.Window.fromParam(window), limit));
     }
 
     @GetMapping("/recent-users")
@@ -1,9 +1,11 @@
 package com.sondv.phone.controller;
 
-import com.sondv.phone.dto.CategoryDTO;
 import com.sondv.phone.entity.Category;
 import com.sondv.phone.entity.Product;
+import com.sondv.phone.service.CatalogResponseCache;
+import com.sondv.phone.service.CatalogVersionService;
 import com.sondv.phone.service.CategoryService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -17,11 +19,12 @@ import java.util.List;
 public class CategoryController {
 
     private final CategoryService categoryService;
+    private final CatalogResponseCache catalogResponseCache;
 
     // ✅ API lấy danh sách danh mục (Public)
     @GetMapping("/api/categories")
-    public ResponseEntity<List<CategoryDTO>> getAllCategories() {
-        return ResponseEntity.ok(categoryService.getAllCategories());
+    public ResponseEntity<byte[]> getAllCategories(HttpServletRequest request) {
+        return catalogResponseCache.respond(CatalogVersionService.CATEGORIES, "", request, categoryService::getAllCategories);
     }
 
     // API lấy sản phẩm theo danh mục (Public)
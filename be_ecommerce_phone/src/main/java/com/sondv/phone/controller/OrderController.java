@@ -3,6 +3,7 @@ package com.sondv.phone.controller;
 import com.sondv.phone.dto.*;
 import com.sondv.phone.entity.*;
 import com.sondv.phone.repository.*;
+import com.sondv.phone.service.IdempotencyService;
 import com.sondv.phone.service.InventoryService;
 import com.sondv.phone.service.OrderService;
 import com.sondv.phone.service.ShippingService;
@@ -34,14 +35,22 @@ public class OrderController {
     private final OrderService orderService;
     private final InventoryService inventoryService;
     private final ShippingService shippingService;
+    private final IdempotencyService idempotencyService;
 
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
 
     @PostMapping
     @PreAuthorize("hasRole('CUSTOMER')")
-    public ResponseEntity<Order> createOrder(@RequestBody OrderRequest orderRequest, Authentication authentication) {
+    public ResponseEntity<?> createOrder(@RequestBody OrderRequest orderRequest,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
         User user = (User) authentication.getPrincipal();
+        // Gửi lại sau timeout với cùng khóa nhận lại đơn đã tạo, không trừ kho lần hai
+        return idempotencyService.execute("order", user.getId(), idempotencyKey, orderRequest,
+                () -> createOrder(orderRequest, user));
+    }
 
+    private ResponseEntity<Order> createOrder(OrderRequest orderRequest, User user) {
         // Cập nhật address và phone nếu chưa có (phù hợp với OAuth2)
         boolean updated = false;
         if (user.getAddress() == null || user.getAddress().isBlank()) {
@@ -3,6 +3,7 @@ package com.sondv.phone.controller;
 import com.sondv.phone.dto.PaymentRequest;
 import com.sondv.phone.dto.PaymentUpdateRequest;
 import com.sondv.phone.entity.*;
+import com.sondv.phone.service.IdempotencyService;
 import com.sondv.phone.service.MomoService;
 import com.sondv.phone.service.NotificationService;
 import com.sondv.phone.service.PaymentService;
@@ -25,19 +26,27 @@ public class PaymentController {
     private final VNPayService vnPayService;
     private final MomoService momoService;
     private final NotificationService notificationService;
+    private final IdempotencyService idempotencyService;
 
     @PreAuthorize("hasAuthority('CUSTOMER')")
     @PostMapping
-    public ResponseEntity<Map<String, String>> createPayment(@RequestBody PaymentRequest paymentRequest,
+    public ResponseEntity<?> createPayment(@RequestBody PaymentRequest paymentRequest,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
-        try {
-            if (authentication == null || !authentication.isAuthenticated()) {
-                Map<String, String> errorResponse = new HashMap<>();
-                errorResponse.put("message", "Chưa đăng nhập!");
-                return ResponseEntity.status(401).body(errorResponse);
-            }
+        if (authentication == null || !authentication.isAuthenticated()) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("message", "Chưa đăng nhập!");
+            return ResponseEntity.status(401).body(errorResponse);
+        }
 
-            User user = (User) authentication.getPrincipal();
+        User user = (User) authentication.getPrincipal();
+        // Client gửi lại sau timeout với cùng khóa nhận lại paymentUrl cũ thay vì tạo thêm Payment
+        return idempotencyService.execute("payment", user.getId(), idempotencyKey, paymentRequest,
+                () -> createPayment(paymentRequest, user));
+    }
+
+    private ResponseEntity<Map<String, String>> createPayment(PaymentRequest paymentRequest, User user) {
+        try {
             Order order = paymentService.getOrderById(paymentRequest.getOrderId());
 
             if (!order.getCustomer().getUser().getId().equals(user.getId())) {
@@ -1,9 +1,20 @@
 package com.sondv.phone.controller;
 
+import com.sondv.phone.dto.CursorPageResponse;
 import com.sondv.phone.dto.ProductDTO;
 import com.sondv.phone.dto.ProductImageDTO;
+import com.sondv.phone.dto.ProductSearchCriteria;
+import com.sondv.phone.dto.ProductSearchResponse;
+import com.sondv.phone.dto.ProductSuggestionDTO;
+import com.sondv.phone.dto.ProductSummaryDTO;
 import com.sondv.phone.entity.*;
+import com.sondv.phone.service.BestSellerLeaderboard;
+import com.sondv.phone.service.CatalogResponseCache;
+import com.sondv.phone.service.CatalogVersionService;
+import com.sondv.phone.service.ProductBulkService;
 import com.sondv.phone.service.ProductService;
+import com.sondv.phone.service.ProductSuggestIndex;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -11,13 +22,18 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -30,15 +46,26 @@ import java.util.stream.Collectors;
 public class ProductController {
 
     private final ProductService productService;
+    private final CatalogResponseCache catalogResponseCache;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final ProductBulkService productBulkService;
     private static final Logger logger = LoggerFactory.getLogger(ProductController.class);
 
     @GetMapping
-    public ResponseEntity<Page<ProductDTO>> getAllProducts(
+    public ResponseEntity<?> getAllProducts(
             @RequestParam(required = false, defaultValue = "") String searchKeyword,
+            @RequestParam(required = false) String cursor,
             Pageable pageable) {
         try {
-            Page<ProductDTO> products = productService.getAllProducts(searchKeyword, pageable);
+            // Có tham số cursor (kể cả rỗng cho trang đầu) thì phân trang keyset thay vì offset
+            if (cursor != null) {
+                CursorPageResponse<ProductSummaryDTO> products = productService.getAllProductsAfter(searchKeyword, cursor, pageable.getPageSize());
+                return ResponseEntity.ok(products);
+            }
+            Page<ProductSummaryDTO> products = productService.getAllProducts(searchKeyword, pageable);
             return ResponseEntity.ok(products);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error fetching all product's", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -47,13 +74,13 @@ public class ProductController {
     }
 
     @GetMapping("/featured")
-    public ResponseEntity<List<ProductDTO>> getFeaturedProducts(@RequestParam(defaultValue = "5") int limit) {
+    public ResponseEntity<?> getFeaturedProducts(@RequestParam(defaultValue = "5") int limit, HttpServletRequest request) {
         try {
             if (limit <= 0) {
                 return ResponseEntity.badRequest().body(List.of());
             }
-            List<ProductDTO> products = productService.getFeaturedProducts();
-            return ResponseEntity.ok(products);
+            return catalogResponseCache.respond(CatalogVersionService.FEATURED, "", request,
+                    productService::getFeaturedProducts);
         } catch (Exception e) {
             logger.error("Error fetching featured products", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -62,13 +89,13 @@ public class ProductController {
     }
 
     @GetMapping("/newest")
-    public ResponseEntity<List<ProductDTO>> getNewestProducts(@RequestParam(defaultValue = "5") int limit) {
+    public ResponseEntity<?> getNewestProducts(@RequestParam(defaultValue = "5") int limit, HttpServletRequest request) {
         try {
             if (limit <= 0) {
                 return ResponseEntity.badRequest().body(List.of());
             }
-            List<ProductDTO> products = productService.getNewestProducts(limit);
-            return ResponseEntity.ok(products);
+            return catalogResponseCache.respond(CatalogVersionService.NEWEST, "limit=" + limit, request,
+                    () -> productService.getNewestProducts(limit));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(List.of());
         } catch (Exception e) {
@@ -79,13 +106,18 @@ public class ProductController {
     }
 
     @GetMapping("/bestselling")
-    public ResponseEntity<List<ProductDTO>> getBestSellingProducts(@RequestParam(defaultValue = "5") int limit) {
+    public ResponseEntity<?> getBestSellingProducts(@RequestParam(defaultValue = "5") int limit,
+                                                    @RequestParam(defaultValue = "all") String window,
+                                                    HttpServletRequest request) {
         try {
             if (limit <= 0) {
                 return ResponseEntity.badRequest().body(List.of());
             }
-            List<ProductDTO> products = productService.getBestSellingProducts(limit);
-            return ResponseEntity.ok(products);
+            BestSellerLeaderboard.Window range = BestSellerLeaderboard.Window.fromParam(window);
+            return catalogResponseCache.respond(CatalogVersionService.BESTSELLING, range.getParam() + "-" + limit, request,
+                    () -> range == BestSellerLeaderboard.Window.ALL_TIME
+                            ? productService.getBestSellingProducts(limit)
+                            : productService.getBestSellingProducts(range, limit));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(List.of());
         } catch (Exception e) {
@@ -96,35 +128,112 @@ public class ProductController {
     }
 
     @GetMapping("/filtered")
-    public ResponseEntity<Page<ProductDTO>> getFilteredProducts(
+    public ResponseEntity<?> getFilteredProducts(
             @RequestParam(required = false) String searchKeyword,
             @RequestParam(required = false) BigDecimal minPrice,
             @RequestParam(required = false) BigDecimal maxPrice,
             @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String cursor,
             Pageable pageable) {
         try {
             if (minPrice != null && minPrice.compareTo(BigDecimal.ZERO) < 0) {
                 logger.warn("Min price is negative");
-                return ResponseEntity.ok(Page.empty(pageable));
+                return ResponseEntity.ok(emptyResult(cursor, pageable));
             }
             if (maxPrice != null && maxPrice.compareTo(BigDecimal.ZERO) < 0) {
                 logger.warn("Max price is negative");
-                return ResponseEntity.ok(Page.empty(pageable));
+                return ResponseEntity.ok(emptyResult(cursor, pageable));
             }
             if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
                 logger.warn("Min price > Max price");
-                return ResponseEntity.ok(Page.empty(pageable));
+                return ResponseEntity.ok(emptyResult(cursor, pageable));
             }
 
-            Page<ProductDTO> products = productService.getFilteredProducts(searchKeyword, minPrice, maxPrice, sortBy, pageable);
+            if (cursor != null) {
+                CursorPageResponse<ProductSummaryDTO> products = productService.getFilteredProductsAfter(
+                        searchKeyword, minPrice, maxPrice, sortBy, cursor, pageable.getPageSize());
+                return ResponseEntity.ok(products);
+            }
+            Page<ProductSummaryDTO> products = productService.getFilteredProducts(searchKeyword, minPrice, maxPrice, sortBy, pageable);
             return ResponseEntity.ok(products);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error fetching filtered products", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(emptyResult(cursor, pageable));
+        }
+    }
+
+    // Kết quả rỗng giữ đúng dạng phản hồi của chế độ phân trang client đang dùng
+    private static Object emptyResult(String cursor, Pageable pageable) {
+        if (cursor != null) {
+            return new CursorPageResponse<>(List.of(), pageable.getPageSize(), null, false);
+        }
+        return Page.empty(pageable);
+    }
+
+    // Gợi ý khi gõ: tra trie trong bộ nhớ, không truy vấn cơ sở dữ liệu
+    @GetMapping("/suggest")
+    public ResponseEntity<List<ProductSuggestionDTO>> suggestProducts(@RequestParam(defaultValue = "") String q,
+                                                                      @RequestParam(defaultValue = "8") int limit) {
+        int size = Math.min(Math.max(limit, 0), ProductSuggestIndex.MAX_SUGGESTIONS);
+        return ResponseEntity.ok(productSuggestIndex.suggest(q, size));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> searchProducts(@ModelAttribute ProductSearchCriteria criteria, Pageable pageable) {
+        try {
+            ProductSearchResponse result = productService.searchProducts(criteria, pageable);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error searching products", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Lỗi khi tìm kiếm sản phẩm");
+        }
+    }
+
+    @GetMapping("/admin")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Page<ProductDTO>> getProductsForAdmin(
+            @RequestParam(required = false) String searchKeyword,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) String sortBy,
+            Pageable pageable) {
+        try {
+            Page<ProductDTO> products = productService.getProductsForAdmin(searchKeyword, minPrice, maxPrice, sortBy, pageable);
+            return ResponseEntity.ok(products);
+        } catch (Exception e) {
+            logger.error("Error fetching products for admin", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Page.empty(pageable));
         }
     }
 
+    // ids=1,2,3 hoặc ids=1&ids=2: cả giỏ hàng chỉ tốn một request
+    @GetMapping("/batch")
+    public ResponseEntity<?> getProductsByIds(@RequestParam List<String> ids) {
+        try {
+            List<Long> productIds = ids.stream()
+                    .map(String::trim)
+                    .filter(id -> !id.isEmpty())
+                    .map(Long::parseLong)
+                    .collect(Collectors.toList());
+            return ResponseEntity.ok(productService.getProductsByIds(productIds));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body("ID sản phẩm không hợp lệ");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error fetching products by ids: {}", ids, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ProductDTO> getProductById(@PathVariable String id) {
         try {
@@ -146,7 +255,7 @@ public class ProductController {
     }
 
     @GetMapping("/{id}/related")
-    public ResponseEntity<List<ProductDTO>> getRelatedProducts(
+    public ResponseEntity<List<ProductSummaryDTO>> getRelatedProducts(
             @PathVariable Long id,
             @RequestParam(defaultValue = "5") int limit) {
         try {
@@ -156,7 +265,7 @@ public class ProductController {
             if (limit <= 0) {
                 return ResponseEntity.badRequest().body(List.of());
             }
-            List<ProductDTO> relatedProducts = productService.getRelatedProducts(id, limit);
+            List<ProductSummaryDTO> relatedProducts = productService.getRelatedProducts(id, limit);
             return ResponseEntity.ok(relatedProducts);
         } catch (IllegalArgumentException e) {
             logger.error("Error fetching related products for product ID: {}", id, e);
@@ -223,7 +332,7 @@ public class ProductController {
 
     @PostMapping("/discount/all")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<String> applyDiscountToAll(
+    public ResponseEntity<?> applyDiscountToAll(
             @RequestParam BigDecimal percentage,
             @RequestParam(required = false) BigDecimal fixedAmount,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDateTime,
@@ -241,8 +350,7 @@ public class ProductController {
             if (startDateTime == null || endDateTime == null || startDateTime.isAfter(endDateTime)) {
                 return ResponseEntity.badRequest().body("Thời gian giảm giá không hợp lệ");
             }
-            productService.applyDiscountToAll(percentage, fixedAmount, startDateTime, endDateTime);
-            return ResponseEntity.ok("Đã áp dụng giảm giá cho tất cả sản phẩm!");
+            return ResponseEntity.ok(productService.applyDiscountToAll(percentage, fixedAmount, startDateTime, endDateTime));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
@@ -254,7 +362,7 @@ public class ProductController {
 
     @PostMapping("/discount/selected")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<String> applyDiscountToSelected(
+    public ResponseEntity<?> applyDiscountToSelected(
             @RequestBody List<Long> productIds,
             @RequestParam BigDecimal percentage,
             @RequestParam(required = false) BigDecimal fixedAmount,
@@ -276,8 +384,7 @@ public class ProductController {
             if (startDateTime == null || endDateTime == null || startDateTime.isAfter(endDateTime)) {
                 return ResponseEntity.badRequest().body("Thời gian giảm giá không hợp lệ");
             }
-            productService.applyDiscountToSelected(productIds, percentage, fixedAmount, startDateTime, endDateTime);
-            return ResponseEntity.ok("Đã áp dụng giảm giá cho các sản phẩm được chọn!");
+            return ResponseEntity.ok(productService.applyDiscountToSelected(productIds, percentage, fixedAmount, startDateTime, endDateTime));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
@@ -299,10 +406,7 @@ public class ProductController {
             if (files == null || files.isEmpty()) {
                 return ResponseEntity.badRequest().body("Danh sách ảnh không được trống");
             }
-            List<ProductImageDTO> savedImages = files.stream()
-                    .filter(file -> file != null && !file.isEmpty())
-                    .map(file -> productService.addProductImage(productId, file))
-                    .collect(Collectors.toList());
+            List<ProductImageDTO> savedImages = productService.addProductImages(productId, files);
             return ResponseEntity.status(HttpStatus.CREATED).body(savedImages);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -313,6 +417,42 @@ public class ProductController {
         }
     }
 
+    @PostMapping("/bulk/import")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> importProducts(@RequestParam("file") MultipartFile file) {
+        try {
+            return ResponseEntity.ok(productBulkService.importProducts(file, currentUserId()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error importing products from file: {}", file.getOriginalFilename(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Lỗi khi nhập sản phẩm: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/bulk/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(defaultValue = "csv") String format) {
+        boolean xlsx = "xlsx".equalsIgnoreCase(format);
+        if (!xlsx && !"csv".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = output -> {
+            if (xlsx) {
+                productBulkService.exportXlsx(output);
+            } else {
+                productBulkService.exportCsv(output);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=products." + (xlsx ? "xlsx" : "csv"))
+                .contentType(xlsx
+                        ? MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                        : new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(body);
+    }
+
     @DeleteMapping("/images/{imageId}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Void> deleteProductImage(@PathVariable Long imageId) {
@@ -330,6 +470,12 @@ public class ProductController {
         }
     }
 
+    private Long currentUserId() {
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        // Giống createProduct: ghi nhật ký tồn kho cho tài khoản quản trị mặc định khi không xác định được người dùng
+        return principal instanceof User user ? user.getId() : 1L;
+    }
+
     private Product mapToEntity(ProductDTO productDTO) {
         Product product = new Product();
         product.setId(productDTO.getId());
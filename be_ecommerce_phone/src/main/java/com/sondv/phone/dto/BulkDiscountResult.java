@@ -0,0 +1,13 @@
+package com.sondv.phone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BulkDiscountResult {
+    private int rowsUpdated;
+    private int chunks;
+    private long elapsedMillis;
+    private String message;
+}
@@ -15,6 +15,13 @@ public class CategoryDTO {
     private String name;
     private int productCount;
 
+    // Dùng cho truy vấn JPQL "SELECT new ..." với COUNT (kiểu Long)
+    public CategoryDTO(Long id, String name, Long productCount) {
+        this.id = id;
+        this.name = name;
+        this.productCount = productCount != null ? productCount.intValue() : 0;
+    }
+
     public CategoryDTO(Category category) {
         this.id = category.getId();
         this.name = category.getName();
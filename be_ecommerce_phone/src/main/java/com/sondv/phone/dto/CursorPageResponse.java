@@ -0,0 +1,18 @@
+package com.sondv.phone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Trang theo con trỏ (keyset): client gửi lại nextCursor để lấy trang tiếp theo, null khi đã hết
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+    private boolean hasNext;
+}
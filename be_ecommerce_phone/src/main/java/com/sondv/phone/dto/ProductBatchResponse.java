@@ -0,0 +1,16 @@
+package com.sondv.phone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Kết quả tra cứu nhiều sản phẩm: products theo thứ tự id yêu cầu, missing là các id không tồn tại
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBatchResponse {
+    private List<ProductDTO> products;
+    private List<Long> missing;
+}
@@ -0,0 +1,22 @@
+package com.sondv.phone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ProductImportResult {
+    private int totalRows;
+    private int importedRows;
+    private List<RowError> errors;
+    private long elapsedMillis;
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private int row;
+        private String message;
+    }
+}
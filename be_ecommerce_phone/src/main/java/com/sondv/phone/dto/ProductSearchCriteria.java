@@ -0,0 +1,21 @@
+package com.sondv.phone.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+// Tham số của /api/products/search: nhiều giá trị trong cùng một bộ lọc được OR, các bộ lọc khác nhau được AND
+@Data
+public class ProductSearchCriteria {
+    private String searchKeyword;
+    private List<Long> categoryId;
+    private List<Long> supplierId;
+
+    // Khóa khoảng giá trả về trong facets.price, ví dụ "2000000-5000000" hoặc "20000000+"
+    private List<String> priceBucket;
+
+    private Boolean inStock;
+    private Boolean featured;
+    private Boolean hasDiscount;
+    private String sortBy;
+}
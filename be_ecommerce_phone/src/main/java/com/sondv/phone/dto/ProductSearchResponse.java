@@ -0,0 +1,31 @@
+package com.sondv.phone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+// Kết quả tìm kiếm theo facet: một trang sản phẩm kèm số lượng sản phẩm cho từng giá trị của mỗi bộ lọc
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchResponse {
+    private List<ProductSummaryDTO> content;
+    private int page;
+    private int size;
+    private long totalElements;
+    private Map<String, List<FacetValue>> facets;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetValue {
+        private String value;
+
+        // Tên danh mục/nhà cung cấp; null với các bộ lọc còn lại
+        private String label;
+        private int count;
+    }
+}
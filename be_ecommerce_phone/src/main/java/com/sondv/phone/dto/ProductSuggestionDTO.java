@@ -0,0 +1,14 @@
+package com.sondv.phone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Một gợi ý cho ô tìm kiếm: chỉ id và tên, trả thẳng từ bộ nhớ
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSuggestionDTO {
+    private Long id;
+    private String name;
+}
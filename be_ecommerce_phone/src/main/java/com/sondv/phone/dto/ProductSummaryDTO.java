@@ -0,0 +1,57 @@
+package com.sondv.phone.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+
+// Bản rút gọn của sản phẩm cho các trang danh sách, dựng trực tiếp bằng "SELECT new ..." trong JPQL.
+// Chi tiết đầy đủ (giá vốn, tồn kho, nhà cung cấp...) chỉ có ở ProductDTO của /api/products/{id}.
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class ProductSummaryDTO {
+
+    private Long id;
+    private String name;
+    private String description;
+    private BigDecimal sellingPrice;
+
+    // Giá khuyến mãi đang có hiệu lực, null nếu không giảm giá
+    private BigDecimal discountedPrice;
+
+    private String imageUrl;
+    private Double rating;
+    private Integer ratingCount;
+    private Integer soldQuantity;
+
+    @JsonProperty("isFeatured")
+    private boolean isFeatured;
+
+    private boolean inStock;
+
+    public ProductSummaryDTO(Long id, String name, String description, BigDecimal sellingPrice, BigDecimal discountedPrice,
+                             String imageUrl, Double rating, Integer ratingCount, Integer soldQuantity,
+                             Boolean isFeatured, Boolean inStock) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.sellingPrice = sellingPrice;
+        this.discountedPrice = discountedPrice;
+        this.imageUrl = imageUrl;
+        this.rating = rating;
+        this.ratingCount = ratingCount;
+        this.soldQuantity = soldQuantity;
+        this.isFeatured = Boolean.TRUE.equals(isFeatured);
+        this.inStock = Boolean.TRUE.equals(inStock);
+    }
+
+    // Giá đang bán, dùng làm khóa sắp xếp theo giá
+    public BigDecimal currentPrice() {
+        return discountedPrice != null ? discountedPrice : sellingPrice;
+    }
+}
@@ -36,6 +36,9 @@ public class Order {
     @Column(nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    // Thời điểm chuyển sang COMPLETED: bảng xếp hạng bán chạy tính doanh số của đơn vào giờ này
+    private LocalDateTime completedAt;
+
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private List<OrderDetail> orderDetails;
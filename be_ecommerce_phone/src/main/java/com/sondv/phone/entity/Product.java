@@ -3,6 +3,7 @@ package com.sondv.phone.entity;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.sondv.phone.util.PriceUtil;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import lombok.*;
@@ -11,7 +12,16 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_effective_price", columnList = "effective_price"),
+        @Index(name = "idx_products_category_effective_price", columnList = "category_id, effective_price")
+})
+// Đồ thị nạp cho các trang danh sách: lấy kèm các quan hệ một-một/nhiều-một trong cùng câu SELECT
+@NamedEntityGraph(name = "Product.listing", attributeNodes = {
+        @NamedAttributeNode("category"),
+        @NamedAttributeNode("supplier"),
+        @NamedAttributeNode("inventory")
+})
 @Getter
 @Setter
 @Entity
@@ -38,6 +48,10 @@ public class Product {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
     private LocalDateTime discountEndDate;
 
+    // Giá hiện hành được lưu sẵn để lọc/sắp xếp trong SQL; cập nhật khi ghi và tại các mốc bắt đầu/kết thúc khuyến mãi
+    @Column(name = "effective_price")
+    private BigDecimal effectivePrice;
+
     @Column(name = "is_featured", nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
     private boolean isFeatured = false;
 
@@ -74,4 +88,10 @@ public class Product {
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonManagedReference("product-inventoryLogs")
     private List<InventoryLog> inventoryLogs;
-}
\ No newline at end of file
+
+    @PrePersist
+    @PreUpdate
+    public void refreshEffectivePrice() {
+        effectivePrice = PriceUtil.currentPrice(this);
+    }
+}
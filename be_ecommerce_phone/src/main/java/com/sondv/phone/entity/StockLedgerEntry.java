@@ -0,0 +1,37 @@
+package com.sondv.phone.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Bút toán giữ/trả hàng của sổ giữ hàng trong bộ nhớ, ghi cùng transaction với đơn hàng và được gộp vào
+// inventory theo lô; dòng còn lại khi khởi động là phần chưa kịp ghi trước sự cố
+@Entity
+@Table(name = "stock_ledger", indexes = {
+        @Index(name = "idx_stock_ledger_product", columnList = "product_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    // Âm khi giữ hàng
+    @Column(name = "quantity_change", nullable = false)
+    private int quantityChange;
+
+    private String reason;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
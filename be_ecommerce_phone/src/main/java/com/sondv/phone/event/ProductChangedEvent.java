@@ -0,0 +1,59 @@
+package com.sondv.phone.event;
+
+import com.sondv.phone.entity.Product;
+import lombok.Getter;
+
+import java.util.Set;
+
+// Phát ra khi một sản phẩm được tạo/sửa/xóa; các listener xử lý sau khi transaction commit
+@Getter
+public class ProductChangedEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    public static final String NAME = "name";
+    public static final String DESCRIPTION = "description";
+    public static final String PRICE = "price";
+    public static final String DISCOUNT = "discount";
+    public static final String FEATURED = "featured";
+    public static final String STOCK = "stock";
+    public static final String SOLD_QUANTITY = "soldQuantity";
+    public static final String RATING = "rating";
+    public static final String IMAGES = "images";
+
+    private final Type type;
+    private final Long productId;
+    // Trạng thái sau khi ghi; null khi xóa
+    private final Product product;
+    // Tên sản phẩm trước khi sửa, dùng để tìm các trang tìm kiếm từng chứa sản phẩm
+    private final String previousName;
+    private final Set<String> changedFields;
+
+    private ProductChangedEvent(Type type, Long productId, Product product, String previousName, Set<String> changedFields) {
+        this.type = type;
+        this.productId = productId;
+        this.product = product;
+        this.previousName = previousName;
+        this.changedFields = changedFields;
+    }
+
+    public static ProductChangedEvent created(Product product) {
+        return new ProductChangedEvent(Type.CREATED, product.getId(), product, null,
+                Set.of(NAME, DESCRIPTION, PRICE, DISCOUNT, FEATURED, STOCK, IMAGES));
+    }
+
+    public static ProductChangedEvent updated(Product product, String previousName, Set<String> changedFields) {
+        return new ProductChangedEvent(Type.UPDATED, product.getId(), product, previousName, Set.copyOf(changedFields));
+    }
+
+    public static ProductChangedEvent deleted(Product product) {
+        return new ProductChangedEvent(Type.DELETED, product.getId(), null, product.getName(),
+                Set.of(NAME, DESCRIPTION, PRICE, DISCOUNT, FEATURED, STOCK, IMAGES));
+    }
+
+    public boolean hasChanged(String field) {
+        return changedFields.contains(field);
+    }
+}
@@ -0,0 +1,32 @@
+package com.sondv.phone.event;
+
+import com.sondv.phone.entity.Product;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Set;
+
+// Thay đổi hàng loạt (áp/xóa giảm giá...); products == null nghĩa là có thể đã chạm tới toàn bộ danh mục
+@Getter
+public class ProductsBulkChangedEvent {
+
+    private final List<Product> products;
+    private final Set<String> changedFields;
+
+    public ProductsBulkChangedEvent(List<Product> products, Set<String> changedFields) {
+        this.products = products;
+        this.changedFields = Set.copyOf(changedFields);
+    }
+
+    public static ProductsBulkChangedEvent wholeCatalog(Set<String> changedFields) {
+        return new ProductsBulkChangedEvent(null, changedFields);
+    }
+
+    public boolean isWholeCatalog() {
+        return products == null;
+    }
+
+    public boolean hasChanged(String field) {
+        return changedFields.contains(field);
+    }
+}
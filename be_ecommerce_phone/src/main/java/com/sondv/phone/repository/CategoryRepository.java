@@ -1,10 +1,17 @@
 package com.sondv.phone.repository;
 
+import com.sondv.phone.dto.CategoryDTO;
 import com.sondv.phone.entity.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     Optional<Category> findByName(String name);
+
+    // Đếm sản phẩm bằng một câu GROUP BY thay vì nạp toàn bộ tập products của từng danh mục
+    @Query("SELECT new com.sondv.phone.dto.CategoryDTO(c.id, c.name, COUNT(p)) FROM Category c LEFT JOIN c.products p GROUP BY c.id, c.name ORDER BY c.id")
+    List<CategoryDTO> findAllWithProductCount();
 }
@@ -8,11 +8,14 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface InventoryLogRepository extends JpaRepository<InventoryLog, Long> {
     List<InventoryLog> findByProductId(Long productId);
 
+    List<InventoryLog> findByProductIdIn(Collection<Long> productIds);
+
     @Query("SELECT log FROM InventoryLog log " +
             "WHERE log.product.id = :productId " +
             "AND (:startDate IS NULL OR log.timestamp >= :startDate) " +
@@ -2,18 +2,25 @@ package com.sondv.phone.repository;
 
 import com.sondv.phone.dto.InventoryReportDTO;
 import com.sondv.phone.entity.Inventory;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
-public interface InventoryRepository extends JpaRepository<Inventory, Long> {
+public interface InventoryRepository extends JpaRepository<Inventory, Long>, InventoryRepositoryCustom {
     Optional<Inventory> findByProductId(Long productId);
 
+    // Khóa dòng tồn kho khi điều chỉnh thủ công để không ghi đè phần vừa bị trừ bởi đơn hàng đồng thời
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Inventory i WHERE i.product.id = :productId")
+    Optional<Inventory> findByProductIdForUpdate(@Param("productId") Long productId);
+
     boolean existsByProductId(Long productId);
 
     @Modifying
@@ -0,0 +1,12 @@
+package com.sondv.phone.repository;
+
+import java.util.List;
+import java.util.SortedMap;
+
+public interface InventoryRepositoryCustom {
+
+    // Trừ tồn kho nguyên tử cho nhiều sản phẩm (UPDATE ... WHERE quantity >= ?), đồng bộ products.stock và ghi nhật ký.
+    // Trả về các id không đủ hàng; khi khác rỗng, một số dòng inventory có thể đã bị trừ nên transaction
+    // của người gọi phải rollback.
+    List<Long> decrementIfAvailable(SortedMap<Long, Integer> quantities, String reason, Long userId);
+}
@@ -0,0 +1,63 @@
+package com.sondv.phone.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+// Giữ hàng khi đặt đơn: điều kiện quantity >= ? nằm ngay trong UPDATE nên hai đơn đồng thời không thể cùng
+// lấy phần hàng cuối; khóa dòng do UPDATE giữ đến hết transaction, không cần đọc trước hay cột version.
+@RequiredArgsConstructor
+public class InventoryRepositoryCustomImpl implements InventoryRepositoryCustom {
+
+    private static final String DECREMENT_SQL = "UPDATE inventory SET quantity = quantity - ?, last_updated = ? " +
+            "WHERE product_id = ? AND quantity >= ?";
+    private static final String SYNC_PRODUCT_STOCK_SQL = "UPDATE products SET stock = " +
+            "(SELECT i.quantity FROM inventory i WHERE i.product_id = ?) WHERE id = ?";
+    // Số lượng trước/sau lấy từ chính dòng vừa trừ (đang bị khóa) nên luôn khớp với thay đổi thực tế
+    private static final String INSERT_LOG_SQL = "INSERT INTO inventory_logs (product_id, old_quantity, new_quantity, reason, user_id, timestamp) " +
+            "SELECT product_id, quantity + ?, quantity, ?, ?, ? FROM inventory WHERE product_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Long> decrementIfAvailable(SortedMap<Long, Integer> quantities, String reason, Long userId) {
+        if (quantities.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // Duyệt theo id tăng dần: mọi đơn khóa các dòng inventory theo cùng thứ tự nên không gây deadlock
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now(ZoneOffset.of("+07:00")));
+        List<Long> productIds = new ArrayList<>(quantities.keySet());
+        List<Object[]> decrements = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> item : quantities.entrySet()) {
+            decrements.add(new Object[]{item.getValue(), now, item.getKey(), item.getValue()});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_SQL, decrements);
+
+        List<Long> unavailable = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] != 1) {
+                unavailable.add(productIds.get(i));
+            }
+        }
+        if (!unavailable.isEmpty()) {
+            return unavailable;
+        }
+
+        List<Object[]> syncs = new ArrayList<>(productIds.size());
+        List<Object[]> logs = new ArrayList<>(productIds.size());
+        for (Map.Entry<Long, Integer> item : quantities.entrySet()) {
+            syncs.add(new Object[]{item.getKey(), item.getKey()});
+            logs.add(new Object[]{item.getValue(), reason, userId, now, item.getKey()});
+        }
+        jdbcTemplate.batchUpdate(SYNC_PRODUCT_STOCK_SQL, syncs);
+        jdbcTemplate.batchUpdate(INSERT_LOG_SQL, logs);
+        return unavailable;
+    }
+}
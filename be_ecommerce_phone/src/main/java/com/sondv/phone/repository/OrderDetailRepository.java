@@ -9,9 +9,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
-public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long> {
+public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long>, OrderDetailRepositoryCustom {
 
     @Query("""
             SELECT new com.sondv.phone.dto.TopProductDTO(
@@ -52,4 +53,15 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long>
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end);
 
+    // productId, số lượng, thời điểm hoàn thành (đơn cũ chưa có thì lấy thời điểm đặt) của các dòng đơn đã hoàn thành
+    @Query("SELECT od.product.id, od.quantity, COALESCE(od.order.completedAt, od.order.createdAt) FROM OrderDetail od " +
+            "WHERE od.order.status = com.sondv.phone.entity.OrderStatus.COMPLETED " +
+            "AND COALESCE(od.order.completedAt, od.order.createdAt) >= :since")
+    List<Object[]> findCompletedSalesSince(@Param("since") LocalDateTime since);
+
+    // Dòng chi tiết của nhiều đơn cùng sản phẩm và đánh giá; review và product.inventory là OneToOne phía mappedBy,
+    // không lazy được nên phải JOIN FETCH để khỏi bị nạp từng dòng một
+    @Query("SELECT d FROM OrderDetail d JOIN FETCH d.product p LEFT JOIN FETCH p.inventory LEFT JOIN FETCH d.review " +
+            "WHERE d.order.id IN :orderIds ORDER BY d.id")
+    List<OrderDetail> findWithProductByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
 }
@@ -0,0 +1,11 @@
+package com.sondv.phone.repository;
+
+import com.sondv.phone.entity.OrderDetail;
+
+import java.util.List;
+
+public interface OrderDetailRepositoryCustom {
+
+    // Ghi các dòng chi tiết của một đơn bằng một lô JDBC và gán id sinh ra vào từng OrderDetail
+    void insertAll(Long orderId, List<OrderDetail> details);
+}
@@ -0,0 +1,53 @@
+package com.sondv.phone.repository;
+
+import com.sondv.phone.entity.OrderDetail;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+// order_details dùng IDENTITY nên Hibernate chèn từng dòng một; giỏ hàng bao nhiêu dòng cũng chỉ tốn một lô
+@RequiredArgsConstructor
+public class OrderDetailRepositoryCustomImpl implements OrderDetailRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO order_details (order_id, product_id, quantity, price) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(Long orderId, List<OrderDetail> details) {
+        if (details.isEmpty()) {
+            return;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        OrderDetail detail = details.get(i);
+                        ps.setLong(1, orderId);
+                        ps.setLong(2, detail.getProduct().getId());
+                        ps.setInt(3, detail.getQuantity());
+                        ps.setBigDecimal(4, detail.getPrice());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return details.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < details.size(); i++) {
+            details.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+        }
+    }
+}
@@ -8,10 +8,16 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
+public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order>, OrderRepositoryCustom {
+
+    // Các đơn của một trang cùng khách hàng, giao hàng, thanh toán, mã giảm giá trong một truy vấn
+    @Query("SELECT DISTINCT o FROM Order o JOIN FETCH o.customer c JOIN FETCH c.user u LEFT JOIN FETCH u.roles " +
+            "LEFT JOIN FETCH o.shippingInfo LEFT JOIN FETCH o.payment LEFT JOIN FETCH o.discount WHERE o.id IN :ids")
+    List<Order> findPageByIdIn(@Param("ids") Collection<Long> ids);
 
     List<Order> findByCustomerId(Long customerId);
 
@@ -0,0 +1,12 @@
+package com.sondv.phone.repository;
+
+import com.sondv.phone.entity.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface OrderRepositoryCustom {
+
+    // Một trang id đơn hàng theo điều kiện lọc: chỉ SELECT cột id (và COUNT), không nạp entity cùng các quan hệ EAGER
+    Page<Long> findIds(Specification<Order> spec, Pageable pageable);
+}
@@ -2,8 +2,21 @@ package com.sondv.phone.repository;
 
 import com.sondv.phone.entity.ProductImage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 
-public interface ProductImageRepository extends JpaRepository<ProductImage, Long> {
+public interface ProductImageRepository extends JpaRepository<ProductImage, Long>, ProductImageRepositoryCustom {
     List<ProductImage> findByProductId(Long productId);
+
+    // Trả về (productId, imageId, imageUrl) để ghép DTO theo lô mà không nạp lại entity Product
+    @Query("SELECT i.product.id, i.id, i.imageUrl FROM ProductImage i WHERE i.product.id IN :productIds ORDER BY i.id")
+    List<Object[]> findImageRowsByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    // (productId, imageUrl) của ảnh đầu tiên (id nhỏ nhất) mỗi sản phẩm
+    @Query("SELECT i.product.id, i.imageUrl FROM ProductImage i WHERE i.id IN " +
+            "(SELECT MIN(f.id) FROM ProductImage f WHERE f.product.id IN :productIds GROUP BY f.product.id)")
+    List<Object[]> findFirstImageRowsByProductIds(@Param("productIds") Collection<Long> productIds);
 }
@@ -0,0 +1,12 @@
+package com.sondv.phone.repository;
+
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.entity.ProductImage;
+
+import java.util.List;
+
+public interface ProductImageRepositoryCustom {
+
+    // Ghi nhiều ảnh của một sản phẩm bằng một lô JDBC, trả về các ảnh kèm id vừa sinh
+    List<ProductImage> insertAll(Product product, List<String> imageUrls);
+}
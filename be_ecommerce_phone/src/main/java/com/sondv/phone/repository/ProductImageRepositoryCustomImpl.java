@@ -0,0 +1,55 @@
+package com.sondv.phone.repository;
+
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.entity.ProductImage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// product_images dùng IDENTITY nên Hibernate không gộp được INSERT; ghi bằng JDBC batch và đọc lại khóa sinh ra
+@RequiredArgsConstructor
+public class ProductImageRepositoryCustomImpl implements ProductImageRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO product_images (image_url, product_id) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<ProductImage> insertAll(Product product, List<String> imageUrls) {
+        if (imageUrls.isEmpty()) {
+            return new ArrayList<>();
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, imageUrls.get(i));
+                        ps.setLong(2, product.getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return imageUrls.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<ProductImage> images = new ArrayList<>(imageUrls.size());
+        for (int i = 0; i < imageUrls.size(); i++) {
+            Object id = keys.get(i).values().iterator().next();
+            images.add(new ProductImage(((Number) id).longValue(), imageUrls.get(i), product));
+        }
+        return images;
+    }
+}
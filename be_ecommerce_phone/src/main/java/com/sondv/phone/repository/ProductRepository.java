@@ -1,19 +1,56 @@
 package com.sondv.phone.repository;
 
+import com.sondv.phone.dto.ProductSummaryDTO;
 import com.sondv.phone.entity.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
+
+    String PRICE_FILTER = "(:keyword IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+            "AND (:minPrice IS NULL OR p.effectivePrice >= :minPrice) " +
+            "AND (:maxPrice IS NULL OR p.effectivePrice <= :maxPrice) ";
+
+    // Giá giảm tính ngay trong SQL: giá bán * (1 - phần trăm) - số tiền cố định, không âm.
+    // effective_price gán cùng câu lệnh vì UPDATE hàng loạt không chạy @PreUpdate.
+    String DISCOUNTED_PRICE = "(p.sellingPrice * :factor - :fixedAmount)";
+    String APPLY_DISCOUNT = "UPDATE Product p SET " +
+            "p.discountedPrice = CASE WHEN " + DISCOUNTED_PRICE + " > 0 THEN " + DISCOUNTED_PRICE + " ELSE 0 END, " +
+            "p.effectivePrice = CASE WHEN :active = false THEN p.sellingPrice " +
+            "WHEN " + DISCOUNTED_PRICE + " > 0 THEN " + DISCOUNTED_PRICE + " ELSE 0 END, " +
+            "p.discountStartDate = :startDate, p.discountEndDate = :endDate " +
+            "WHERE p.sellingPrice IS NOT NULL ";
+
+    // Projection cho trang danh sách: chỉ các cột cần hiển thị, ảnh đầu tiên lấy bằng subquery theo id ảnh nhỏ nhất
+    String SUMMARY_SELECT = "SELECT new com.sondv.phone.dto.ProductSummaryDTO(p.id, p.name, p.description, p.sellingPrice, " +
+            "CASE WHEN p.effectivePrice < p.sellingPrice THEN p.effectivePrice ELSE NULL END, " +
+            "(SELECT i.imageUrl FROM ProductImage i WHERE i.id = (SELECT MIN(i2.id) FROM ProductImage i2 WHERE i2.product.id = p.id)), " +
+            "p.rating, p.ratingCount, p.soldQuantity, p.isFeatured, CASE WHEN p.stock > 0 THEN true ELSE false END) " +
+            "FROM Product p ";
+
+    // Inventory là phía mappedBy của quan hệ một-một nên luôn bị nạp ngay; lấy chung câu SELECT để tránh N+1
+    @Override
+    @EntityGraph("Product.listing")
+    List<Product> findAll();
+
+    @Override
+    @EntityGraph("Product.listing")
+    Page<Product> findAll(Pageable pageable);
+
+    @Override
+    @EntityGraph("Product.listing")
+    List<Product> findAllById(Iterable<Long> ids);
 
     List<Product> findTop3ByNameContainingIgnoreCase(String keyword);
 
@@ -23,25 +60,35 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     Optional<Product> findFirstByNameContainingIgnoreCase(String keyword);
 
+    @EntityGraph("Product.listing")
     Page<Product> findByNameContainingIgnoreCase(String name, Pageable pageable);
 
     List<Product> findByCategoryId(Long categoryId);
 
     List<Product> findByCategoryIdAndSellingPriceLessThan(Long categoryId, BigDecimal price);
 
-    List<Product> findTop5ByOrderBySoldQuantityDesc();
-
     List<Product> findTop3ByOrderBySoldQuantityDesc();
 
     List<Product> findByStockLessThan(int threshold);
 
-    List<Product> findByIsFeaturedTrue();
+    List<Product> findBySoldQuantityGreaterThan(int quantity);
 
-    List<Product> findAllByOrderByIdDesc();
+    long countBySoldQuantityGreaterThan(int quantity);
 
-    List<Product> findByDiscountEndDateBefore(LocalDateTime dateTime);
+    @Query("SELECT p.id FROM Product p ORDER BY p.id DESC")
+    List<Long> findNewestIds(Pageable pageable);
 
-    List<Product> findBySoldQuantityGreaterThan(int quantity);
+    @Query("SELECT p.id, p.soldQuantity FROM Product p WHERE p.soldQuantity > 0")
+    List<Object[]> findSoldQuantities();
+
+    @Query("SELECT p.id, p.soldQuantity FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findSoldQuantitiesByIds(@Param("ids") Collection<Long> ids);
+
+    // Cộng/trừ nguyên tử, không để âm
+    @Modifying
+    @Query("UPDATE Product p SET p.soldQuantity = CASE WHEN COALESCE(p.soldQuantity, 0) + :delta < 0 THEN 0 " +
+            "ELSE COALESCE(p.soldQuantity, 0) + :delta END WHERE p.id = :id")
+    int adjustSoldQuantity(@Param("id") Long id, @Param("delta") int delta);
 
     List<Product> findByNameInIgnoreCase(List<String> names);
 
@@ -63,6 +110,20 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p.name FROM Product p")
     List<String> findAllProductNames();
 
+    @Query("SELECT p.category.id, COUNT(p) FROM Product p WHERE p.category.id IN :categoryIds GROUP BY p.category.id")
+    List<Object[]> countByCategoryIds(@Param("categoryIds") Collection<Long> categoryIds);
+
+    @Query("SELECT p.id, p.name FROM Product p")
+    List<Object[]> findAllIdAndName();
+
+    @Query("SELECT p.id, p.name, p.soldQuantity FROM Product p")
+    List<Object[]> findAllIdNameAndSoldQuantity();
+
+    // Xuất file theo keyset (id > afterId) để không phải giữ cả danh mục trong bộ nhớ
+    @Query("SELECT p.id, p.name, p.description, p.costPrice, p.sellingPrice, p.stock, c.id, s.id, p.isFeatured " +
+            "FROM Product p LEFT JOIN p.category c LEFT JOIN p.supplier s WHERE p.id > :afterId ORDER BY p.id")
+    List<Object[]> findExportPage(@Param("afterId") Long afterId, Pageable pageable);
+
     @Query("SELECT p FROM Product p WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<Product> findByNameContainingFlexible(@Param("keyword") String keyword);
 
@@ -75,6 +136,104 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<Product> findByNameContainingIgnoreCase(@Param("keyword") String keyword);
 
-    @Query("SELECT p FROM Product p WHERE p.category.id = :categoryId AND p.id != :productId AND p.sellingPrice BETWEEN :minPrice AND :maxPrice ORDER BY p.soldQuantity DESC")
+    @EntityGraph("Product.listing")
+    @Query("SELECT p FROM Product p WHERE p.category.id = :categoryId AND p.id != :productId AND p.effectivePrice BETWEEN :minPrice AND :maxPrice ORDER BY p.soldQuantity DESC")
     List<Product> findRelatedProducts(@Param("categoryId") Long categoryId, @Param("productId") Long productId, @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice, Pageable pageable);
-}
\ No newline at end of file
+
+    @EntityGraph("Product.listing")
+    @Query("SELECT p FROM Product p WHERE " + PRICE_FILTER)
+    Page<Product> findByEffectivePriceRange(@Param("keyword") String keyword, @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice, Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT, countQuery = "SELECT COUNT(p) FROM Product p")
+    Page<ProductSummaryDTO> findAllSummaries(Pageable pageable);
+
+    @Query(SUMMARY_SELECT)
+    List<ProductSummaryDTO> findSummaries(Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT + "WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%'))",
+            countQuery = "SELECT COUNT(p) FROM Product p WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%'))")
+    Page<ProductSummaryDTO> findSummariesByName(@Param("keyword") String keyword, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE p.id IN :ids")
+    List<ProductSummaryDTO> findSummariesByIds(@Param("ids") Collection<Long> ids);
+
+    @Query(value = SUMMARY_SELECT + "WHERE p.id IN :ids", countQuery = "SELECT COUNT(p) FROM Product p WHERE p.id IN :ids")
+    Page<ProductSummaryDTO> findSummariesByIdIn(@Param("ids") Collection<Long> ids, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE p.isFeatured = true")
+    List<ProductSummaryDTO> findFeaturedSummaries();
+
+    @Query(SUMMARY_SELECT + "WHERE p.category.id = :categoryId AND p.id != :productId AND p.effectivePrice BETWEEN :minPrice AND :maxPrice ORDER BY p.soldQuantity DESC")
+    List<ProductSummaryDTO> findRelatedSummaries(@Param("categoryId") Long categoryId, @Param("productId") Long productId, @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice, Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT + "WHERE " + PRICE_FILTER, countQuery = "SELECT COUNT(p) FROM Product p WHERE " + PRICE_FILTER)
+    Page<ProductSummaryDTO> findSummariesByEffectivePriceRange(@Param("keyword") String keyword, @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice, Pageable pageable);
+
+    // Phân trang keyset: điều kiện "sau con trỏ" dùng được chỉ mục nên trang sâu tốn như trang đầu
+    @Query(SUMMARY_SELECT + "WHERE " + PRICE_FILTER + "AND p.id > :lastId ORDER BY p.id ASC")
+    List<ProductSummaryDTO> findSummaryPageAfterId(@Param("keyword") String keyword, @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice, @Param("lastId") Long lastId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE " + PRICE_FILTER + "AND p.id < :lastId ORDER BY p.id DESC")
+    List<ProductSummaryDTO> findSummaryPageBeforeId(@Param("keyword") String keyword, @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice, @Param("lastId") Long lastId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE " + PRICE_FILTER +
+            "AND (:lastSold IS NULL OR p.soldQuantity < :lastSold OR (p.soldQuantity = :lastSold AND p.id > :lastId)) " +
+            "ORDER BY p.soldQuantity DESC, p.id ASC")
+    List<ProductSummaryDTO> findSummaryPageBySoldQuantity(@Param("keyword") String keyword, @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice, @Param("lastSold") Integer lastSold, @Param("lastId") Long lastId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE " + PRICE_FILTER +
+            "AND (:lastPrice IS NULL OR p.effectivePrice > :lastPrice OR (p.effectivePrice = :lastPrice AND p.id > :lastId)) " +
+            "ORDER BY p.effectivePrice ASC, p.id ASC")
+    List<ProductSummaryDTO> findSummaryPageByPriceAsc(@Param("keyword") String keyword, @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice, @Param("lastPrice") BigDecimal lastPrice, @Param("lastId") Long lastId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE " + PRICE_FILTER +
+            "AND (:lastPrice IS NULL OR p.effectivePrice < :lastPrice OR (p.effectivePrice = :lastPrice AND p.id > :lastId)) " +
+            "ORDER BY p.effectivePrice DESC, p.id ASC")
+    List<ProductSummaryDTO> findSummaryPageByPriceDesc(@Param("keyword") String keyword, @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice, @Param("lastPrice") BigDecimal lastPrice, @Param("lastId") Long lastId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Product p SET p.effectivePrice = CASE " +
+            "WHEN p.discountedPrice IS NOT NULL AND p.discountStartDate <= :now AND p.discountEndDate >= :now THEN p.discountedPrice " +
+            "ELSE p.sellingPrice END")
+    int refreshEffectivePrices(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(APPLY_DISCOUNT + "AND p.id BETWEEN :fromId AND :toId")
+    int applyDiscountInIdRange(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                               @Param("factor") BigDecimal factor, @Param("fixedAmount") BigDecimal fixedAmount,
+                               @Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate,
+                               @Param("active") boolean active);
+
+    @Modifying
+    @Query(APPLY_DISCOUNT + "AND p.id IN :ids")
+    int applyDiscountToIds(@Param("ids") Collection<Long> ids,
+                           @Param("factor") BigDecimal factor, @Param("fixedAmount") BigDecimal fixedAmount,
+                           @Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate,
+                           @Param("active") boolean active);
+
+    @Query("SELECT MIN(p.id), MAX(p.id) FROM Product p")
+    List<Object[]> findIdBounds();
+
+    // Xóa khuyến mãi đã hết hạn; giá hiện hành gán trước khi các cột khuyến mãi bị xóa
+    @Modifying
+    @Query("UPDATE Product p SET p.effectivePrice = p.sellingPrice, p.discountedPrice = NULL, " +
+            "p.discountStartDate = NULL, p.discountEndDate = NULL " +
+            "WHERE p.discountEndDate < :now")
+    int clearEndedDiscounts(@Param("now") LocalDateTime now);
+
+    // Một câu UPDATE cho mọi sản phẩm vừa qua mốc bắt đầu/kết thúc khuyến mãi
+    @Modifying
+    @Query("UPDATE Product p SET p.effectivePrice = CASE " +
+            "WHEN p.discountedPrice IS NOT NULL AND p.discountStartDate <= :now AND p.discountEndDate >= :now THEN p.discountedPrice " +
+            "ELSE p.sellingPrice END, " +
+            "p.discountedPrice = CASE WHEN p.discountEndDate < :now THEN NULL ELSE p.discountedPrice END, " +
+            "p.discountStartDate = CASE WHEN p.discountEndDate < :now THEN NULL ELSE p.discountStartDate END, " +
+            "p.discountEndDate = CASE WHEN p.discountEndDate < :now THEN NULL ELSE p.discountEndDate END " +
+            "WHERE p.id IN :ids")
+    int applyDiscountBoundary(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // id, bắt đầu, kết thúc của các khuyến mãi chưa kết thúc
+    @Query("SELECT p.id, p.discountStartDate, p.discountEndDate FROM Product p " +
+            "WHERE p.discountedPrice IS NOT NULL AND p.discountEndDate >= :now")
+    List<Object[]> findOpenDiscountWindows(@Param("now") LocalDateTime now);
+}
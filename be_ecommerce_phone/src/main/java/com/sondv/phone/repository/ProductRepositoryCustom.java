@@ -0,0 +1,11 @@
+package com.sondv.phone.repository;
+
+import com.sondv.phone.entity.Product;
+
+import java.util.List;
+
+public interface ProductRepositoryCustom {
+
+    // Ghi sản phẩm mới cùng tồn kho và nhật ký khởi tạo bằng ba lô JDBC; trả về id theo thứ tự đầu vào
+    List<Long> insertWithInventory(List<Product> products, String reason, Long userId);
+}
@@ -0,0 +1,87 @@
+package com.sondv.phone.repository;
+
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.util.PriceUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Nhập hàng loạt: products dùng IDENTITY nên Hibernate ghi từng dòng một; ở đây mỗi bảng chỉ tốn một lô JDBC
+@RequiredArgsConstructor
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    private static final String INSERT_PRODUCT_SQL = "INSERT INTO products (name, description, cost_price, selling_price, " +
+            "effective_price, is_featured, stock, sold_quantity, rating, rating_count, category_id, supplier_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, 0, 0, 0, ?, ?)";
+    private static final String INSERT_INVENTORY_SQL = "INSERT INTO inventory (product_id, quantity, max_quantity, min_quantity, last_updated) " +
+            "VALUES (?, ?, 100, 5, ?)";
+    private static final String INSERT_LOG_SQL = "INSERT INTO inventory_logs (product_id, old_quantity, new_quantity, reason, user_id, timestamp) " +
+            "VALUES (?, 0, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Long> insertWithInventory(List<Product> products, String reason, Long userId) {
+        if (products.isEmpty()) {
+            return new ArrayList<>();
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_PRODUCT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Product product = products.get(i);
+                        ps.setString(1, product.getName());
+                        ps.setString(2, product.getDescription());
+                        ps.setBigDecimal(3, product.getCostPrice());
+                        ps.setBigDecimal(4, product.getSellingPrice());
+                        // INSERT bằng JDBC không chạy @PrePersist nên tự tính giá hiệu lực
+                        ps.setBigDecimal(5, PriceUtil.currentPrice(product));
+                        ps.setBoolean(6, product.isFeatured());
+                        ps.setInt(7, stockOf(product));
+                        ps.setLong(8, product.getCategory().getId());
+                        ps.setLong(9, product.getSupplier().getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return products.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Long> ids = new ArrayList<>(products.size());
+        for (int i = 0; i < products.size(); i++) {
+            Long id = ((Number) keys.get(i).values().iterator().next()).longValue();
+            products.get(i).setId(id);
+            ids.add(id);
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> inventoryRows = new ArrayList<>(products.size());
+        List<Object[]> logRows = new ArrayList<>(products.size());
+        for (Product product : products) {
+            inventoryRows.add(new Object[]{product.getId(), stockOf(product), now});
+            logRows.add(new Object[]{product.getId(), stockOf(product), reason, userId, now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_INVENTORY_SQL, inventoryRows);
+        jdbcTemplate.batchUpdate(INSERT_LOG_SQL, logRows);
+        return ids;
+    }
+
+    private static int stockOf(Product product) {
+        return product.getStock() != null ? product.getStock() : 0;
+    }
+}
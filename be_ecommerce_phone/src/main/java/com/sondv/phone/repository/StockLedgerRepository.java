@@ -0,0 +1,7 @@
+package com.sondv.phone.repository;
+
+import com.sondv.phone.entity.StockLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface StockLedgerRepository extends JpaRepository<StockLedgerEntry, Long>, StockLedgerRepositoryCustom {
+}
@@ -0,0 +1,19 @@
+package com.sondv.phone.repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+public interface StockLedgerRepositoryCustom {
+
+    // Ghi bút toán giữ hàng (quantity_change = -số lượng) bằng một lô JDBC trong transaction của đơn hàng
+    void append(SortedMap<Long, Integer> quantities, String reason, Long userId);
+
+    // Gộp tối đa limit bút toán đã commit vào inventory/products/inventory_logs rồi xóa chúng; trả về id sản phẩm bị ảnh hưởng
+    List<Long> applyPending(int limit);
+
+    // Số lượng còn giữ được = inventory.quantity + tổng bút toán chưa gộp
+    Map<Long, Integer> loadAvailable();
+
+    Integer loadAvailable(Long productId);
+}
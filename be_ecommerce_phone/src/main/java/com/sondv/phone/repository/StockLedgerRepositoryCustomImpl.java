@@ -0,0 +1,109 @@
+package com.sondv.phone.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+// Phần JDBC của sổ giữ hàng: bút toán chỉ là INSERT nối đuôi (không tranh chấp dòng inventory nóng),
+// dòng inventory chỉ bị khóa khi gộp theo lô
+@RequiredArgsConstructor
+public class StockLedgerRepositoryCustomImpl implements StockLedgerRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO stock_ledger (product_id, quantity_change, reason, user_id, created_at) " +
+            "VALUES (?, ?, ?, ?, ?)";
+    private static final String PENDING_SQL = "SELECT id, product_id, quantity_change, reason, user_id, created_at " +
+            "FROM stock_ledger ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String LOCK_INVENTORY_SQL = "SELECT product_id, quantity FROM inventory " +
+            "WHERE product_id IN (%s) ORDER BY product_id FOR UPDATE";
+    private static final String UPDATE_INVENTORY_SQL = "UPDATE inventory SET quantity = ?, last_updated = ? WHERE product_id = ?";
+    private static final String UPDATE_PRODUCT_STOCK_SQL = "UPDATE products SET stock = ? WHERE id = ?";
+    private static final String INSERT_LOG_SQL = "INSERT INTO inventory_logs (product_id, old_quantity, new_quantity, reason, user_id, timestamp) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM stock_ledger WHERE id = ?";
+    private static final String AVAILABLE_SQL = "SELECT i.product_id, i.quantity + COALESCE(" +
+            "(SELECT SUM(l.quantity_change) FROM stock_ledger l WHERE l.product_id = i.product_id), 0) FROM inventory i";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void append(SortedMap<Long, Integer> quantities, String reason, Long userId) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now(ZoneOffset.of("+07:00")));
+        List<Object[]> rows = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, quantity) -> rows.add(new Object[]{productId, -quantity, reason, userId, now}));
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    @Override
+    public List<Long> applyPending(int limit) {
+        List<Entry> entries = jdbcTemplate.query(PENDING_SQL, (rs, i) -> new Entry(
+                rs.getLong(1), rs.getLong(2), rs.getInt(3), rs.getString(4), rs.getLong(5), rs.getTimestamp(6)), limit);
+        if (entries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        TreeMap<Long, List<Entry>> byProduct = new TreeMap<>();
+        for (Entry entry : entries) {
+            byProduct.computeIfAbsent(entry.productId(), k -> new ArrayList<>()).add(entry);
+        }
+
+        // Khóa theo id tăng dần như khi giữ hàng trực tiếp
+        String placeholders = String.join(",", Collections.nCopies(byProduct.size(), "?"));
+        Map<Long, Integer> quantities = new HashMap<>();
+        jdbcTemplate.query(String.format(LOCK_INVENTORY_SQL, placeholders),
+                rs -> {
+                    quantities.put(rs.getLong(1), rs.getInt(2));
+                },
+                byProduct.keySet().toArray());
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now(ZoneOffset.of("+07:00")));
+        List<Object[]> inventoryUpdates = new ArrayList<>();
+        List<Object[]> stockUpdates = new ArrayList<>();
+        List<Object[]> logs = new ArrayList<>(entries.size());
+        List<Long> productIds = new ArrayList<>();
+        for (Map.Entry<Long, List<Entry>> group : byProduct.entrySet()) {
+            Integer quantity = quantities.get(group.getKey());
+            if (quantity == null) {
+                // Sản phẩm đã bị xóa: bỏ bút toán
+                continue;
+            }
+            // Mỗi bút toán giữ một dòng nhật ký riêng, số lượng trước/sau nối tiếp theo thứ tự ghi
+            for (Entry entry : group.getValue()) {
+                int oldQuantity = quantity;
+                quantity += entry.quantityChange();
+                logs.add(new Object[]{group.getKey(), oldQuantity, quantity, entry.reason(), entry.userId(), entry.createdAt()});
+            }
+            inventoryUpdates.add(new Object[]{quantity, now, group.getKey()});
+            stockUpdates.add(new Object[]{quantity, group.getKey()});
+            productIds.add(group.getKey());
+        }
+
+        if (!productIds.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_INVENTORY_SQL, inventoryUpdates);
+            jdbcTemplate.batchUpdate(UPDATE_PRODUCT_STOCK_SQL, stockUpdates);
+            jdbcTemplate.batchUpdate(INSERT_LOG_SQL, logs);
+        }
+        jdbcTemplate.batchUpdate(DELETE_SQL, entries.stream().map(entry -> new Object[]{entry.id()}).toList());
+        return productIds;
+    }
+
+    @Override
+    public Map<Long, Integer> loadAvailable() {
+        Map<Long, Integer> available = new HashMap<>();
+        jdbcTemplate.query(AVAILABLE_SQL, rs -> {
+            available.put(rs.getLong(1), rs.getInt(2));
+        });
+        return available;
+    }
+
+    @Override
+    public Integer loadAvailable(Long productId) {
+        List<Integer> rows = jdbcTemplate.query(AVAILABLE_SQL + " WHERE i.product_id = ?", (rs, i) -> rs.getInt(2), productId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private record Entry(long id, long productId, int quantityChange, String reason, long userId, Timestamp createdAt) {
+    }
+}
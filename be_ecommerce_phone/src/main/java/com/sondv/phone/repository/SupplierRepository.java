@@ -2,6 +2,7 @@ package com.sondv.phone.repository;
 
 import com.sondv.phone.entity.Supplier;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
@@ -11,4 +12,7 @@ public interface SupplierRepository extends JpaRepository<Supplier, Long> {
     List<Supplier> findByNameContainingIgnoreCase(String name);
 
     List<Supplier> findByEmailContainingIgnoreCase(String email);
+
+    @Query("SELECT s.id FROM Supplier s")
+    List<Long> findAllIds();
 }
@@ -43,6 +43,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             "/api/products/newest",
             "/api/products/bestselling",
             "/api/products/filtered",
+            "/api/products/search",
+            "/api/products/suggest",
+            "/api/products/batch",
             "/api/products/*/related",
             "/api/products/*",
             "/api/categories/**",
@@ -53,9 +56,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             "/api/payments/momo/callback"
     };
 
+    // Khớp mẫu công khai (ví dụ /api/products/*) nhưng cần ADMIN nên vẫn phải đọc token
+    private static final String[] ADMIN_ENDPOINTS = {
+            "/api/products/admin",
+            "/api/products/bulk/**"
+    };
+
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
         String path = request.getRequestURI();
+        if (Arrays.stream(ADMIN_ENDPOINTS).anyMatch(pattern -> pathMatcher.match(pattern, path))) {
+            return false;
+        }
         return Arrays.stream(PUBLIC_ENDPOINTS)
                 .anyMatch(pattern -> pathMatcher.match(pattern, path));
     }
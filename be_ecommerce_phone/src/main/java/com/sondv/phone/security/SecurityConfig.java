@@ -94,6 +94,9 @@ public class SecurityConfig {
                                 "/api/auth/**", "/email_verified_success.html", "/email_verified_fail.html")
                         .permitAll()
 
+                        // 🔐 GET chỉ dành cho ADMIN dưới /api/products: phải đứng trước permitAll bên dưới
+                        .requestMatchers(HttpMethod.GET, "/api/products/admin", "/api/products/bulk/**").hasRole("ADMIN")
+
                         // 🔓 PUBLIC APIs: khách hàng có thể xem
                         .requestMatchers(HttpMethod.GET, "/api/products/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/categories/**").permitAll()
@@ -32,6 +32,7 @@ public class AdminService {
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final OrderDetailRepository orderDetailRepository;
+    private final BestSellerLeaderboard bestSellerLeaderboard;
 
     public StatsResponse getDashboardStats(int days) {
         StatsResponse stats = new StatsResponse();
@@ -45,7 +46,7 @@ public class AdminService {
         BigDecimal totalRevenue = calculateTotalRevenue(orders);
         stats.setTotalRevenue(totalRevenue != null ? totalRevenue.setScale(2, RoundingMode.HALF_UP) : BigDecimal.ZERO);
         stats.setTotalOrders((long) orders.size());
-        stats.setTopSellingProductsCount((long) productRepository.findBySoldQuantityGreaterThan(0).size());
+        stats.setTopSellingProductsCount(productRepository.countBySoldQuantityGreaterThan(0));
         stats.setNewUsersCount((long) userRepository.findByCreatedAtAfter(startDateTime).size());
 
         Map<String, BigDecimal> revenueByTime = new LinkedHashMap<>();
@@ -100,7 +101,18 @@ public class AdminService {
     }
 
     public List<Product> getTopSellingProducts(int limit) {
-        return productRepository.findTopNByOrderBySoldQuantityDesc(PageRequest.of(0, limit));
+        return getTopSellingProducts(BestSellerLeaderboard.Window.ALL_TIME, limit);
+    }
+
+    // Đọc thứ hạng từ bảng xếp hạng bán chạy; bảng chưa sẵn sàng thì sắp xếp theo soldQuantity trong cơ sở dữ liệu
+    public List<Product> getTopSellingProducts(BestSellerLeaderboard.Window window, int limit) {
+        List<Long> ids = bestSellerLeaderboard.topIds(window, limit);
+        if (!bestSellerLeaderboard.isReady() || (window == BestSellerLeaderboard.Window.ALL_TIME && ids.size() < limit)) {
+            return productRepository.findTopNByOrderBySoldQuantityDesc(PageRequest.of(0, limit));
+        }
+        Map<Long, Product> byId = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     public List<User> getRecentUsers(int limit) {
@@ -0,0 +1,205 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.repository.OrderDetailRepository;
+import com.sondv.phone.repository.ProductRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.*;
+
+// Bảng xếp hạng bán chạy theo thời gian thực: toàn thời gian và cửa sổ trượt 24h/7 ngày/30 ngày.
+// Ghi khi đơn hoàn thành/hủy, đọc top-K trong O(log n + k); dùng Redis ZSET, không có Redis thì giữ trong bộ nhớ.
+@Service
+@RequiredArgsConstructor
+public class BestSellerLeaderboard {
+
+    private static final Logger logger = LoggerFactory.getLogger(BestSellerLeaderboard.class);
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    @Getter
+    public enum Window {
+        ALL_TIME("all", 0),
+        LAST_24H("24h", 24),
+        LAST_7D("7d", 24 * 7),
+        LAST_30D("30d", 24 * 30);
+
+        private final String param;
+        private final int hours;
+
+        Window(String param, int hours) {
+            this.param = param;
+            this.hours = hours;
+        }
+
+        public static Window fromParam(String param) {
+            if (param == null || param.isBlank()) {
+                return ALL_TIME;
+            }
+            for (Window window : values()) {
+                if (window.param.equalsIgnoreCase(param.trim())) {
+                    return window;
+                }
+            }
+            throw new IllegalArgumentException("Khoảng thời gian không hợp lệ: " + param);
+        }
+
+        boolean isRolling() {
+            return hours > 0;
+        }
+    }
+
+    private static final List<Window> ALL_WINDOWS = List.of(Window.values());
+    private static final int MAX_WINDOW_HOURS = Window.LAST_30D.hours;
+
+    private final ProductRepository productRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+    private final CatalogVersionService catalogVersionService;
+
+    @Value("${catalog.leaderboard.redis-enabled:true}")
+    private boolean redisEnabled;
+
+    private volatile LeaderboardStore store = new InMemoryLeaderboardStore();
+    private volatile boolean ready = false;
+    private Clock clock = Clock.systemDefaultZone();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        store = selectStore();
+        try {
+            if (store.claimSeed()) {
+                seed();
+            }
+            rollover();
+            ready = true;
+        } catch (Exception e) {
+            logger.error("Không thể khởi tạo bảng xếp hạng bán chạy, dùng truy vấn cơ sở dữ liệu thay thế", e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Gọi sau khi transaction commit: delta dương khi đơn hoàn thành, âm khi đơn đã hoàn thành bị hủy.
+    // soldAt là lúc đơn hoàn thành: hủy đơn trừ vào đúng bucket giờ đó và chỉ ở các cửa sổ còn chứa giờ đó,
+    // nên khi bucket trượt khỏi cửa sổ thì phần đã bán và phần đã hủy cùng rơi ra
+    public void record(Map<Long, Long> deltas, LocalDateTime soldAt) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            long current = currentHour();
+            long hour = soldAt != null ? Math.min(toHour(soldAt), current) : current;
+            List<Window> targets = ALL_WINDOWS.stream()
+                    .filter(window -> !window.isRolling() || hour > store.expiredThrough(window))
+                    .toList();
+            store.add(deltas, hour, targets);
+            catalogVersionService.bump(CatalogVersionService.BESTSELLING);
+        } catch (Exception e) {
+            logger.error("Không thể cập nhật bảng xếp hạng bán chạy: {}", e.getMessage());
+        }
+    }
+
+    // Id sản phẩm bán chạy nhất; danh sách rỗng nếu bảng chưa sẵn sàng hoặc lỗi (nơi gọi tự dùng truy vấn dự phòng)
+    public List<Long> topIds(Window window, int limit) {
+        if (!ready || limit <= 0) {
+            return List.of();
+        }
+        try {
+            return store.top(window, limit);
+        } catch (Exception e) {
+            logger.warn("Không đọc được bảng xếp hạng bán chạy: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    // Đầu mỗi giờ trừ các bucket vừa trượt khỏi từng cửa sổ; bù luôn các giờ bị lỡ khi ứng dụng tắt
+    @Scheduled(cron = "0 0 * * * *")
+    public void rollover() {
+        long current = currentHour();
+        for (Window window : ALL_WINDOWS) {
+            if (!window.isRolling()) {
+                continue;
+            }
+            long through = current - window.hours;
+            long from = Math.max(store.expiredThrough(window) + 1, current - MAX_WINDOW_HOURS - window.hours);
+            for (long hour = from; hour <= through; hour++) {
+                store.expire(window, hour);
+            }
+            store.markExpired(window, through);
+        }
+        store.dropBucket(current - MAX_WINDOW_HOURS - 1);
+        // Cửa sổ trượt làm đổi thứ hạng dù không có sự kiện sản phẩm nào
+        catalogVersionService.bump(CatalogVersionService.BESTSELLING);
+    }
+
+    private LeaderboardStore selectStore() {
+        StringRedisTemplate redisTemplate = redisEnabled ? redisTemplateProvider.getIfAvailable() : null;
+        if (redisTemplate != null) {
+            try {
+                redisTemplate.hasKey("leaderboard:sold:all");
+                logger.info("Bảng xếp hạng bán chạy dùng Redis");
+                return new RedisLeaderboardStore(redisTemplate);
+            } catch (Exception e) {
+                logger.warn("Không kết nối được Redis, bảng xếp hạng bán chạy giữ trong bộ nhớ: {}", e.getMessage());
+            }
+        }
+        return new InMemoryLeaderboardStore();
+    }
+
+    // Nạp lần đầu: toàn thời gian từ cột soldQuantity, các cửa sổ từ đơn hoàn thành trong 30 ngày gần nhất
+    private void seed() {
+        Map<Long, Long> allTime = new HashMap<>();
+        for (Object[] row : productRepository.findSoldQuantities()) {
+            allTime.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        long current = currentHour();
+        store.add(allTime, current, List.of(Window.ALL_TIME));
+
+        Map<Long, Map<Long, Long>> byHour = new TreeMap<>();
+        LocalDateTime since = LocalDateTime.now(clock).minusHours(MAX_WINDOW_HOURS);
+        for (Object[] row : orderDetailRepository.findCompletedSalesSince(since)) {
+            long hour = toHour((LocalDateTime) row[2]);
+            byHour.computeIfAbsent(hour, k -> new HashMap<>())
+                    .merge((Long) row[0], ((Number) row[1]).longValue(), Long::sum);
+        }
+        byHour.forEach((hour, deltas) -> {
+            List<Window> targets = ALL_WINDOWS.stream()
+                    .filter(window -> window.isRolling() && hour > current - window.hours)
+                    .toList();
+            store.add(deltas, hour, targets);
+        });
+        for (Window window : ALL_WINDOWS) {
+            if (window.isRolling()) {
+                store.markExpired(window, current - window.hours);
+            }
+        }
+        logger.info("Đã nạp bảng xếp hạng bán chạy: {} sản phẩm, {} giờ có đơn hoàn thành", allTime.size(), byHour.size());
+    }
+
+    // Cho test điều khiển thời gian trượt cửa sổ
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    private long currentHour() {
+        return clock.millis() / HOUR_MILLIS;
+    }
+
+    private long toHour(LocalDateTime dateTime) {
+        return dateTime.atZone(clock.getZone()).toInstant().toEpochMilli() / HOUR_MILLIS;
+    }
+}
@@ -0,0 +1,525 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
+import com.sondv.phone.repository.ProductRepository;
+import com.sondv.phone.util.ProductCursor;
+import com.sondv.phone.util.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+// Chỉ mục sản phẩm trong bộ nhớ cho /api/products/filtered và /api/products/search: lọc giá, facet, sắp xếp, phân trang không cần truy vấn MySQL
+@Service
+@RequiredArgsConstructor
+public class CatalogIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogIndexService.class);
+
+    // Khóa sắp xếp theo giá được đóng gói thành long: (giá << POSITION_BITS) | vị trí
+    private static final int POSITION_BITS = 21;
+    private static final long MAX_PACKED_PRICE = (1L << (63 - POSITION_BITS)) - 1;
+    private static final long NO_DISCOUNT = Long.MIN_VALUE;
+
+    private final ProductRepository productRepository;
+
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile boolean ready = false;
+    // Thay đổi đến trong lúc rebuild đang đọc DB (id -> trạng thái mới, null = đã xóa), phát lại lên ảnh chụp mới khi hoán đổi
+    private final Set<Map<Long, Entry>> pendingRebuilds = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    @PostConstruct
+    public void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("Không thể khởi tạo chỉ mục sản phẩm, dùng truy vấn cơ sở dữ liệu thay thế", e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return snapshot.ids.length;
+    }
+
+    // Nạp lại toàn bộ chỉ mục (khởi động hoặc sau khi thay đổi hàng loạt)
+    public void rebuild() {
+        Map<Long, Entry> pending = new HashMap<>();
+        synchronized (writeLock) {
+            pendingRebuilds.add(pending);
+        }
+        int size;
+        try {
+            List<Product> products = productRepository.findAll();
+            Map<Long, Entry> entries = new HashMap<>(products.size() * 2);
+            for (Product product : products) {
+                entries.put(product.getId(), Entry.of(product));
+            }
+            synchronized (writeLock) {
+                pending.forEach((id, entry) -> {
+                    if (entry == null) {
+                        entries.remove(id);
+                    } else {
+                        entries.put(id, entry);
+                    }
+                });
+                snapshot = Snapshot.of(new ArrayList<>(entries.values()));
+                ready = true;
+                size = entries.size();
+            }
+        } finally {
+            synchronized (writeLock) {
+                pendingRebuilds.remove(pending);
+            }
+        }
+        logger.info("Đã nạp {} sản phẩm vào chỉ mục bộ nhớ", size);
+    }
+
+    // Nhận thay đổi sau khi transaction commit, trước bộ điều phối cache để các trang nạp lại thấy dữ liệu mới
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            remove(event.getProductId());
+        } else {
+            upsert(event.getProduct());
+        }
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event) {
+        if (event.isWholeCatalog()) {
+            rebuild();
+        } else {
+            upsertAll(event.getProducts());
+        }
+    }
+
+    public void upsert(Product product) {
+        Entry entry = Entry.of(product);
+        synchronized (writeLock) {
+            snapshot = snapshot.with(entry);
+            recordPending(entry.id(), entry);
+        }
+    }
+
+    public void upsertAll(Collection<Product> products) {
+        List<Entry> entries = products.stream().map(Entry::of).toList();
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            for (Entry entry : entries) {
+                current = current.with(entry);
+                recordPending(entry.id(), entry);
+            }
+            snapshot = current;
+        }
+    }
+
+    public void remove(Long productId) {
+        synchronized (writeLock) {
+            snapshot = snapshot.without(productId);
+            recordPending(productId, null);
+        }
+    }
+
+    // Gọi khi đang giữ writeLock
+    private void recordPending(long productId, Entry entry) {
+        for (Map<Long, Entry> pending : pendingRebuilds) {
+            pending.put(productId, entry);
+        }
+    }
+
+    public void rebuildAfterCommit() {
+        TransactionUtil.afterCommit(this::rebuild);
+    }
+
+    // candidateIds: id đã lọc theo từ khóa (tăng dần) từ ProductSearchIndex, null nếu không có từ khóa
+    public Result query(long[] candidateIds, BigDecimal minPrice, BigDecimal maxPrice, String sortBy, long offset, int limit) {
+        Snapshot s = snapshot;
+        long now = toEpochMillis(LocalDateTime.now());
+        int[] matched = filter(s, candidateIds, minPrice, maxPrice, null, null, now);
+        int m = matched.length;
+
+        int[] ordered = sort(s, matched, m, sortBy, now);
+
+        long start = Math.min(offset, m);
+        int end = (int) Math.min(start + limit, m);
+        long[] pageIds = new long[end - (int) start];
+        for (int i = (int) start; i < end; i++) {
+            pageIds[i - (int) start] = s.ids[ordered[i]];
+        }
+        return new Result(pageIds, m);
+    }
+
+    // Phân trang keyset: chỉ giữ các sản phẩm đứng sau con trỏ theo thứ tự sort rồi lấy tối đa limit id
+    public long[] queryAfter(long[] candidateIds, BigDecimal minPrice, BigDecimal maxPrice, String sort, ProductCursor after, int limit) {
+        Snapshot s = snapshot;
+        long now = toEpochMillis(LocalDateTime.now());
+        int[] matched = filter(s, candidateIds, minPrice, maxPrice, sort, after, now);
+        int[] ordered = sort(s, matched, matched.length, sort, now);
+        int size = Math.min(limit, ordered.length);
+        long[] pageIds = new long[size];
+        for (int i = 0; i < size; i++) {
+            pageIds[i] = s.ids[ordered[i]];
+        }
+        return pageIds;
+    }
+
+    // Tìm kiếm theo facet: lọc bằng AND/OR trên bitset và đếm số sản phẩm của từng giá trị facet trong cùng một lượt
+    public FacetResult facetSearch(long[] candidateIds, Map<String, Set<String>> selections, String sortBy, long offset, int limit) {
+        Snapshot s = snapshot;
+        long now = toEpochMillis(LocalDateTime.now());
+        FacetBitmaps facets = s.facets(now);
+        FacetBitmaps.Evaluation evaluation = facets.evaluate(
+                candidateIds != null ? s.positionsOf(candidateIds) : null, selections);
+        int[] matched = FacetBitmaps.positions(evaluation.matched());
+        int m = matched.length;
+        int[] ordered = sort(s, matched, m, sortBy, now);
+
+        int start = (int) Math.min(offset, m);
+        int end = (int) Math.min((long) start + limit, m);
+        long[] pageIds = new long[end - start];
+        for (int i = start; i < end; i++) {
+            pageIds[i - start] = s.ids[ordered[i]];
+        }
+        return new FacetResult(pageIds, m, evaluation.counts());
+    }
+
+    private int[] filter(Snapshot s, long[] candidateIds, BigDecimal minPrice, BigDecimal maxPrice,
+                         String sort, ProductCursor after, long now) {
+        long min = minPrice != null ? toMinorUnits(minPrice) : Long.MIN_VALUE;
+        long max = maxPrice != null ? toMinorUnits(maxPrice) : Long.MAX_VALUE;
+        long afterKey = after != null && after.key() != null
+                ? (ProductCursor.SORT_BESTSELLING.equals(sort) ? after.key().longValue() : toMinorUnits(after.key()))
+                : 0L;
+
+        int n = s.ids.length;
+        int[] matched = new int[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (candidateIds != null && Arrays.binarySearch(candidateIds, s.ids[i]) < 0) {
+                continue;
+            }
+            long price = s.effectivePrice(i, now);
+            if (price < min || price > max) {
+                continue;
+            }
+            if (after != null && !isAfter(s, i, price, sort, afterKey, after.id())) {
+                continue;
+            }
+            matched[m++] = i;
+        }
+        return Arrays.copyOf(matched, m);
+    }
+
+    private static boolean isAfter(Snapshot s, int pos, long price, String sort, long key, long lastId) {
+        long id = s.ids[pos];
+        return switch (sort) {
+            case ProductCursor.SORT_NEWEST -> id < lastId;
+            case ProductCursor.SORT_BESTSELLING -> s.soldQuantities[pos] < key || (s.soldQuantities[pos] == key && id > lastId);
+            case ProductCursor.SORT_PRICE_ASC -> price > key || (price == key && id > lastId);
+            case ProductCursor.SORT_PRICE_DESC -> price < key || (price == key && id > lastId);
+            default -> id > lastId;
+        };
+    }
+
+    private int[] sort(Snapshot s, int[] matched, int m, String sortBy, long now) {
+        String sort = sortBy != null ? sortBy.toLowerCase() : "";
+        int[] ordered = Arrays.copyOf(matched, m);
+        switch (sort) {
+            case "newest" -> {
+                // ids tăng dần nên chỉ cần đảo ngược
+                for (int i = 0, j = m - 1; i < j; i++, j--) {
+                    int tmp = ordered[i];
+                    ordered[i] = ordered[j];
+                    ordered[j] = tmp;
+                }
+            }
+            case "bestselling" -> {
+                long[] keys = new long[m];
+                for (int i = 0; i < m; i++) {
+                    int pos = ordered[i];
+                    keys[i] = ((long) (Integer.MAX_VALUE - s.soldQuantities[pos]) << 32) | pos;
+                }
+                Arrays.sort(keys);
+                for (int i = 0; i < m; i++) {
+                    ordered[i] = (int) keys[i];
+                }
+            }
+            case "priceasc", "pricedesc" -> sortByPrice(s, ordered, now, sort.equals("pricedesc"));
+            default -> {
+            }
+        }
+        return ordered;
+    }
+
+    private void sortByPrice(Snapshot s, int[] ordered, long now, boolean descending) {
+        int m = ordered.length;
+        long[] keys = new long[m];
+        boolean packable = s.ids.length < (1 << POSITION_BITS);
+        for (int i = 0; i < m && packable; i++) {
+            long price = s.effectivePrice(ordered[i], now);
+            if (price < 0 || price > MAX_PACKED_PRICE) {
+                packable = false;
+            } else {
+                long key = descending ? MAX_PACKED_PRICE - price : price;
+                keys[i] = (key << POSITION_BITS) | ordered[i];
+            }
+        }
+        if (packable) {
+            Arrays.sort(keys);
+            long mask = (1L << POSITION_BITS) - 1;
+            for (int i = 0; i < m; i++) {
+                ordered[i] = (int) (keys[i] & mask);
+            }
+            return;
+        }
+        Integer[] boxed = Arrays.stream(ordered).boxed().toArray(Integer[]::new);
+        Comparator<Integer> byPrice = Comparator.comparingLong(pos -> s.effectivePrice(pos, now));
+        Arrays.sort(boxed, descending ? byPrice.reversed() : byPrice);
+        for (int i = 0; i < m; i++) {
+            ordered[i] = boxed[i];
+        }
+    }
+
+    static long toMinorUnits(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // Gom sản phẩm theo danh mục kèm giá hiện hành và số lượng bán; categoryIds == null nghĩa là mọi danh mục
+    public Map<Long, CategorySlice> categorySlices(Set<Long> categoryIds) {
+        Snapshot s = snapshot;
+        long now = toEpochMillis(LocalDateTime.now());
+        Map<Long, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < s.ids.length; i++) {
+            if (categoryIds == null || categoryIds.contains(s.categoryIds[i])) {
+                positions.computeIfAbsent(s.categoryIds[i], k -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<Long, CategorySlice> slices = new HashMap<>();
+        positions.forEach((categoryId, list) -> {
+            int n = list.size();
+            long[] ids = new long[n];
+            long[] prices = new long[n];
+            int[] sold = new int[n];
+            for (int k = 0; k < n; k++) {
+                int pos = list.get(k);
+                ids[k] = s.ids[pos];
+                prices[k] = s.effectivePrice(pos, now);
+                sold[k] = s.soldQuantities[pos];
+            }
+            slices.put(categoryId, new CategorySlice(ids, prices, sold));
+        });
+        return slices;
+    }
+
+    public record Result(long[] ids, int total) {
+    }
+
+    public record FacetResult(long[] ids, int total, Map<String, Map<String, Integer>> counts) {
+    }
+
+    public record CategorySlice(long[] ids, long[] prices, int[] soldQuantities) {
+    }
+
+    private record Entry(long id, long categoryId, long supplierId,
+                         long sellingPrice, long discountedPrice, long discountStart, long discountEnd,
+                         int soldQuantity, int stock, boolean featured) {
+
+        static Entry of(Product product) {
+            boolean hasDiscount = product.getDiscountedPrice() != null
+                    && product.getDiscountStartDate() != null
+                    && product.getDiscountEndDate() != null;
+            return new Entry(
+                    product.getId(),
+                    product.getCategory() != null && product.getCategory().getId() != null ? product.getCategory().getId() : 0L,
+                    product.getSupplier() != null && product.getSupplier().getId() != null ? product.getSupplier().getId() : 0L,
+                    product.getSellingPrice() != null ? toMinorUnits(product.getSellingPrice()) : 0L,
+                    hasDiscount ? toMinorUnits(product.getDiscountedPrice()) : NO_DISCOUNT,
+                    hasDiscount ? toEpochMillis(product.getDiscountStartDate()) : 0L,
+                    hasDiscount ? toEpochMillis(product.getDiscountEndDate()) : 0L,
+                    product.getSoldQuantity() != null ? product.getSoldQuantity() : 0,
+                    product.getStock() != null ? product.getStock() : 0,
+                    product.isFeatured()
+            );
+        }
+    }
+
+    // Ảnh chụp bất biến, lưu theo cột bằng mảng nguyên thủy, sắp xếp theo id tăng dần
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(0);
+
+        final long[] ids;
+        final long[] categoryIds;
+        final long[] supplierIds;
+        final long[] sellingPrices;
+        final long[] discountedPrices;
+        final long[] discountStarts;
+        final long[] discountEnds;
+        final int[] soldQuantities;
+        final int[] stocks;
+        final boolean[] featured;
+
+        // Bitset facet dựng lười ở lần tìm kiếm đầu tiên trên ảnh chụp này
+        private volatile FacetBitmaps facets;
+
+        private Snapshot(int size) {
+            ids = new long[size];
+            categoryIds = new long[size];
+            supplierIds = new long[size];
+            sellingPrices = new long[size];
+            discountedPrices = new long[size];
+            discountStarts = new long[size];
+            discountEnds = new long[size];
+            soldQuantities = new int[size];
+            stocks = new int[size];
+            featured = new boolean[size];
+        }
+
+        static Snapshot of(List<Entry> entries) {
+            List<Entry> sorted = new ArrayList<>(entries);
+            sorted.sort(Comparator.comparingLong(Entry::id));
+            Snapshot s = new Snapshot(sorted.size());
+            for (int i = 0; i < sorted.size(); i++) {
+                s.set(i, sorted.get(i));
+            }
+            return s;
+        }
+
+        long effectivePrice(int pos, long now) {
+            return hasActiveDiscount(pos, now) ? discountedPrices[pos] : sellingPrices[pos];
+        }
+
+        boolean hasActiveDiscount(int pos, long now) {
+            return discountedPrices[pos] != NO_DISCOUNT && now >= discountStarts[pos] && now <= discountEnds[pos];
+        }
+
+        FacetBitmaps facets(long now) {
+            FacetBitmaps current = facets;
+            if (current != null && now < current.validUntil()) {
+                return current;
+            }
+            int n = ids.length;
+            long[] prices = new long[n];
+            boolean[] discounted = new boolean[n];
+            // Giá hiện hành và cờ giảm giá chỉ đúng tới mốc bắt đầu/kết thúc giảm giá gần nhất
+            long validUntil = Long.MAX_VALUE;
+            for (int pos = 0; pos < n; pos++) {
+                prices[pos] = effectivePrice(pos, now);
+                discounted[pos] = hasActiveDiscount(pos, now);
+                if (discountedPrices[pos] != NO_DISCOUNT) {
+                    if (discountStarts[pos] > now) {
+                        validUntil = Math.min(validUntil, discountStarts[pos]);
+                    } else if (discountEnds[pos] >= now) {
+                        validUntil = Math.min(validUntil, discountEnds[pos] + 1);
+                    }
+                }
+            }
+            current = new FacetBitmaps(n, validUntil, categoryIds, supplierIds, prices, discounted, stocks, featured);
+            facets = current;
+            return current;
+        }
+
+        // Bitset vị trí của các id (tăng dần) có trong ảnh chụp
+        long[] positionsOf(long[] sortedIds) {
+            long[] bits = new long[(ids.length + 63) >>> 6];
+            int i = 0;
+            int j = 0;
+            while (i < ids.length && j < sortedIds.length) {
+                if (ids[i] == sortedIds[j]) {
+                    FacetBitmaps.set(bits, i);
+                    i++;
+                    j++;
+                } else if (ids[i] < sortedIds[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return bits;
+        }
+
+        Snapshot with(Entry entry) {
+            int pos = Arrays.binarySearch(ids, entry.id());
+            if (pos >= 0) {
+                Snapshot s = copy(ids.length, -1);
+                s.set(pos, entry);
+                return s;
+            }
+            int insertAt = -pos - 1;
+            Snapshot s = copy(ids.length + 1, insertAt);
+            s.set(insertAt, entry);
+            return s;
+        }
+
+        Snapshot without(long id) {
+            int pos = Arrays.binarySearch(ids, id);
+            if (pos < 0) {
+                return this;
+            }
+            Snapshot s = new Snapshot(ids.length - 1);
+            copyRange(this, 0, s, 0, pos);
+            copyRange(this, pos + 1, s, pos, ids.length - pos - 1);
+            return s;
+        }
+
+        // Sao chép sang mảng mới; nếu gap >= 0 thì chừa một ô trống tại vị trí gap
+        private Snapshot copy(int size, int gap) {
+            Snapshot s = new Snapshot(size);
+            if (gap < 0) {
+                copyRange(this, 0, s, 0, ids.length);
+            } else {
+                copyRange(this, 0, s, 0, gap);
+                copyRange(this, gap, s, gap + 1, ids.length - gap);
+            }
+            return s;
+        }
+
+        private static void copyRange(Snapshot from, int fromPos, Snapshot to, int toPos, int length) {
+            System.arraycopy(from.ids, fromPos, to.ids, toPos, length);
+            System.arraycopy(from.categoryIds, fromPos, to.categoryIds, toPos, length);
+            System.arraycopy(from.supplierIds, fromPos, to.supplierIds, toPos, length);
+            System.arraycopy(from.sellingPrices, fromPos, to.sellingPrices, toPos, length);
+            System.arraycopy(from.discountedPrices, fromPos, to.discountedPrices, toPos, length);
+            System.arraycopy(from.discountStarts, fromPos, to.discountStarts, toPos, length);
+            System.arraycopy(from.discountEnds, fromPos, to.discountEnds, toPos, length);
+            System.arraycopy(from.soldQuantities, fromPos, to.soldQuantities, toPos, length);
+            System.arraycopy(from.stocks, fromPos, to.stocks, toPos, length);
+            System.arraycopy(from.featured, fromPos, to.featured, toPos, length);
+        }
+
+        private void set(int pos, Entry entry) {
+            ids[pos] = entry.id();
+            categoryIds[pos] = entry.categoryId();
+            supplierIds[pos] = entry.supplierId();
+            sellingPrices[pos] = entry.sellingPrice();
+            discountedPrices[pos] = entry.discountedPrice();
+            discountStarts[pos] = entry.discountStart();
+            discountEnds[pos] = entry.discountEnd();
+            soldQuantities[pos] = entry.soldQuantity();
+            stocks[pos] = entry.stock();
+            featured[pos] = entry.featured();
+        }
+    }
+}
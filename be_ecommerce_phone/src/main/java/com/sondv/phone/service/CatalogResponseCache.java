@@ -0,0 +1,104 @@
+package com.sondv.phone.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+// Bộ đệm thân phản hồi cho các widget danh mục đọc nhiều nhất: JSON (và bản gzip) được mã hóa sẵn thành byte[]
+// theo phiên bản của CatalogVersionService, trả thẳng ra output stream mà không qua Jackson/nén lại mỗi request.
+@Component
+public class CatalogResponseCache {
+
+    private static final int MAX_ENTRIES = 256;
+    // Thân nhỏ hơn mức này nén không có lợi (cùng ngưỡng mặc định của server.compression)
+    private static final int GZIP_MIN_BYTES = 2048;
+
+    private final CatalogVersionService catalogVersionService;
+    private final ObjectMapper objectMapper;
+    private final boolean gzipEnabled;
+
+    private final Cache<String, Entry> entries = Caffeine.newBuilder()
+            .maximumSize(MAX_ENTRIES)
+            .build();
+
+    public CatalogResponseCache(CatalogVersionService catalogVersionService, ObjectMapper objectMapper,
+                                @Value("${catalog.response-cache.gzip:true}") boolean gzipEnabled) {
+        this.catalogVersionService = catalogVersionService;
+        this.objectMapper = objectMapper;
+        this.gzipEnabled = gzipEnabled;
+    }
+
+    // list: tên danh sách trong CatalogVersionService; variant: phần tham số làm khác thân phản hồi (limit, window...)
+    public ResponseEntity<byte[]> respond(String list, String variant, HttpServletRequest request, Supplier<?> loader) {
+        String key = list + "?" + variant;
+        // Đọc phiên bản trước khi nạp: nếu dữ liệu đổi giữa chừng, bản lưu mang phiên bản cũ và sẽ bị nạp lại ở lần sau
+        String version = catalogVersionService.listETag(list);
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null || !entry.version().equals(version)) {
+            entry = encode(version, loader.get());
+            entries.put(key, entry);
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (entry.gzip() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            // Có Content-Encoding nên Tomcat không nén thêm lần nữa
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(entry.gzip());
+        }
+        return response.body(entry.json());
+    }
+
+    Entry encode(String version, Object body) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            byte[] gzip = gzipEnabled && json.length >= GZIP_MIN_BYTES ? gzip(json) : null;
+            return new Entry(version, json, gzip);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim();
+            // gzip;q=0 nghĩa là client từ chối gzip
+            boolean refused = tokens.length > 1 && tokens[1].trim().matches("q=0(\\.0*)?");
+            if (coding.equalsIgnoreCase("gzip")) {
+                return !refused;
+            }
+            if (coding.equals("*")) {
+                wildcard = !refused;
+            }
+        }
+        return wildcard;
+    }
+
+    record Entry(String version, byte[] json, byte[] gzip) {
+    }
+}
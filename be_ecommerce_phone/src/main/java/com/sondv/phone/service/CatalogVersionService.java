@@ -0,0 +1,127 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Số phiên bản tăng dần cho từng sản phẩm và từng danh sách, dùng làm ETag cho các GET của danh mục sản phẩm.
+// Mọi phiên bản lấy từ cùng một bộ đếm; bootId phân biệt các lần khởi động để ETag cũ không bao giờ khớp nhầm.
+@Service
+@RequiredArgsConstructor
+public class CatalogVersionService {
+
+    public static final String FEATURED = "featured";
+    public static final String NEWEST = "newest";
+    public static final String BESTSELLING = "bestselling";
+    public static final String RELATED = "related";
+    public static final String CATEGORIES = "categories";
+    // Danh sách/tìm kiếm/lọc phụ thuộc toàn bộ sản phẩm
+    public static final String CATALOG = "catalog";
+
+    private static final String PRODUCT_PREFIX = "product:";
+
+    // Các trường xuất hiện trong ProductSummaryDTO của các danh sách
+    private static final Set<String> SUMMARY_FIELDS = Set.of(
+            ProductChangedEvent.NAME, ProductChangedEvent.DESCRIPTION, ProductChangedEvent.PRICE,
+            ProductChangedEvent.DISCOUNT, ProductChangedEvent.FEATURED, ProductChangedEvent.STOCK,
+            ProductChangedEvent.SOLD_QUANTITY, ProductChangedEvent.RATING, ProductChangedEvent.IMAGES);
+
+    private final ProductRankingIndex productRankingIndex;
+
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    // Thay đổi toàn bộ danh mục nâng mốc chung thay vì từng khóa
+    private volatile long epoch = 0L;
+
+    // Chi tiết sản phẩm có kèm số sản phẩm của danh mục nên cũng đổi theo phiên bản danh mục
+    public String productETag(long productId) {
+        return eTag(Math.max(version(PRODUCT_PREFIX + productId), version(CATEGORIES)));
+    }
+
+    public String listETag(String list) {
+        return eTag(version(list));
+    }
+
+    public void bump(String list) {
+        versions.put(list, sequence.incrementAndGet());
+    }
+
+    // Sau bộ điều phối cache (@Order(100)): phiên bản mới chỉ xuất hiện khi cache đã bỏ dữ liệu cũ
+    @Order(200)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        ProductChangedEvent.Type type = event.getType();
+        boolean membershipChanged = type != ProductChangedEvent.Type.UPDATED;
+        bump(PRODUCT_PREFIX + event.getProductId());
+        bump(CATALOG);
+        bump(RELATED);
+        if (membershipChanged) {
+            bump(CATEGORIES);
+            bump(NEWEST);
+        }
+        if (!membershipChanged && event.getChangedFields().stream().noneMatch(SUMMARY_FIELDS::contains)) {
+            return;
+        }
+        Product product = event.getProduct();
+        if (event.hasChanged(ProductChangedEvent.FEATURED) || (product != null && product.isFeatured())) {
+            bump(FEATURED);
+        }
+        if (!membershipChanged && isNewest(event.getProductId())) {
+            bump(NEWEST);
+        }
+        // Truy vấn dự phòng của bán chạy có thể lấy cả sản phẩm chưa bán được nên không lọc theo soldQuantity
+        bump(BESTSELLING);
+    }
+
+    @Order(200)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event) {
+        if (event.isWholeCatalog()) {
+            epoch = sequence.incrementAndGet();
+            return;
+        }
+        bump(CATALOG);
+        bump(RELATED);
+        bump(BESTSELLING);
+        for (Product product : event.getProducts()) {
+            bump(PRODUCT_PREFIX + product.getId());
+            if (product.isFeatured() || event.hasChanged(ProductChangedEvent.FEATURED)) {
+                bump(FEATURED);
+            }
+            if (isNewest(product.getId())) {
+                bump(NEWEST);
+            }
+        }
+    }
+
+    private long version(String key) {
+        return Math.max(versions.getOrDefault(key, 0L), epoch);
+    }
+
+    private String eTag(long version) {
+        return "\"" + bootId + "-" + Long.toString(version, 36) + "\"";
+    }
+
+    private boolean isNewest(long productId) {
+        long[] ids = productRankingIndex.newestIds(ProductRankingIndex.CAPACITY);
+        if (ids == null) {
+            return true;
+        }
+        for (long id : ids) {
+            if (id == productId) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -4,6 +4,7 @@ import com.sondv.phone.dto.CategoryDTO;
 import com.sondv.phone.entity.Category;
 import com.sondv.phone.entity.Product;
 import com.sondv.phone.repository.CategoryRepository;
+import com.sondv.phone.util.TransactionUtil;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.cache.annotation.CacheEvict;
@@ -20,16 +21,12 @@ import java.util.Optional;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final CatalogVersionService catalogVersionService;
 
     @Cacheable(value = "categories")
     @Transactional
     public List<CategoryDTO> getAllCategories() {
-        List<Category> categories = categoryRepository.findAll();
-        List<CategoryDTO> result = new ArrayList<>();
-        for (Category c : categories) {
-            result.add(new CategoryDTO(c));
-        }
-        return result;
+        return categoryRepository.findAllWithProductCount();
     }
 
     public List<Product> getProductsByCategoryId(Long categoryId) {
@@ -51,6 +48,7 @@ public class CategoryService {
         Category category = new Category();
         category.setName(name);
         categoryRepository.save(category);
+        bumpVersionAfterCommit();
         return "Thêm danh mục thành công!";
     }
 
@@ -61,6 +59,7 @@ public class CategoryService {
                 .orElseThrow(() -> new RuntimeException("Danh mục không tồn tại!"));
         category.setName(name);
         categoryRepository.save(category);
+        bumpVersionAfterCommit();
         return "Cập nhật danh mục thành công!";
     }
 
@@ -73,6 +72,12 @@ public class CategoryService {
             return "Không thể xóa danh mục vì đang chứa sản phẩm!";
         }
         categoryRepository.delete(category);
+        bumpVersionAfterCommit();
         return "Xóa danh mục thành công!";
     }
+
+    // ETag của /api/categories và chi tiết sản phẩm (tên danh mục) đổi khi transaction đã commit
+    private void bumpVersionAfterCommit() {
+        TransactionUtil.afterCommit(() -> catalogVersionService.bump(CatalogVersionService.CATEGORIES));
+    }
 }
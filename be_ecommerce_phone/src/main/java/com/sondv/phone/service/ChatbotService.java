@@ -33,6 +33,7 @@ public class ChatbotService {
     private static final Logger logger = LoggerFactory.getLogger(ChatbotService.class);
 
     private final ProductRepository productRepository;
+    private final ProductSearchIndex productSearchIndex;
     private final MessageRepository messageRepository;
     private final OpenAiClient openAiClient;
 
@@ -115,8 +116,8 @@ public class ChatbotService {
             }
             case "comparison" -> {
                 String[] keywords = extractComparisonKeywords(userMessage);
-                List<Product> products1 = productRepository.findTop2ByNameContainingIgnoreCase(keywords[0]);
-                List<Product> products2 = productRepository.findTop2ByNameContainingIgnoreCase(keywords[1]);
+                List<Product> products1 = findTopByKeyword(keywords[0], 2);
+                List<Product> products2 = findTopByKeyword(keywords[1], 2);
                 if (!products1.isEmpty() && !products2.isEmpty()) {
                     productIds.add(products1.get(0).getId());
                     productIds.add(products2.get(0).getId());
@@ -333,6 +334,13 @@ public class ChatbotService {
 
     // Restored method: findProductsByKeyword
     private List<Product> findProductsByKeyword(String keyword) {
+        if (productSearchIndex.isReady()) {
+            List<Product> indexed = loadInOrder(productSearchIndex.search(keyword), Integer.MAX_VALUE);
+            if (!indexed.isEmpty()) {
+                return indexed;
+            }
+        }
+
         List<Product> results = productRepository.findByNameContainingIgnoreCase(keyword);
         if (!results.isEmpty()) {
             return results;
@@ -350,16 +358,41 @@ public class ChatbotService {
         return results;
     }
 
+    // Lấy tối đa limit sản phẩm theo chỉ mục tìm kiếm (không phân biệt dấu), fallback LIKE khi chỉ mục chưa sẵn sàng
+    private List<Product> findTopByKeyword(String keyword, int limit) {
+        if (productSearchIndex.isReady()) {
+            return loadInOrder(productSearchIndex.search(keyword), limit);
+        }
+        List<Product> results = limit <= 2
+                ? productRepository.findTop2ByNameContainingIgnoreCase(keyword)
+                : productRepository.findTop3ByNameContainingIgnoreCase(keyword);
+        return results.size() > limit ? results.subList(0, limit) : results;
+    }
+
+    private List<Product> loadInOrder(long[] ids, int limit) {
+        int size = Math.min(ids.length, limit);
+        if (size == 0) {
+            return new ArrayList<>();
+        }
+        List<Long> idList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            idList.add(ids[i]);
+        }
+        Map<Long, Product> byId = productRepository.findAllById(idList).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        return idList.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
     // Restored method: findSimilarProducts
     private List<Product> findSimilarProducts(String keyword) {
         if (keyword.toLowerCase().contains("iphone") || keyword.toLowerCase().contains("apple")) {
-            return productRepository.findTop3ByNameContainingIgnoreCase("iphone");
+            return findTopByKeyword("iphone", 3);
         } else if (keyword.toLowerCase().contains("samsung") || keyword.toLowerCase().contains("galaxy")) {
-            return productRepository.findTop3ByNameContainingIgnoreCase("samsung");
+            return findTopByKeyword("samsung", 3);
         } else if (keyword.toLowerCase().contains("xiaomi") || keyword.toLowerCase().contains("redmi")) {
-            return productRepository.findTop3ByNameContainingIgnoreCase("xiaomi");
+            return findTopByKeyword("xiaomi", 3);
         } else if (keyword.toLowerCase().contains("oppo")) {
-            return productRepository.findTop3ByNameContainingIgnoreCase("oppo");
+            return findTopByKeyword("oppo", 3);
         } else {
             return productRepository.findTop3ByOrderBySoldQuantityDesc();
         }
@@ -1,33 +1,59 @@
 package com.sondv.phone.service;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.*;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 
 @Service
 public class CloudinaryService {
     private static final Logger logger = LoggerFactory.getLogger(CloudinaryService.class);
 
-    @Value("${CLOUDINARY_UPLOAD_URL}")
-    private String CLOUDINARY_UPLOAD_URL;
-
-    @Value("${CLOUDINARY_UPLOAD_PRESET}")
-    private String CLOUDINARY_UPLOAD_PRESET;
-
+    private final String CLOUDINARY_UPLOAD_URL;
+    private final String CLOUDINARY_UPLOAD_PRESET;
     private final RestTemplate restTemplate;
-
-    public CloudinaryService(RestTemplate restTemplate) {
+    private final ExecutorService uploadExecutor;
+
+    // Pool upload là của riêng service, không khai báo thành bean: một bean Executor sẽ khiến Boot bỏ
+    // applicationTaskExecutor và @Async chuyển sang luồng duy nhất của taskScheduler.
+    // Khi hàng đợi đầy thì luồng request tự upload (tự điều tiết).
+    public CloudinaryService(RestTemplate restTemplate,
+                             @Value("${image.upload.threads:4}") int uploadThreads,
+                             @Value("${image.upload.queue-capacity:64}") int uploadQueueCapacity,
+                             @Value("${CLOUDINARY_UPLOAD_URL}") String uploadUrl,
+                             @Value("${CLOUDINARY_UPLOAD_PRESET}") String uploadPreset) {
         this.restTemplate = restTemplate;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(uploadThreads, uploadThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(uploadQueueCapacity), new CustomizableThreadFactory("image-upload-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        this.uploadExecutor = executor;
+        this.CLOUDINARY_UPLOAD_URL = uploadUrl;
+        this.CLOUDINARY_UPLOAD_PRESET = uploadPreset;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdown();
+    }
+
+    // Upload song song trên executor có giới hạn; kết quả giữ đúng thứ tự file, null ở vị trí upload lỗi
+    public List<String> uploadImagesToCloudinary(List<MultipartFile> files) {
+        List<CompletableFuture<String>> uploads = files.stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> uploadImageToCloudinary(file), uploadExecutor))
+                .toList();
+        return uploads.stream().map(CompletableFuture::join).toList();
     }
 
     public String uploadImageToCloudinary(MultipartFile file) {
@@ -42,14 +68,8 @@ public class CloudinaryService {
 
             MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
 
-            ByteArrayResource byteArrayResource = new ByteArrayResource(file.getBytes()) {
-                @Override
-                public String getFilename() {
-                    return file.getOriginalFilename();
-                }
-            };
-
-            body.add("file", byteArrayResource);
+            // Resource đọc thẳng từ InputStream của phần multipart (file tạm của servlet), không nạp cả file vào heap
+            body.add("file", file.getResource());
             body.add("upload_preset", CLOUDINARY_UPLOAD_PRESET);
 
             HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
@@ -62,12 +82,10 @@ public class CloudinaryService {
             } else {
                 logger.error("Upload ảnh thất bại, mã phản hồi: {}", response.getStatusCode());
             }
-        } catch (IOException e) {
-            logger.error("Lỗi khi đọc file upload: {}", e.getMessage(), e);
         } catch (Exception e) {
             logger.error("Lỗi không xác định khi upload ảnh: {}", e.getMessage(), e);
         }
 
         return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,220 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
+import com.sondv.phone.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledFuture;
+
+// Vòng đời khuyến mãi: giữ dòng thời gian các mốc bắt đầu/kết thúc trong bộ nhớ (nạp lúc khởi động, cập nhật khi sửa giảm giá),
+// chỉ hẹn giờ cho mốc gần nhất và tại mỗi mốc chạy một câu UPDATE cho đúng các sản phẩm qua mốc đó.
+@Service
+@RequiredArgsConstructor
+public class DiscountLifecycleScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiscountLifecycleScheduler.class);
+
+    private static final List<String> PRODUCT_CACHES = List.of(
+            "products", "product", "featuredProducts", "newestProducts", "bestSellingProducts");
+
+    private final ProductRepository productRepository;
+    private final TaskScheduler taskScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // mốc -> các sản phẩm đổi giá tại mốc đó
+    private final NavigableMap<Instant, Set<Long>> timeline = new ConcurrentSkipListMap<>();
+    // sản phẩm -> các mốc đang đăng ký, để gỡ khi khuyến mãi bị sửa
+    private final Map<Long, List<Instant>> boundariesByProduct = new HashMap<>();
+
+    private ScheduledFuture<?> nextRun;
+    private Instant nextRunAt;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reload();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            unregister(event.getProductId());
+            arm();
+        } else if (event.hasChanged(ProductChangedEvent.PRICE) || event.hasChanged(ProductChangedEvent.DISCOUNT)) {
+            register(event.getProduct());
+            arm();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event) {
+        if (!event.hasChanged(ProductChangedEvent.PRICE) && !event.hasChanged(ProductChangedEvent.DISCOUNT)) {
+            return;
+        }
+        if (event.isWholeCatalog()) {
+            reload();
+            return;
+        }
+        event.getProducts().forEach(this::register);
+        arm();
+    }
+
+    // Đồng bộ cơ sở dữ liệu với thời điểm hiện tại (bù các mốc lỡ khi ứng dụng tắt) rồi nạp lại dòng thời gian
+    private void reload() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            Integer cleared = transactionTemplate.execute(status -> {
+                int count = productRepository.clearEndedDiscounts(now);
+                productRepository.refreshEffectivePrices(now);
+                return count;
+            });
+            evictProductCaches();
+            logger.info("Đã xóa {} khuyến mãi hết hạn và cập nhật giá hiện hành lúc {}", cleared, now);
+        } catch (Exception e) {
+            logger.error("Không thể đồng bộ giá khuyến mãi", e);
+        }
+
+        List<Object[]> windows;
+        try {
+            windows = productRepository.findOpenDiscountWindows(now);
+        } catch (Exception e) {
+            logger.error("Không thể nạp mốc khuyến mãi", e);
+            return;
+        }
+        synchronized (this) {
+            timeline.clear();
+            boundariesByProduct.clear();
+            for (Object[] row : windows) {
+                register((Long) row[0], (LocalDateTime) row[1], (LocalDateTime) row[2]);
+            }
+            logger.info("Đã nạp {} mốc khuyến mãi cho {} sản phẩm", timeline.size(), boundariesByProduct.size());
+        }
+        arm();
+    }
+
+    private void register(Product product) {
+        if (product.getDiscountedPrice() == null) {
+            register(product.getId(), null, null);
+        } else {
+            register(product.getId(), product.getDiscountStartDate(), product.getDiscountEndDate());
+        }
+    }
+
+    private synchronized void register(Long productId, LocalDateTime start, LocalDateTime end) {
+        unregister(productId);
+        if (end == null) {
+            return;
+        }
+        Instant now = Instant.now();
+        List<Instant> boundaries = new ArrayList<>(2);
+        Instant startAt = toInstant(start);
+        if (startAt != null && startAt.isAfter(now)) {
+            boundaries.add(startAt);
+        }
+        // Giá khuyến mãi còn hiệu lực đến hết discountEndDate nên mốc lật là ngay sau thời điểm đó
+        boundaries.add(toInstant(end).plusMillis(1));
+        for (Instant boundary : boundaries) {
+            timeline.computeIfAbsent(boundary, k -> new HashSet<>()).add(productId);
+        }
+        boundariesByProduct.put(productId, boundaries);
+    }
+
+    private synchronized void unregister(Long productId) {
+        List<Instant> previous = boundariesByProduct.remove(productId);
+        if (previous == null) {
+            return;
+        }
+        for (Instant boundary : previous) {
+            Set<Long> ids = timeline.get(boundary);
+            if (ids != null) {
+                ids.remove(productId);
+                if (ids.isEmpty()) {
+                    timeline.remove(boundary);
+                }
+            }
+        }
+    }
+
+    // Chỉ giữ một lần hẹn giờ cho mốc sớm nhất
+    private synchronized void arm() {
+        Instant head = timeline.isEmpty() ? null : timeline.firstKey();
+        if (Objects.equals(head, nextRunAt) && nextRun != null && !nextRun.isDone()) {
+            return;
+        }
+        if (nextRun != null) {
+            nextRun.cancel(false);
+        }
+        nextRun = head != null ? taskScheduler.schedule(this::fire, head) : null;
+        nextRunAt = head;
+        if (head != null) {
+            logger.debug("Mốc khuyến mãi tiếp theo: {}", head);
+        }
+    }
+
+    private void fire() {
+        Set<Long> due = new HashSet<>();
+        synchronized (this) {
+            Instant now = Instant.now();
+            NavigableMap<Instant, Set<Long>> reached = timeline.headMap(now, true);
+            reached.values().forEach(due::addAll);
+            reached.clear();
+            for (Long id : due) {
+                List<Instant> remaining = boundariesByProduct.get(id);
+                if (remaining != null) {
+                    remaining.removeIf(boundary -> !boundary.isAfter(now));
+                    if (remaining.isEmpty()) {
+                        boundariesByProduct.remove(id);
+                    }
+                }
+            }
+            nextRun = null;
+            nextRunAt = null;
+        }
+
+        if (!due.isEmpty()) {
+            try {
+                LocalDateTime now = LocalDateTime.now();
+                Integer updated = transactionTemplate.execute(status -> productRepository.applyDiscountBoundary(due, now));
+                logger.info("Đã cập nhật giá khuyến mãi cho {} sản phẩm tại mốc {}", updated, now);
+                // Nạp lại các sản phẩm vừa đổi để chỉ mục và cache chỉ làm mới đúng những sản phẩm này
+                List<Product> changed = productRepository.findAllById(due);
+                eventPublisher.publishEvent(new ProductsBulkChangedEvent(changed, Set.of(ProductChangedEvent.DISCOUNT)));
+            } catch (Exception e) {
+                logger.error("Không thể áp dụng mốc khuyến mãi", e);
+            }
+        }
+        arm();
+    }
+
+    private void evictProductCaches() {
+        for (String name : PRODUCT_CACHES) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    private static Instant toInstant(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant() : null;
+    }
+}
@@ -6,6 +6,7 @@ import com.sondv.phone.entity.Discount;
 import com.sondv.phone.entity.Product;
 import com.sondv.phone.repository.DiscountRepository;
 import com.sondv.phone.repository.ProductRepository;
+import com.sondv.phone.util.PriceUtil;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.cache.annotation.CacheEvict;
@@ -15,8 +16,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Optional;
 
@@ -100,20 +101,9 @@ public class DiscountService {
                     .orElseThrow(() -> new IllegalArgumentException("Sản phẩm không tồn tại hoặc đã bị xoá."));
 
             // ❌ Không áp mã nếu sản phẩm đang được khuyến mãi
-            if (product.getDiscountedPrice() != null &&
-                    product.getDiscountStartDate() != null &&
-                    product.getDiscountEndDate() != null) {
-
-                // Chuyển LocalDateTime -> OffsetDateTime để so sánh
-                OffsetDateTime start = product.getDiscountStartDate().atOffset(ZoneOffset.UTC);
-                OffsetDateTime end = product.getDiscountEndDate().atOffset(ZoneOffset.UTC);
-
-                boolean isDiscountActive = !now.isBefore(start) && !now.isAfter(end);
-
-                if (isDiscountActive) {
-                    throw new IllegalArgumentException(
-                            "Sản phẩm \"" + product.getName() + "\" đang khuyến mãi. Không thể áp thêm mã giảm giá.");
-                }
+            if (PriceUtil.isDiscountActive(product, LocalDateTime.now())) {
+                throw new IllegalArgumentException(
+                        "Sản phẩm \"" + product.getName() + "\" đang khuyến mãi. Không thể áp thêm mã giảm giá.");
             }
 
             BigDecimal price = product.getSellingPrice(); // dùng giá gốc để tính điều kiện
@@ -133,16 +123,4 @@ public class DiscountService {
         return new DiscountApplyResponse(originalTotal, discountAmount, finalTotal, "Mã giảm giá đã được áp dụng.");
     }
 
-    private BigDecimal resolveCurrentPrice(Product product) {
-        OffsetDateTime now = OffsetDateTime.now();
-
-        boolean inDiscountPeriod = product.getDiscountedPrice() != null
-                && product.getDiscountStartDate() != null
-                && product.getDiscountEndDate() != null
-                && now.isAfter(product.getDiscountStartDate().atOffset(now.getOffset()))
-                && now.isBefore(product.getDiscountEndDate().atOffset(now.getOffset()));
-
-        return inDiscountPeriod ? product.getDiscountedPrice() : product.getSellingPrice();
-    }
-
 }
\ No newline at end of file
@@ -0,0 +1,209 @@
+package com.sondv.phone.service;
+
+import java.util.*;
+
+// Bitset cho từng giá trị facet, đánh theo vị trí trong ảnh chụp của CatalogIndexService (mỗi long[] là một bitset).
+// Bất biến; được dựng lại khi ảnh chụp đổi hoặc khi qua mốc bắt đầu/kết thúc giảm giá (validUntil).
+final class FacetBitmaps {
+
+    static final String CATEGORY = "category";
+    static final String SUPPLIER = "supplier";
+    static final String PRICE = "price";
+    static final String IN_STOCK = "inStock";
+    static final String FEATURED = "featured";
+    static final String HAS_DISCOUNT = "hasDiscount";
+
+    // Mốc khoảng giá (VND), khoảng cuối không có cận trên
+    private static final long[] PRICE_BOUNDS = {2_000_000L, 5_000_000L, 10_000_000L, 20_000_000L};
+    private static final String[] PRICE_BUCKETS = priceBucketKeys();
+
+    private final int size;
+    private final int words;
+    private final long validUntil;
+    private final Map<String, Map<String, long[]>> bitmaps = new LinkedHashMap<>();
+
+    FacetBitmaps(int size, long validUntil, long[] categoryIds, long[] supplierIds, long[] prices,
+                 boolean[] discounted, int[] stocks, boolean[] featured) {
+        this.size = size;
+        this.words = (size + 63) >>> 6;
+        this.validUntil = validUntil;
+
+        bitmaps.put(CATEGORY, indexById(categoryIds));
+        bitmaps.put(SUPPLIER, indexById(supplierIds));
+
+        Map<String, long[]> priceBuckets = new LinkedHashMap<>();
+        for (String key : PRICE_BUCKETS) {
+            priceBuckets.put(key, new long[words]);
+        }
+        for (int pos = 0; pos < size; pos++) {
+            set(priceBuckets.get(PRICE_BUCKETS[bucketOf(prices[pos])]), pos);
+        }
+        bitmaps.put(PRICE, priceBuckets);
+
+        boolean[] inStock = new boolean[size];
+        for (int pos = 0; pos < size; pos++) {
+            inStock[pos] = stocks[pos] > 0;
+        }
+        bitmaps.put(IN_STOCK, indexByFlag(inStock));
+        bitmaps.put(FEATURED, indexByFlag(featured));
+        bitmaps.put(HAS_DISCOUNT, indexByFlag(discounted));
+    }
+
+    long validUntil() {
+        return validUntil;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // OR giữa các giá trị trong cùng facet, AND giữa các facet. Số đếm của mỗi facet bỏ qua bộ lọc của chính facet đó
+    // để người dùng thấy được còn bao nhiêu sản phẩm nếu chọn thêm giá trị khác.
+    Evaluation evaluate(long[] candidates, Map<String, Set<String>> selections) {
+        Map<String, long[]> masks = new LinkedHashMap<>();
+        selections.forEach((facet, values) -> {
+            if (values == null || values.isEmpty()) {
+                return;
+            }
+            Map<String, long[]> byValue = bitmaps.get(facet);
+            if (byValue == null) {
+                throw new IllegalArgumentException("Bộ lọc không hợp lệ: " + facet);
+            }
+            long[] mask = new long[words];
+            for (String value : values) {
+                long[] bits = byValue.get(value);
+                if (bits != null) {
+                    or(mask, bits);
+                } else if (!CATEGORY.equals(facet) && !SUPPLIER.equals(facet)) {
+                    // Danh mục/nhà cung cấp không có sản phẩm chỉ cho kết quả rỗng; các facet còn lại có tập giá trị cố định
+                    throw new IllegalArgumentException("Giá trị không hợp lệ cho bộ lọc " + facet + ": " + value);
+                }
+            }
+            masks.put(facet, mask);
+        });
+
+        long[] matched = base(candidates);
+        masks.values().forEach(mask -> and(matched, mask));
+
+        Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+        bitmaps.forEach((facet, byValue) -> {
+            long[] scope = matched;
+            if (masks.containsKey(facet)) {
+                scope = base(candidates);
+                for (Map.Entry<String, long[]> mask : masks.entrySet()) {
+                    if (!mask.getKey().equals(facet)) {
+                        and(scope, mask.getValue());
+                    }
+                }
+            }
+            Map<String, Integer> facetCounts = new LinkedHashMap<>();
+            for (Map.Entry<String, long[]> value : byValue.entrySet()) {
+                facetCounts.put(value.getKey(), intersectionCount(scope, value.getValue()));
+            }
+            counts.put(facet, facetCounts);
+        });
+        return new Evaluation(matched, counts);
+    }
+
+    // Danh sách vị trí các bit được bật, tăng dần
+    static int[] positions(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        int[] positions = new int[count];
+        int k = 0;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                positions[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return positions;
+    }
+
+    static void set(long[] bits, int pos) {
+        bits[pos >>> 6] |= 1L << pos;
+    }
+
+    private long[] base(long[] candidates) {
+        if (candidates != null) {
+            return candidates.clone();
+        }
+        long[] all = new long[words];
+        Arrays.fill(all, -1L);
+        if ((size & 63) != 0) {
+            all[words - 1] = (1L << size) - 1;
+        }
+        return all;
+    }
+
+    private Map<String, long[]> indexById(long[] keys) {
+        TreeMap<Long, long[]> byId = new TreeMap<>();
+        for (int pos = 0; pos < size; pos++) {
+            // 0 nghĩa là sản phẩm chưa gắn danh mục/nhà cung cấp
+            if (keys[pos] != 0L) {
+                set(byId.computeIfAbsent(keys[pos], k -> new long[words]), pos);
+            }
+        }
+        Map<String, long[]> byValue = new LinkedHashMap<>();
+        byId.forEach((id, bits) -> byValue.put(String.valueOf(id), bits));
+        return byValue;
+    }
+
+    private Map<String, long[]> indexByFlag(boolean[] flags) {
+        long[] yes = new long[words];
+        long[] no = new long[words];
+        for (int pos = 0; pos < size; pos++) {
+            set(flags[pos] ? yes : no, pos);
+        }
+        Map<String, long[]> byValue = new LinkedHashMap<>();
+        byValue.put("true", yes);
+        byValue.put("false", no);
+        return byValue;
+    }
+
+    private static int bucketOf(long priceMinorUnits) {
+        for (int i = 0; i < PRICE_BOUNDS.length; i++) {
+            if (priceMinorUnits < PRICE_BOUNDS[i] * 100) {
+                return i;
+            }
+        }
+        return PRICE_BOUNDS.length;
+    }
+
+    private static String[] priceBucketKeys() {
+        String[] keys = new String[PRICE_BOUNDS.length + 1];
+        long lower = 0;
+        for (int i = 0; i < PRICE_BOUNDS.length; i++) {
+            keys[i] = lower + "-" + PRICE_BOUNDS[i];
+            lower = PRICE_BOUNDS[i];
+        }
+        keys[PRICE_BOUNDS.length] = lower + "+";
+        return keys;
+    }
+
+    private static void and(long[] target, long[] other) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] &= other[i];
+        }
+    }
+
+    private static void or(long[] target, long[] other) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] |= other[i];
+        }
+    }
+
+    private static int intersectionCount(long[] a, long[] b) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) {
+            count += Long.bitCount(a[i] & b[i]);
+        }
+        return count;
+    }
+
+    record Evaluation(long[] matched, Map<String, Map<String, Integer>> counts) {
+    }
+}
@@ -0,0 +1,219 @@
+package com.sondv.phone.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sondv.phone.exception.ApiException;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+// Chống tạo trùng khi client gửi lại POST sau timeout: yêu cầu đầu tiên với một Idempotency-Key được chạy,
+// các bản trùng đang chạy song song chờ kết quả đó, các bản gửi sau nhận lại phản hồi đã lưu (2xx) trong thời gian TTL.
+// Dùng Redis để nhiều instance cùng thấy khóa, không có Redis thì giữ trong bộ nhớ.
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final String PREFIX = "idempotency:";
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final long POLL_MILLIS = 50;
+
+    private final ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+    private final ObjectMapper objectMapper;
+
+    @Value("${idempotency.redis-enabled:true}")
+    private boolean redisEnabled;
+
+    @Value("${idempotency.ttl-seconds:900}")
+    private long ttlSeconds;
+
+    // Khóa "đang xử lý" tự hết hạn nếu instance giữ nó chết giữa chừng
+    @Value("${idempotency.in-flight-ttl-seconds:60}")
+    private long inFlightTtlSeconds;
+
+    @Value("${idempotency.wait-timeout-ms:30000}")
+    private long waitTimeoutMillis;
+
+    private volatile IdempotencyStore store = new InMemoryIdempotencyStore();
+    private final Map<String, CompletableFuture<IdempotencyStore.Entry>> inFlight = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        StringRedisTemplate redisTemplate = redisEnabled ? redisTemplateProvider.getIfAvailable() : null;
+        if (redisTemplate != null) {
+            try {
+                redisTemplate.hasKey(PREFIX + "ping");
+                store = new RedisIdempotencyStore(redisTemplate);
+                logger.info("Idempotency-Key dùng Redis");
+            } catch (Exception e) {
+                logger.warn("Không kết nối được Redis, Idempotency-Key giữ trong bộ nhớ: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Không có khóa thì chạy bình thường; scope tách các endpoint, khóa gắn với người dùng để không đụng nhau
+    public ResponseEntity<?> execute(String scope, Long userId, String idempotencyKey, Object request,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new ApiException(400, "Idempotency-Key không hợp lệ (tối đa " + MAX_KEY_LENGTH + " ký tự)");
+        }
+        String key = PREFIX + scope + ":" + userId + ":" + idempotencyKey.trim();
+        String fingerprint = fingerprint(request);
+
+        CompletableFuture<IdempotencyStore.Entry> mine = new CompletableFuture<>();
+        CompletableFuture<IdempotencyStore.Entry> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return replay(await(running), fingerprint);
+        }
+        boolean claimed = false;
+        try {
+            IdempotencyStore.Entry done = claim(key, fingerprint);
+            if (done != null) {
+                mine.complete(done);
+                return replay(done, fingerprint);
+            }
+            claimed = true;
+            ResponseEntity<?> response = action.get();
+            IdempotencyStore.Entry entry = finish(key, fingerprint, response);
+            mine.complete(entry);
+            return response;
+        } catch (RuntimeException e) {
+            if (claimed) {
+                release(key);
+            }
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void purgeExpired() {
+        store.purgeExpired();
+    }
+
+    // Trả về phản hồi đã lưu nếu có; null khi đã giữ được khóa (hoặc nơi lưu lỗi) và cần tự chạy yêu cầu
+    private IdempotencyStore.Entry claim(String key, String fingerprint) {
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+        while (true) {
+            IdempotencyStore.Entry existing;
+            try {
+                if (store.claim(key, fingerprint, Duration.ofSeconds(inFlightTtlSeconds))) {
+                    return null;
+                }
+                existing = store.get(key);
+            } catch (ApiException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.warn("Không đọc được Idempotency-Key {}, xử lý như yêu cầu mới: {}", key, e.getMessage());
+                return null;
+            }
+            if (existing != null) {
+                if (!existing.fingerprint().equals(fingerprint)) {
+                    throw new ApiException(422, "Idempotency-Key đã được dùng cho một yêu cầu khác.");
+                }
+                if (!existing.isInFlight()) {
+                    return existing;
+                }
+            }
+            // Instance khác đang xử lý cùng khóa (hoặc vừa bỏ khóa): chờ rồi thử lại
+            if (System.currentTimeMillis() >= deadline) {
+                throw new ApiException(409, "Yêu cầu với Idempotency-Key này đang được xử lý, vui lòng thử lại sau.");
+            }
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ApiException(409, "Yêu cầu với Idempotency-Key này đang được xử lý, vui lòng thử lại sau.");
+            }
+        }
+    }
+
+    // Chỉ lưu phản hồi 2xx; lỗi thì bỏ khóa để client sửa rồi gửi lại với cùng khóa
+    private IdempotencyStore.Entry finish(String key, String fingerprint, ResponseEntity<?> response) {
+        int status = response.getStatusCode().value();
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(response.getBody());
+        } catch (JsonProcessingException e) {
+            logger.warn("Không lưu được phản hồi cho Idempotency-Key {}: {}", key, e.getMessage());
+            release(key);
+            return new IdempotencyStore.Entry(fingerprint, status, "null");
+        }
+        IdempotencyStore.Entry entry = new IdempotencyStore.Entry(fingerprint, status, body);
+        if (response.getStatusCode().is2xxSuccessful()) {
+            try {
+                store.complete(key, entry, Duration.ofSeconds(ttlSeconds));
+            } catch (Exception e) {
+                logger.warn("Không lưu được phản hồi cho Idempotency-Key {}: {}", key, e.getMessage());
+            }
+        } else {
+            release(key);
+        }
+        return entry;
+    }
+
+    private IdempotencyStore.Entry await(CompletableFuture<IdempotencyStore.Entry> running) {
+        try {
+            return running.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ApiException(409, "Yêu cầu với Idempotency-Key này đang được xử lý, vui lòng thử lại sau.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(409, "Yêu cầu với Idempotency-Key này đang được xử lý, vui lòng thử lại sau.");
+        }
+    }
+
+    private ResponseEntity<?> replay(IdempotencyStore.Entry entry, String fingerprint) {
+        if (!entry.fingerprint().equals(fingerprint)) {
+            throw new ApiException(422, "Idempotency-Key đã được dùng cho một yêu cầu khác.");
+        }
+        return ResponseEntity.status(entry.status())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotent-Replayed", "true")
+                .body(entry.body());
+    }
+
+    private void release(String key) {
+        try {
+            store.release(key);
+        } catch (Exception e) {
+            logger.warn("Không bỏ được Idempotency-Key {}: {}", key, e.getMessage());
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            return DigestUtils.sha256Hex(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Dữ liệu yêu cầu không hợp lệ", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.sondv.phone.service;
+
+import java.time.Duration;
+
+// Nơi lưu khóa Idempotency-Key: bản ghi "đang xử lý" (status = 0) khi nhận yêu cầu đầu tiên,
+// được thay bằng phản hồi đã hoàn tất để trả lại cho các lần gửi lại
+interface IdempotencyStore {
+
+    record Entry(String fingerprint, int status, String body) {
+
+        boolean isInFlight() {
+            return status == 0;
+        }
+    }
+
+    // Ghi bản ghi đang xử lý nếu khóa chưa tồn tại; false nếu đã có yêu cầu khác giữ khóa
+    boolean claim(String key, String fingerprint, Duration ttl);
+
+    Entry get(String key);
+
+    void complete(String key, Entry entry, Duration ttl);
+
+    // Bỏ khóa khi xử lý thất bại để lần gửi lại được chạy từ đầu
+    void release(String key);
+
+    void purgeExpired();
+}
@@ -0,0 +1,51 @@
+package com.sondv.phone.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Dự phòng khi không có Redis: chỉ chống trùng trong một instance, hết hạn kiểm tra khi đọc và dọn định kỳ
+class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private record Slot(Entry entry, long expiresAt) {
+
+        boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+    }
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean claim(String key, String fingerprint, Duration ttl) {
+        long now = System.currentTimeMillis();
+        Slot claimed = new Slot(new Entry(fingerprint, 0, ""), now + ttl.toMillis());
+        Slot current = slots.compute(key, (k, slot) -> slot == null || slot.isExpired(now) ? claimed : slot);
+        return current == claimed;
+    }
+
+    @Override
+    public Entry get(String key) {
+        Slot slot = slots.get(key);
+        if (slot == null || slot.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        return slot.entry();
+    }
+
+    @Override
+    public void complete(String key, Entry entry, Duration ttl) {
+        slots.put(key, new Slot(entry, System.currentTimeMillis() + ttl.toMillis()));
+    }
+
+    @Override
+    public void release(String key) {
+        slots.remove(key);
+    }
+
+    @Override
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        slots.values().removeIf(slot -> slot.isExpired(now));
+    }
+}
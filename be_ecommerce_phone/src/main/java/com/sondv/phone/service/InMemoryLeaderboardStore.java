@@ -0,0 +1,110 @@
+package com.sondv.phone.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Dự phòng khi không có Redis: mỗi bảng là một skip list (điểm giảm dần, id tăng dần) kèm map điểm để cập nhật O(log n)
+class InMemoryLeaderboardStore implements LeaderboardStore {
+
+    private final Map<BestSellerLeaderboard.Window, Ranking> rankings = new EnumMap<>(BestSellerLeaderboard.Window.class);
+    private final Map<Long, Map<Long, Long>> buckets = new HashMap<>();
+    private final Map<BestSellerLeaderboard.Window, Long> expiredThrough = new EnumMap<>(BestSellerLeaderboard.Window.class);
+    private boolean seeded;
+
+    InMemoryLeaderboardStore() {
+        for (BestSellerLeaderboard.Window window : BestSellerLeaderboard.Window.values()) {
+            rankings.put(window, new Ranking());
+        }
+    }
+
+    @Override
+    public synchronized void add(Map<Long, Long> deltas, long hour, Collection<BestSellerLeaderboard.Window> targets) {
+        boolean rolling = targets.stream().anyMatch(BestSellerLeaderboard.Window::isRolling);
+        Map<Long, Long> bucket = rolling ? buckets.computeIfAbsent(hour, k -> new HashMap<>()) : null;
+        deltas.forEach((id, delta) -> {
+            if (bucket != null) {
+                bucket.merge(id, delta, Long::sum);
+            }
+            for (BestSellerLeaderboard.Window window : targets) {
+                rankings.get(window).add(id, delta);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void expire(BestSellerLeaderboard.Window window, long hour) {
+        if (hour <= expiredThrough(window)) {
+            return;
+        }
+        Map<Long, Long> bucket = buckets.get(hour);
+        if (bucket != null) {
+            Ranking ranking = rankings.get(window);
+            bucket.forEach((id, quantity) -> ranking.add(id, -quantity));
+        }
+    }
+
+    @Override
+    public synchronized long expiredThrough(BestSellerLeaderboard.Window window) {
+        return expiredThrough.getOrDefault(window, -1L);
+    }
+
+    @Override
+    public synchronized void markExpired(BestSellerLeaderboard.Window window, long hour) {
+        expiredThrough.put(window, hour);
+    }
+
+    @Override
+    public synchronized void dropBucket(long hour) {
+        buckets.remove(hour);
+    }
+
+    @Override
+    public List<Long> top(BestSellerLeaderboard.Window window, int limit) {
+        return rankings.get(window).top(limit);
+    }
+
+    @Override
+    public synchronized boolean claimSeed() {
+        if (seeded) {
+            return false;
+        }
+        seeded = true;
+        return true;
+    }
+
+    private static final class Ranking {
+        private record Entry(long id, long score) {
+        }
+
+        private final Map<Long, Entry> byId = new HashMap<>();
+        private final ConcurrentSkipListSet<Entry> ranked = new ConcurrentSkipListSet<>(
+                Comparator.comparingLong(Entry::score).reversed().thenComparingLong(Entry::id));
+
+        synchronized void add(long id, long delta) {
+            Entry current = byId.remove(id);
+            long score = delta;
+            if (current != null) {
+                ranked.remove(current);
+                score += current.score();
+            }
+            // Giữ cả điểm âm để các lần cộng/trừ sau vẫn cân; chỉ bỏ sản phẩm có tổng bằng 0
+            if (score != 0) {
+                Entry entry = new Entry(id, score);
+                ranked.add(entry);
+                byId.put(id, entry);
+            }
+        }
+
+        // Đọc không khóa trên skip list; điểm giảm dần nên gặp điểm <= 0 là hết
+        List<Long> top(int limit) {
+            List<Long> ids = new ArrayList<>(Math.min(limit, 64));
+            for (Entry entry : ranked) {
+                if (ids.size() == limit || entry.score() <= 0) {
+                    break;
+                }
+                ids.add(entry.id());
+            }
+            return ids;
+        }
+    }
+}
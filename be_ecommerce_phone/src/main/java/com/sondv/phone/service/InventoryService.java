@@ -3,16 +3,24 @@ package com.sondv.phone.service;
 import com.sondv.phone.entity.Inventory;
 import com.sondv.phone.entity.InventoryLog;
 import com.sondv.phone.entity.Product;
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
 import com.sondv.phone.repository.InventoryLogRepository;
 import com.sondv.phone.repository.InventoryRepository;
 import com.sondv.phone.repository.ProductRepository;
+import com.sondv.phone.repository.StockLedgerRepository;
+import com.sondv.phone.util.TransactionUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -21,6 +29,9 @@ public class InventoryService {
     private final ProductRepository productRepository;
     private final NotificationService notificationService;
     private final InventoryLogRepository inventoryLogRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StockReservationLedger stockReservationLedger;
+    private final StockLedgerRepository stockLedgerRepository;
 
     public Optional<Inventory> getInventoryByProduct(Long productId) {
         return inventoryRepository.findByProductId(productId);
@@ -28,7 +39,7 @@ public class InventoryService {
 
     @Transactional
     public Inventory adjustInventory(Long productId, int quantityChange, String reason, Long userId) {
-        Inventory inventory = inventoryRepository.findByProductId(productId)
+        Inventory inventory = inventoryRepository.findByProductIdForUpdate(productId)
                 .orElseThrow(() -> new IllegalArgumentException("Sản phẩm chưa có thông tin tồn kho"));
         Product product = inventory.getProduct();
 
@@ -41,6 +52,10 @@ public class InventoryService {
         if (newQuantity > inventory.getMaxQuantity()) {
             throw new IllegalArgumentException("Số lượng vượt quá ngưỡng tối đa");
         }
+        // Phần giảm phải giữ trên sổ trước (có thể đã bị đơn chưa gộp giữ hết)
+        if (stockReservationLedger.isActive() && !stockReservationLedger.adjust(productId, quantityChange)) {
+            throw new IllegalArgumentException("Số lượng không được âm");
+        }
 
         inventory.setQuantity(newQuantity);
         inventory.setLastUpdated(LocalDateTime.now(ZoneOffset.of("+07:00")));
@@ -57,6 +72,55 @@ public class InventoryService {
         log.setTimestamp(LocalDateTime.now(ZoneOffset.of("+07:00")));
         inventoryLogRepository.save(log);
 
+        eventPublisher.publishEvent(ProductChangedEvent.updated(product, product.getName(), Set.of(ProductChangedEvent.STOCK)));
         return inventory;
     }
-}
\ No newline at end of file
+
+    // Giữ hàng khi đặt đơn: trừ tồn kho bằng UPDATE có điều kiện (không đọc trước, không lưu entity) rồi mới
+    // nạp sản phẩm bằng một truy vấn IN, nên các Product trả về đã mang số tồn kho mới. Phải chạy trong transaction
+    // của đơn hàng: thiếu hàng ở bất kỳ sản phẩm nào sẽ ném lỗi và rollback toàn bộ.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Long, Product> reserveStock(Map<Long, Integer> quantities, String reason, Long userId) {
+        SortedMap<Long, Integer> sorted = new TreeMap<>();
+        quantities.forEach((productId, quantity) -> {
+            if (productId == null || quantity == null || quantity <= 0) {
+                throw new IllegalArgumentException("Số lượng sản phẩm không hợp lệ");
+            }
+            sorted.merge(productId, quantity, Integer::sum);
+        });
+
+        if (stockReservationLedger.isEnabled()) {
+            return reserveOnLedger(sorted, reason, userId);
+        }
+
+        List<Long> unavailable = inventoryRepository.decrementIfAvailable(sorted, reason, userId);
+        if (!unavailable.isEmpty()) {
+            Long productId = unavailable.get(0);
+            String name = productRepository.findById(productId).map(Product::getName).orElse("ID " + productId);
+            throw new IllegalStateException("Sản phẩm '" + name + "' không đủ hàng.");
+        }
+
+        Map<Long, Product> products = productRepository.findAllById(sorted.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        eventPublisher.publishEvent(new ProductsBulkChangedEvent(new ArrayList<>(products.values()), Set.of(ProductChangedEvent.STOCK)));
+        return products;
+    }
+
+    // Giữ trên bộ đếm trong bộ nhớ và chỉ ghi bút toán; inventory/products/nhật ký được cập nhật khi sổ gộp theo lô
+    // (sự kiện STOCK phát ra lúc đó), nên Product trả về vẫn mang số tồn kho đã gộp gần nhất
+    private Map<Long, Product> reserveOnLedger(SortedMap<Long, Integer> sorted, String reason, Long userId) {
+        if (!stockReservationLedger.isActive()) {
+            throw new IllegalStateException("Hệ thống đang đối soát tồn kho, vui lòng thử lại sau giây lát.");
+        }
+        Long shortId = stockReservationLedger.tryReserve(sorted);
+        if (shortId != null) {
+            String name = productRepository.findById(shortId).map(Product::getName).orElse("ID " + shortId);
+            throw new IllegalStateException("Sản phẩm '" + name + "' không đủ hàng.");
+        }
+        TransactionUtil.afterRollback(() -> stockReservationLedger.release(sorted));
+        stockLedgerRepository.append(sorted, reason, userId);
+
+        return productRepository.findAllById(sorted.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+}
@@ -0,0 +1,29 @@
+package com.sondv.phone.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Nơi lưu bảng xếp hạng bán chạy: một tập có thứ tự cho mỗi cửa sổ + các bucket theo giờ để trừ dần khi trượt cửa sổ
+interface LeaderboardStore {
+
+    // Cộng delta (productId -> số lượng) vào các bảng targets, nguyên tử; bucket của giờ hour chỉ được ghi khi targets
+    // có cửa sổ trượt (điểm toàn thời gian không bao giờ bị trừ khi trượt). Điểm có thể âm tạm thời, top() bỏ điểm <= 0
+    void add(Map<Long, Long> deltas, long hour, Collection<BestSellerLeaderboard.Window> targets);
+
+    // Trừ bucket giờ hour khỏi bảng của cửa sổ; mỗi cặp (cửa sổ, giờ) chỉ được trừ một lần
+    void expire(BestSellerLeaderboard.Window window, long hour);
+
+    // Giờ cuối cùng đã trừ khỏi cửa sổ, -1 nếu chưa có
+    long expiredThrough(BestSellerLeaderboard.Window window);
+
+    void markExpired(BestSellerLeaderboard.Window window, long hour);
+
+    void dropBucket(long hour);
+
+    // Id sản phẩm theo số lượng bán giảm dần
+    List<Long> top(BestSellerLeaderboard.Window window, int limit);
+
+    // Đánh dấu đã nạp dữ liệu ban đầu; false nếu nơi lưu đã có dữ liệu (instance khác đã nạp)
+    boolean claimSeed();
+}
@@ -0,0 +1,48 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.Order;
+import com.sondv.phone.entity.RoleName;
+import com.sondv.phone.entity.User;
+import com.sondv.phone.util.TransactionUtil;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Thế hệ của cache "userOrders" theo từng khách hàng: khóa cache chứa thế hệ hiện tại của người xem, đổi một đơn chỉ
+// tăng thế hệ của chủ đơn và của trang quản trị (ADMIN/STAFF xem chung) nên cache của khách khác vẫn dùng được.
+// Mục thuộc thế hệ cũ không còn được đọc và tự hết hạn trong Caffeine. Bộ đếm nằm trong JVM giống cache cục bộ.
+// Tên bean cố định vì được tham chiếu trong SpEL của @Cacheable
+@Service("orderCacheGenerations")
+public class OrderCacheGenerations {
+
+    private static final String ADMIN = "admin";
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    // Dùng trong SpEL của @Cacheable: tiền tố khóa gồm chủ thể và thế hệ hiện tại
+    public String key(User user) {
+        String owner = isAdmin(user) ? ADMIN : "u" + user.getId();
+        return owner + ":g" + generations.getOrDefault(owner, 0L);
+    }
+
+    // Tăng thế hệ sau khi commit để lần đọc kế tiếp thấy dữ liệu mới; rollback thì cache cũ vẫn đúng
+    public void onOrderChanged(Order order) {
+        Long ownerId = order.getCustomer() != null && order.getCustomer().getUser() != null
+                ? order.getCustomer().getUser().getId() : null;
+        TransactionUtil.afterCommit(() -> bump(ownerId));
+    }
+
+    public void bump(Long ownerUserId) {
+        if (ownerUserId != null) {
+            generations.put("u" + ownerUserId, sequence.incrementAndGet());
+        }
+        generations.put(ADMIN, sequence.incrementAndGet());
+    }
+
+    private static boolean isAdmin(User user) {
+        return user.getRoles().stream().anyMatch(r -> r == RoleName.ADMIN || r == RoleName.STAFF);
+    }
+}
@@ -2,14 +2,20 @@ package com.sondv.phone.service;
 
 import com.sondv.phone.dto.*;
 import com.sondv.phone.entity.*;
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
 import com.sondv.phone.repository.*;
+import com.sondv.phone.util.PriceUtil;
+import com.sondv.phone.util.TransactionUtil;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -25,9 +31,8 @@ import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -41,6 +46,11 @@ public class OrderService {
     private final InventoryService inventoryService;
     private final ShippingService shippingService;
     private final PaymentRepository paymentRepository;
+    private final ProductImageRepository productImageRepository;
+    private final BestSellerLeaderboard bestSellerLeaderboard;
+    private final OrderCacheGenerations orderCacheGenerations;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
 
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
 
@@ -66,34 +76,26 @@ public class OrderService {
         BigDecimal totalPriceBeforeDiscount = BigDecimal.ZERO;
         OffsetDateTime now = OffsetDateTime.now();
 
+        // Trừ tồn kho nguyên tử cho cả giỏ trước (các lô JDBC theo id tăng dần), sau đó mới tính giá trên các sản phẩm
+        // vừa nạp lại bằng một truy vấn IN; số câu lệnh của cả hàm không phụ thuộc số dòng trong giỏ
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (int i = 0; i < orderRequest.getProductIds().size(); i++) {
+            quantities.merge(orderRequest.getProductIds().get(i), orderRequest.getQuantities().get(i), Integer::sum);
+        }
+        Map<Long, Product> products = inventoryService.reserveStock(quantities, "Tạo đơn hàng", user.getId());
+
         for (int i = 0; i < orderRequest.getProductIds().size(); i++) {
             Long productId = orderRequest.getProductIds().get(i);
             int quantity = orderRequest.getQuantities().get(i);
+            Product product = products.get(productId);
 
-            Inventory inventory = inventoryService.getInventoryByProduct(productId)
-                    .orElseThrow(() -> new RuntimeException("Không tìm thấy tồn kho cho sản phẩm ID: " + productId));
-
-            if (inventory.getQuantity() < quantity) {
-                throw new RuntimeException("Sản phẩm '" + inventory.getProduct().getName() + "' không đủ hàng.");
-            }
-
-            inventoryService.adjustInventory(productId, -quantity, "Tạo đơn hàng", user.getId());
-
-            Product product = inventory.getProduct();
-
-            if (product.getDiscountedPrice() != null &&
-                    product.getDiscountStartDate() != null &&
-                    product.getDiscountEndDate() != null) {
-                OffsetDateTime start = product.getDiscountStartDate().atOffset(ZoneOffset.UTC);
-                OffsetDateTime end = product.getDiscountEndDate().atOffset(ZoneOffset.UTC);
-                boolean isDiscountActive = !now.isBefore(start) && !now.isAfter(end);
-                if (isDiscountActive && orderRequest.getDiscountCode() != null) {
-                    throw new IllegalArgumentException(
-                            "Sản phẩm '" + product.getName() + "' đang khuyến mãi, không thể áp mã.");
-                }
+            LocalDateTime priceTime = LocalDateTime.now();
+            if (PriceUtil.isDiscountActive(product, priceTime) && orderRequest.getDiscountCode() != null) {
+                throw new IllegalArgumentException(
+                        "Sản phẩm '" + product.getName() + "' đang khuyến mãi, không thể áp mã.");
             }
 
-            BigDecimal price = resolveCurrentPrice(product); // Lấy giá gốc hoặc giá khuyến mãi sản phẩm
+            BigDecimal price = PriceUtil.currentPrice(product, priceTime); // Lấy giá gốc hoặc giá khuyến mãi sản phẩm
             OrderDetail detail = new OrderDetail();
             detail.setOrder(order);
             detail.setProduct(product);
@@ -104,7 +106,8 @@ public class OrderService {
             totalPriceBeforeDiscount = totalPriceBeforeDiscount.add(price.multiply(BigDecimal.valueOf(quantity)));
         }
 
-        order.setOrderDetails(orderDetails);
+        // Ghi sau bằng một lô JDBC, không để Hibernate cascade chèn từng dòng
+        order.setOrderDetails(new ArrayList<>());
 
         // Áp mã giảm giá (nếu có)
         Discount appliedDiscount = null;
@@ -186,6 +189,7 @@ public class OrderService {
         }
 
         order = orderRepository.save(order);
+        orderDetailRepository.insertAll(order.getId(), orderDetails);
 
         Payment payment = new Payment();
         payment.setOrder(order);
@@ -193,23 +197,15 @@ public class OrderService {
         payment.setStatus(PaymentStatus.PENDING);
         paymentRepository.save(payment);
 
+        // Đơn đã ghi xong: tách khỏi persistence context rồi mới gắn các dòng đã ghi bằng JDBC để trả về,
+        // tránh Hibernate coi chúng là entity detached cần persist khi flush
+        entityManager.detach(order);
+        order.getOrderDetails().addAll(orderDetails);
+        orderCacheGenerations.onOrderChanged(order);
         return order;
     }
 
-    private BigDecimal resolveCurrentPrice(Product product) {
-        OffsetDateTime now = OffsetDateTime.now();
-
-        boolean inDiscountPeriod = product.getDiscountedPrice() != null
-                && product.getDiscountStartDate() != null
-                && product.getDiscountEndDate() != null
-                && now.isAfter(product.getDiscountStartDate().atOffset(now.getOffset()))
-                && now.isBefore(product.getDiscountEndDate().atOffset(now.getOffset()));
-
-        return inDiscountPeriod ? product.getDiscountedPrice() : product.getSellingPrice();
-    }
-
     @Transactional
-    @CacheEvict(value = "userOrders", allEntries = true)
     public Order cancelOrder(Long orderId, User user) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng!"));
@@ -238,16 +234,17 @@ public class OrderService {
                     user.getId());
         }
 
+        orderCacheGenerations.onOrderChanged(order);
         return order;
     }
 
     @Transactional
-    @CacheEvict(value = "userOrders", allEntries = true)
     public Order updateOrderStatus(Long orderId, OrderStatus status, User user) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng!"));
 
-        if (status == OrderStatus.COMPLETED) {
+        OrderStatus previousStatus = order.getStatus();
+        if (status == OrderStatus.COMPLETED && previousStatus != OrderStatus.COMPLETED) {
             for (OrderDetail detail : order.getOrderDetails()) {
                 inventoryService.adjustInventory(
                         detail.getProduct().getId(),
@@ -268,14 +265,43 @@ public class OrderService {
                     paymentRepository.save(payment);
                 }
             });
+            order.setCompletedAt(LocalDateTime.now());
+            recordSales(order, 1);
+        } else if (previousStatus == OrderStatus.COMPLETED && status == OrderStatus.CANCELLED) {
+            recordSales(order, -1);
         }
 
         order.setStatus(status);
+        orderCacheGenerations.onOrderChanged(order);
         return orderRepository.save(order);
     }
 
+    // Cộng/trừ soldQuantity bằng UPDATE nguyên tử, đồng bộ lại entity đang quản lý,
+    // rồi cập nhật bảng xếp hạng bán chạy sau khi commit (hủy đơn trừ vào đúng giờ đơn đã hoàn thành)
+    private void recordSales(Order order, int sign) {
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        Map<Long, Product> products = new LinkedHashMap<>();
+        for (OrderDetail detail : order.getOrderDetails()) {
+            Long productId = detail.getProduct().getId();
+            deltas.merge(productId, (long) sign * detail.getQuantity(), Long::sum);
+            products.put(productId, detail.getProduct());
+        }
+        deltas.forEach((productId, delta) -> productRepository.adjustSoldQuantity(productId, delta.intValue()));
+        // UPDATE đang giữ khóa dòng đến khi commit nên giá trị đọc lại là chính xác
+        for (Object[] row : productRepository.findSoldQuantitiesByIds(deltas.keySet())) {
+            Product product = products.get((Long) row[0]);
+            if (product != null) {
+                product.setSoldQuantity(row[1] != null ? ((Number) row[1]).intValue() : 0);
+            }
+        }
+        eventPublisher.publishEvent(new ProductsBulkChangedEvent(
+                new ArrayList<>(products.values()), Set.of(ProductChangedEvent.SOLD_QUANTITY)));
+        // Đơn hoàn thành trước khi có cột completedAt: dùng giờ đặt như khi nạp bảng xếp hạng
+        LocalDateTime soldAt = order.getCompletedAt() != null ? order.getCompletedAt() : order.getCreatedAt();
+        TransactionUtil.afterCommit(() -> bestSellerLeaderboard.record(deltas, soldAt));
+    }
+
     @Transactional
-    @CacheEvict(value = "userOrders", allEntries = true)
     public Order confirmOrder(Long orderId, User user) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng!"));
@@ -283,10 +309,12 @@ public class OrderService {
             throw new IllegalStateException("Đơn hàng không ở trạng thái PENDING!");
         }
         order.setStatus(OrderStatus.CONFIRMED);
+        orderCacheGenerations.onOrderChanged(order);
         return orderRepository.save(order);
     }
 
-    @Cacheable(value = "userOrders", key = "#user.id + '-' + #page + '-' + #size + '-' + #sortField + '-' + #sortDirection + '-' + #status + '-' + #paymentStatus + '-' + #customerName + '-' + #orderId")
+    @Transactional(readOnly = true)
+    @Cacheable(value = "userOrders", key = "@orderCacheGenerations.key(#user) + '-' + #page + '-' + #size + '-' + #sortField + '-' + #sortDirection + '-' + #status + '-' + #paymentStatus + '-' + #customerName + '-' + #orderId + '-' + #startDate + '-' + #endDate")
     public Page<OrderResponse> getPaginatedOrders(User user,
             int page,
             int size,
@@ -302,14 +330,16 @@ public class OrderService {
         Sort.Direction direction = Sort.Direction.fromString(sortDirection.toUpperCase());
         Pageable pageable = PageRequest.of(page - 1, size, Sort.by(direction, sortField));
 
+        boolean isAdmin = user.getRoles().stream().anyMatch(r -> r == RoleName.ADMIN || r == RoleName.STAFF);
+        Long customerId = isAdmin ? null : customerRepository.findByUserId(user.getId())
+                .map(Customer::getId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy thông tin khách hàng!"));
+
         Specification<Order> spec = (root, query, cb) -> {
             Predicate predicate = cb.conjunction();
 
-            boolean isAdmin = user.getRoles().stream().anyMatch(r -> r == RoleName.ADMIN || r == RoleName.STAFF);
-            if (!isAdmin) {
-                Customer customer = customerRepository.findByUserId(user.getId())
-                        .orElseThrow(() -> new RuntimeException("Không tìm thấy thông tin khách hàng!"));
-                predicate = cb.and(predicate, cb.equal(root.get("customer").get("id"), customer.getId()));
+            if (customerId != null) {
+                predicate = cb.and(predicate, cb.equal(root.get("customer").get("id"), customerId));
             }
 
             if (status != null && !status.isBlank()) {
@@ -347,11 +377,40 @@ public class OrderService {
             return predicate;
         };
 
-        Page<Order> ordersPage = orderRepository.findAll(spec, pageable);
-        return ordersPage.map(this::mapToOrderResponse);
+        // Lấy id của trang trước, sau đó nạp đơn, chi tiết và ảnh đầu tiên của sản phẩm theo lô:
+        // số truy vấn cố định thay vì vài truy vấn cho mỗi đơn
+        Page<Long> idPage = orderRepository.findIds(spec, pageable);
+        if (idPage.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, idPage.getTotalElements());
+        }
+        Map<Long, Order> orders = new HashMap<>();
+        for (Order order : orderRepository.findPageByIdIn(idPage.getContent())) {
+            orders.put(order.getId(), order);
+        }
+        Map<Long, List<OrderDetail>> detailsByOrder = new HashMap<>();
+        Set<Long> productIds = new HashSet<>();
+        for (OrderDetail detail : orderDetailRepository.findWithProductByOrderIdIn(idPage.getContent())) {
+            detailsByOrder.computeIfAbsent(detail.getOrder().getId(), k -> new ArrayList<>()).add(detail);
+            productIds.add(detail.getProduct().getId());
+        }
+        Map<Long, String> firstImages = new HashMap<>();
+        if (!productIds.isEmpty()) {
+            for (Object[] row : productImageRepository.findFirstImageRowsByProductIds(productIds)) {
+                firstImages.put((Long) row[0], (String) row[1]);
+            }
+        }
+        return idPage.map(id -> toOrderResponse(orders.get(id), detailsByOrder.getOrDefault(id, List.of()),
+                product -> firstImages.get(product.getId())));
     }
 
     public OrderResponse mapToOrderResponse(Order order) {
+        return toOrderResponse(order, order.getOrderDetails(), product -> product.getImages().stream()
+                .findFirst()
+                .map(ProductImage::getImageUrl)
+                .orElse(null));
+    }
+
+    private OrderResponse toOrderResponse(Order order, List<OrderDetail> details, Function<Product, String> firstImage) {
         OrderResponse dto = new OrderResponse();
         dto.setId(order.getId());
         dto.setStatus(order.getStatus().name());
@@ -359,7 +418,7 @@ public class OrderService {
         dto.setTotalPrice(order.getTotalPrice());
         dto.setShippingFee(order.getShippingFee());
 
-        Payment payment = paymentRepository.findByOrderId(order.getId()).orElse(null);
+        Payment payment = order.getPayment();
         if (payment != null) {
             dto.setPaymentMethod(payment.getPaymentMethod().name());
             dto.setPaymentStatus(payment.getStatus().name());
@@ -396,18 +455,15 @@ public class OrderService {
             dto.setShippingInfo(shippingDTO);
         }
 
-        List<OrderDetailResponse> detailDTOs = order.getOrderDetails().stream().map(detail -> {
+        List<OrderDetailResponse> detailDTOs = details.stream().map(detail -> {
             OrderDetailResponse d = new OrderDetailResponse();
             d.setId(detail.getId());
             d.setProductId(detail.getProduct().getId());
             d.setProductName(detail.getProduct().getName());
             d.setQuantity(detail.getQuantity());
             d.setPrice(detail.getPrice());
-            String productImageUrl = detail.getProduct().getImages().stream()
-                    .findFirst()
-                    .map(ProductImage::getImageUrl)
-                    .orElse("/images/default.png");
-            d.setProductImage(productImageUrl);
+            String productImageUrl = firstImage.apply(detail.getProduct());
+            d.setProductImage(productImageUrl != null ? productImageUrl : "/images/default.png");
 
             if (detail.getReview() != null) {
                 ReviewResponse review = new ReviewResponse();
@@ -23,6 +23,7 @@ public class PaymentService {
     private final PaymentRepository paymentRepository;
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
+    private final OrderCacheGenerations orderCacheGenerations;
     private static final Logger log = LoggerFactory.getLogger(PaymentService.class);
 
     @Transactional
@@ -34,6 +35,7 @@ public class PaymentService {
                 log.info("Payment exists for orderId: {}, but status is PENDING, proceeding with update", orderId);
                 payment.setPaymentMethod(method);
                 payment.setCreatedAt(LocalDateTime.now());
+                orderCacheGenerations.onOrderChanged(payment.getOrder());
                 return paymentRepository.save(payment);
             }
             log.error("Payment already exists for orderId: {} with status: {}", orderId, payment.getStatus());
@@ -46,6 +48,7 @@ public class PaymentService {
         payment.setPaymentMethod(method);
         payment.setStatus(PaymentStatus.PENDING);
         payment.setCreatedAt(LocalDateTime.now());
+        orderCacheGenerations.onOrderChanged(order);
         return paymentRepository.save(payment);
     }
 
@@ -57,6 +60,7 @@ public class PaymentService {
         if (transactionId != null) {
             payment.setTransactionId(transactionId);
         }
+        orderCacheGenerations.onOrderChanged(payment.getOrder());
         return paymentRepository.save(payment);
     }
 
@@ -80,6 +84,8 @@ public class PaymentService {
         payment.setStatus(PaymentStatus.PENDING);
         payment.setCreatedAt(LocalDateTime.now());
         paymentRepository.save(payment);
+        // Trang đơn hàng đã cache vẫn hiện thanh toán trống cho đơn này
+        orderCacheGenerations.onOrderChanged(order);
         return Optional.of(payment);
     }
 
@@ -1,9 +1,10 @@
 package com.sondv.phone.service;
 
-import com.sondv.phone.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
@@ -13,19 +14,24 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class PreloadCacheService {
 
-    private final ProductRepository productRepository;
+    private static final int HOME_WIDGET_SIZE = 5;
+
+    private final ProductService productService;
     private final CategoryService categoryService;
     private final DiscountService discountService;
     private final SupplierService supplierService;
 
+    // Nạp sẵn các cache trang chủ qua ProductService (chỉ truy vấn LIMIT), chạy nền khi ứng dụng sẵn sàng
     @Async
+    @EventListener(ApplicationReadyEvent.class)
     public void preloadProductCache() {
         try {
-            productRepository.findAll(PageRequest.of(0, 20));
-            productRepository.findByIsFeaturedTrue();
-            productRepository.findAllByOrderByIdDesc();
-            productRepository.findTop5ByOrderBySoldQuantityDesc();
-            log.info("Preloaded product cache successfully (direct from repository)!");
+            productService.getFeaturedProducts();
+            productService.getNewestProducts(HOME_WIDGET_SIZE);
+            productService.getBestSellingProducts(HOME_WIDGET_SIZE);
+            // Từ khóa rỗng như mặc định của controller để ghi đúng khóa cache "-0-20"
+            productService.getAllProducts("", PageRequest.of(0, 20));
+            log.info("Preloaded product cache successfully!");
         } catch (Exception e) {
             log.error("Failed to preload product cache", e);
         }
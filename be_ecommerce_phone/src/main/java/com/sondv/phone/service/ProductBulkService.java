@@ -0,0 +1,390 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.dto.CategoryDTO;
+import com.sondv.phone.dto.ProductImportResult;
+import com.sondv.phone.entity.Category;
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.entity.Supplier;
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
+import com.sondv.phone.repository.ProductRepository;
+import com.sondv.phone.repository.SupplierRepository;
+import lombok.RequiredArgsConstructor;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// Nhập/xuất danh mục sản phẩm qua CSV/XLSX. File được đọc tuần tự, ghi theo lô JDBC mỗi CHUNK_SIZE dòng
+// (mỗi lô một transaction); cache và các chỉ mục chỉ được làm mới một lần khi đã nhập xong.
+@Service
+@RequiredArgsConstructor
+public class ProductBulkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductBulkService.class);
+
+    // Thứ tự cột của file xuất; file nhập chỉ cần có tiêu đề, thứ tự tùy ý. Nhập chỉ tạo sản phẩm mới:
+    // dòng còn giá trị id (ví dụ file xuất đem nhập lại) bị từ chối để không nhân đôi danh mục
+    static final List<String> COLUMNS = List.of(
+            "id", "name", "description", "costPrice", "sellingPrice", "stock", "categoryId", "supplierId", "isFeatured");
+    private static final List<String> REQUIRED_COLUMNS = List.of("name", "costPrice", "sellingPrice", "categoryId", "supplierId");
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int MAX_ROWS = 20_000;
+    private static final int EXPORT_PAGE_SIZE = 1_000;
+    // Cột VARCHAR mặc định của products.name/description
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final String IMPORT_REASON = "Nhập sản phẩm hàng loạt";
+    private static final Set<String> IMPORTED_FIELDS = Set.of(
+            ProductChangedEvent.NAME, ProductChangedEvent.DESCRIPTION, ProductChangedEvent.PRICE,
+            ProductChangedEvent.FEATURED, ProductChangedEvent.STOCK);
+
+    private final ProductRepository productRepository;
+    private final SupplierRepository supplierRepository;
+    private final CategoryService categoryService;
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    public ProductImportResult importProducts(MultipartFile file, Long userId) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("File nhập không được trống");
+        }
+        String filename = Optional.ofNullable(file.getOriginalFilename()).orElse("").toLowerCase(Locale.ROOT);
+        boolean xlsx = filename.endsWith(".xlsx");
+        if (!xlsx && !filename.endsWith(".csv")) {
+            throw new IllegalArgumentException("Chỉ hỗ trợ file .csv hoặc .xlsx");
+        }
+        long startedAt = System.nanoTime();
+
+        // Danh mục lấy từ cache "categories"; nhà cung cấp chỉ cần một truy vấn id
+        Set<Long> categoryIds = categoryService.getAllCategories().stream()
+                .map(CategoryDTO::getId)
+                .collect(Collectors.toSet());
+        Set<Long> supplierIds = new HashSet<>(supplierRepository.findAllIds());
+        ImportRun run = new ImportRun(categoryIds, supplierIds, userId);
+        try (InputStream input = file.getInputStream()) {
+            if (xlsx) {
+                ProductSheetReader.readXlsx(input, run::accept);
+            } else {
+                ProductSheetReader.readCsv(input, run::accept);
+            }
+        } finally {
+            // Các lô đã ghi vẫn được công bố kể cả khi file hỏng giữa chừng
+            run.flush();
+            if (run.imported > 0) {
+                refreshCatalog();
+            }
+        }
+        if (run.columns == null) {
+            throw new IllegalArgumentException("File không có dòng tiêu đề");
+        }
+
+        long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        logger.info("Nhập {} / {} sản phẩm trong {} ms ({} dòng lỗi)", run.imported, run.total, elapsedMillis, run.errors.size());
+        return new ProductImportResult(run.total, run.imported, run.errors, elapsedMillis);
+    }
+
+    public void exportCsv(OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        // BOM để Excel nhận đúng tiếng Việt
+        writer.write('\uFEFF');
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+        try {
+            forEachExportPage(page -> {
+                try {
+                    for (Object[] row : page) {
+                        for (int i = 0; i < row.length; i++) {
+                            if (i > 0) {
+                                writer.write(',');
+                            }
+                            writer.write(csvValue(row[i]));
+                        }
+                        writer.write("\r\n");
+                    }
+                    // Đẩy từng trang ra client thay vì giữ cả file
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    public void exportXlsx(OutputStream output) throws IOException {
+        // SXSSF chỉ giữ 100 dòng gần nhất trong bộ nhớ, phần còn lại ghi ra file tạm
+        SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        try {
+            Sheet sheet = workbook.createSheet("Sản phẩm");
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                header.createCell(i).setCellValue(COLUMNS.get(i));
+            }
+            int[] rowIndex = {1};
+            forEachExportPage(page -> {
+                for (Object[] values : page) {
+                    Row row = sheet.createRow(rowIndex[0]++);
+                    for (int i = 0; i < values.length; i++) {
+                        setCell(row.createCell(i), values[i]);
+                    }
+                }
+            });
+            workbook.write(output);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private void forEachExportPage(Consumer<List<Object[]>> consumer) {
+        long afterId = 0L;
+        while (true) {
+            List<Object[]> page = productRepository.findExportPage(afterId, PageRequest.of(0, EXPORT_PAGE_SIZE));
+            if (page.isEmpty()) {
+                return;
+            }
+            consumer.accept(page);
+            afterId = (Long) page.get(page.size() - 1)[0];
+        }
+    }
+
+    // Một lần cho cả file: bộ điều phối cache, chỉ mục và ETag xử lý sự kiện toàn danh mục
+    private void refreshCatalog() {
+        // Số sản phẩm theo danh mục đổi nhưng bộ điều phối không quản lý cache "categories"
+        Cache categories = cacheManager.getCache("categories");
+        if (categories != null) {
+            categories.clear();
+        }
+        eventPublisher.publishEvent(ProductsBulkChangedEvent.wholeCatalog(IMPORTED_FIELDS));
+    }
+
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+
+    private static void setCell(Cell cell, Object value) {
+        if (value instanceof Number number) {
+            cell.setCellValue(number.doubleValue());
+        } else if (value instanceof Boolean flag) {
+            cell.setCellValue(flag);
+        } else if (value != null) {
+            cell.setCellValue(value.toString());
+        }
+    }
+
+    private final class ImportRun {
+
+        private final Set<Long> categoryIds;
+        private final Set<Long> supplierIds;
+        private final Long userId;
+        private final List<Product> pending = new ArrayList<>(CHUNK_SIZE);
+        private final List<Integer> pendingRows = new ArrayList<>(CHUNK_SIZE);
+        private final List<ProductImportResult.RowError> errors = new ArrayList<>();
+        private Map<String, Integer> columns;
+        private int total;
+        private int imported;
+        private boolean truncated;
+
+        private ImportRun(Set<Long> categoryIds, Set<Long> supplierIds, Long userId) {
+            this.categoryIds = categoryIds;
+            this.supplierIds = supplierIds;
+            this.userId = userId;
+        }
+
+        void accept(int rowNumber, List<String> cells) {
+            if (columns == null) {
+                columns = readHeader(cells);
+                return;
+            }
+            if (cells.stream().allMatch(String::isBlank) || truncated) {
+                return;
+            }
+            if (total == MAX_ROWS) {
+                truncated = true;
+                errors.add(new ProductImportResult.RowError(rowNumber,
+                        "Vượt quá giới hạn " + MAX_ROWS + " dòng mỗi lần nhập, các dòng từ đây trở đi bị bỏ qua"));
+                return;
+            }
+            total++;
+            try {
+                pending.add(toProduct(cells));
+                pendingRows.add(rowNumber);
+            } catch (IllegalArgumentException e) {
+                errors.add(new ProductImportResult.RowError(rowNumber, e.getMessage()));
+            }
+            if (pending.size() == CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        productRepository.insertWithInventory(pending, IMPORT_REASON, userId));
+                imported += pending.size();
+            } catch (DataAccessException e) {
+                logger.warn("Lô nhập sản phẩm từ dòng {} lỗi, ghi lại từng dòng: {}", pendingRows.get(0), e.getMessage());
+                // Tách lô hỏng thành từng dòng để báo đúng dòng gây lỗi, các dòng còn lại vẫn được nhập
+                for (int i = 0; i < pending.size(); i++) {
+                    List<Product> single = List.of(pending.get(i));
+                    try {
+                        transactionTemplate.executeWithoutResult(status ->
+                                productRepository.insertWithInventory(single, IMPORT_REASON, userId));
+                        imported++;
+                    } catch (DataAccessException rowError) {
+                        errors.add(new ProductImportResult.RowError(pendingRows.get(i),
+                                "Không thể lưu sản phẩm: " + rowError.getMostSpecificCause().getMessage()));
+                    }
+                }
+            } finally {
+                pending.clear();
+                pendingRows.clear();
+            }
+        }
+
+        private Map<String, Integer> readHeader(List<String> cells) {
+            Map<String, Integer> byName = new HashMap<>();
+            for (int i = 0; i < cells.size(); i++) {
+                String name = normalizeHeader(cells.get(i));
+                for (String column : COLUMNS) {
+                    if (normalizeHeader(column).equals(name) || ("featured".equals(name) && "isFeatured".equals(column))) {
+                        byName.putIfAbsent(column, i);
+                    }
+                }
+            }
+            List<String> missing = REQUIRED_COLUMNS.stream().filter(column -> !byName.containsKey(column)).toList();
+            if (!missing.isEmpty()) {
+                throw new IllegalArgumentException("Thiếu cột bắt buộc: " + String.join(", ", missing));
+            }
+            return byName;
+        }
+
+        private Product toProduct(List<String> cells) {
+            String existingId = text(cells, "id");
+            if (existingId != null) {
+                throw new IllegalArgumentException("Dòng có id " + existingId
+                        + ": nhập hàng loạt chỉ tạo sản phẩm mới, hãy xóa cột id hoặc sửa sản phẩm đã có trên trang quản lý");
+            }
+            Product product = new Product();
+            product.setName(text(cells, "name"));
+            product.setDescription(text(cells, "description"));
+            product.setCostPrice(decimal(cells, "costPrice", "Giá vốn"));
+            product.setSellingPrice(decimal(cells, "sellingPrice", "Giá bán"));
+            BigDecimal stock = decimal(cells, "stock", "Tồn kho");
+            product.setStock(stock == null ? 0 : integer(stock, "Tồn kho"));
+            product.setFeatured(flag(cells, "isFeatured"));
+            ProductService.validateProduct(product);
+            if (product.getName().length() > MAX_TEXT_LENGTH) {
+                throw new IllegalArgumentException("Tên sản phẩm không được quá " + MAX_TEXT_LENGTH + " ký tự");
+            }
+            if (product.getDescription() != null && product.getDescription().length() > MAX_TEXT_LENGTH) {
+                throw new IllegalArgumentException("Mô tả không được quá " + MAX_TEXT_LENGTH + " ký tự");
+            }
+
+            Long categoryId = id(cells, "categoryId", "Danh mục là bắt buộc");
+            if (!categoryIds.contains(categoryId)) {
+                throw new IllegalArgumentException("Danh mục không tồn tại với ID: " + categoryId);
+            }
+            Long supplierId = id(cells, "supplierId", "Nhà cung cấp là bắt buộc");
+            if (!supplierIds.contains(supplierId)) {
+                throw new IllegalArgumentException("Nhà cung cấp không tồn tại với ID: " + supplierId);
+            }
+            Category category = new Category();
+            category.setId(categoryId);
+            product.setCategory(category);
+            Supplier supplier = new Supplier();
+            supplier.setId(supplierId);
+            product.setSupplier(supplier);
+            return product;
+        }
+
+        private String text(List<String> cells, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= cells.size()) {
+                return null;
+            }
+            String value = cells.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private BigDecimal decimal(List<String> cells, String column, String label) {
+            String value = text(cells, column);
+            if (value == null) {
+                return null;
+            }
+            try {
+                // Dấu phẩy chỉ là phân cách hàng nghìn (15,000,000)
+                return new BigDecimal(value.replace(",", "").replace(" ", ""));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(label + " không hợp lệ: " + value);
+            }
+        }
+
+        private Long id(List<String> cells, String column, String missingMessage) {
+            BigDecimal value = decimal(cells, column, column);
+            if (value == null) {
+                throw new IllegalArgumentException(missingMessage);
+            }
+            try {
+                return value.longValueExact();
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException(column + " không hợp lệ: " + value);
+            }
+        }
+
+        private int integer(BigDecimal value, String label) {
+            try {
+                return value.intValueExact();
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException(label + " phải là số nguyên: " + value);
+            }
+        }
+
+        private boolean flag(List<String> cells, String column) {
+            String value = text(cells, column);
+            if (value == null) {
+                return false;
+            }
+            return switch (value.toLowerCase(Locale.ROOT)) {
+                case "true", "1", "yes", "x", "có" -> true;
+                case "false", "0", "no", "không" -> false;
+                default -> throw new IllegalArgumentException("Giá trị " + column + " không hợp lệ: " + value);
+            };
+        }
+    }
+
+    private static String normalizeHeader(String header) {
+        return header.trim().toLowerCase(Locale.ROOT).replace("_", "").replace(" ", "");
+    }
+}
@@ -0,0 +1,289 @@
+package com.sondv.phone.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.sondv.phone.dto.ProductSummaryDTO;
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
+import com.sondv.phone.util.VietnameseTextUtil;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+
+// Xóa cache sản phẩm có chọn lọc theo sự kiện thay đổi: chỉ đúng sản phẩm đó, các danh sách có chứa nó
+// và các trang tìm kiếm mà nó thuộc về; sau đó (tùy chọn) nạp lại các khóa vừa bị xóa.
+// Chạy sau khi các chỉ mục trong bộ nhớ đã cập nhật (Order lớn hơn).
+@Service
+@RequiredArgsConstructor
+public class ProductCacheCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCacheCoordinator.class);
+
+    private static final String PRODUCTS = "products";
+    private static final String PRODUCT = "product";
+    private static final String FEATURED = "featuredProducts";
+    private static final String NEWEST = "newestProducts";
+    private static final String BEST_SELLING = "bestSellingProducts";
+
+    // Các trường hiển thị trên thẻ sản phẩm; đổi trường khác (giá vốn, nhà cung cấp...) chỉ ảnh hưởng trang chi tiết
+    private static final Set<String> SUMMARY_FIELDS = Set.of(
+            ProductChangedEvent.NAME, ProductChangedEvent.DESCRIPTION, ProductChangedEvent.PRICE,
+            ProductChangedEvent.DISCOUNT, ProductChangedEvent.FEATURED, ProductChangedEvent.STOCK,
+            ProductChangedEvent.SOLD_QUANTITY, ProductChangedEvent.RATING, ProductChangedEvent.IMAGES);
+
+    private final CacheManager cacheManager;
+    private final TaskScheduler taskScheduler;
+
+    // Gọi qua proxy để kết quả nạp lại được ghi vào cache
+    private final ProductService productService;
+
+    @Value("${catalog.cache.rewarm:true}")
+    private boolean rewarm;
+
+    @Order(100)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Long id = event.getProductId();
+        Set<String> fields = event.getChangedFields();
+        boolean membershipChanged = event.getType() != ProductChangedEvent.Type.UPDATED;
+        Rewarm rewarmKeys = new Rewarm();
+
+        if (evictKey(PRODUCT, id)) {
+            rewarmKeys.productIds.add(id);
+        }
+        if (!membershipChanged && Collections.disjoint(fields, SUMMARY_FIELDS)) {
+            return;
+        }
+
+        Product product = event.getProduct();
+        boolean featuredNow = product != null && product.isFeatured();
+        rewarmKeys.featured = evictListIf(FEATURED, (key, ids) ->
+                ids.contains(id) || featuredNow || event.hasChanged(ProductChangedEvent.FEATURED)) > 0;
+        // Sản phẩm mới có id lớn nhất nên luôn lọt vào danh sách mới nhất
+        rewarmKeys.newestLimits.addAll(evictedLimits(NEWEST, (key, ids) ->
+                ids.contains(id) || event.getType() == ProductChangedEvent.Type.CREATED));
+        rewarmKeys.bestSellingLimits.addAll(evictedLimits(BEST_SELLING, (key, ids) ->
+                ids.contains(id) || event.hasChanged(ProductChangedEvent.SOLD_QUANTITY)));
+
+        String name = product != null ? product.getName() : null;
+        String previousName = event.getPreviousName();
+        boolean nameChanged = event.hasChanged(ProductChangedEvent.NAME);
+        rewarmKeys.searchPages.addAll(evictSearchPages((keyword, page) -> {
+            if (membershipChanged || nameChanged) {
+                // Tập kết quả của từ khóa thay đổi: mọi trang của từ khóa đó lệch vị trí và tổng số
+                if (keyword.isEmpty() && membershipChanged) {
+                    return true;
+                }
+                if (!keyword.isEmpty() && (matchesKeyword(keyword, name) || matchesKeyword(keyword, previousName))) {
+                    return true;
+                }
+            }
+            return containsProduct(page, id);
+        }));
+
+        rewarmLater(rewarmKeys);
+    }
+
+    @Order(100)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event) {
+        if (event.isWholeCatalog()) {
+            for (String name : List.of(PRODUCTS, PRODUCT, FEATURED, NEWEST, BEST_SELLING)) {
+                org.springframework.cache.Cache cache = cacheManager.getCache(name);
+                if (cache != null) {
+                    cache.clear();
+                }
+            }
+            Rewarm rewarmKeys = new Rewarm();
+            rewarmKeys.featured = true;
+            rewarmLater(rewarmKeys);
+            return;
+        }
+
+        Set<Long> ids = event.getProducts().stream().map(Product::getId).collect(Collectors.toSet());
+        Rewarm rewarmKeys = new Rewarm();
+        for (Long id : ids) {
+            if (evictKey(PRODUCT, id)) {
+                rewarmKeys.productIds.add(id);
+            }
+        }
+        BiPredicate<Object, Set<Long>> overlaps = (key, cachedIds) -> !Collections.disjoint(cachedIds, ids);
+        rewarmKeys.featured = evictListIf(FEATURED, overlaps) > 0;
+        rewarmKeys.newestLimits.addAll(evictedLimits(NEWEST, overlaps));
+        // Doanh số thay đổi làm xáo trộn thứ hạng nên xóa mọi danh sách bán chạy
+        BiPredicate<Object, Set<Long>> rankingChanged = event.hasChanged(ProductChangedEvent.SOLD_QUANTITY)
+                ? (key, cachedIds) -> true
+                : overlaps;
+        rewarmKeys.bestSellingLimits.addAll(evictedLimits(BEST_SELLING, rankingChanged));
+        // Đổi giá/giảm giá không làm thay đổi tập kết quả tìm kiếm theo tên, chỉ cần xóa trang có chứa sản phẩm
+        rewarmKeys.searchPages.addAll(evictSearchPages((keyword, page) ->
+                page.getContent().stream().anyMatch(dto -> ids.contains(dto.getId()))));
+        rewarmLater(rewarmKeys);
+    }
+
+    private boolean evictKey(String cacheName, Object key) {
+        org.springframework.cache.Cache cache = cacheManager.getCache(cacheName);
+        return cache != null && cache.evictIfPresent(key);
+    }
+
+    private List<Integer> evictedLimits(String cacheName, BiPredicate<Object, Set<Long>> shouldEvict) {
+        List<Integer> limits = new ArrayList<>();
+        evictListIf(cacheName, (key, ids) -> {
+            boolean evict = shouldEvict.test(key, ids);
+            if (evict && key instanceof Integer limit) {
+                limits.add(limit);
+            }
+            return evict;
+        });
+        return limits;
+    }
+
+    // Danh sách nổi bật/mới nhất/bán chạy: xóa các khóa mà danh sách đang cache thỏa điều kiện
+    @SuppressWarnings("unchecked")
+    private int evictListIf(String cacheName, BiPredicate<Object, Set<Long>> shouldEvict) {
+        Cache<Object, Object> cache = nativeCache(cacheName);
+        if (cache == null) {
+            clearIfPresent(cacheName);
+            return 0;
+        }
+        int evicted = 0;
+        for (Map.Entry<Object, Object> entry : cache.asMap().entrySet()) {
+            Set<Long> ids = entry.getValue() instanceof List<?> list
+                    ? ((List<ProductSummaryDTO>) list).stream().map(ProductSummaryDTO::getId).collect(Collectors.toSet())
+                    : Set.of();
+            if (shouldEvict.test(entry.getKey(), ids) && cache.asMap().remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    // Trang tìm kiếm có khóa "từkhóa-trang-cỡ"; trả về các trang đã xóa để nạp lại
+    @SuppressWarnings("unchecked")
+    private List<SearchPageKey> evictSearchPages(BiPredicate<String, Page<ProductSummaryDTO>> shouldEvict) {
+        List<SearchPageKey> evicted = new ArrayList<>();
+        Cache<Object, Object> cache = nativeCache(PRODUCTS);
+        if (cache == null) {
+            clearIfPresent(PRODUCTS);
+            return evicted;
+        }
+        for (Map.Entry<Object, Object> entry : cache.asMap().entrySet()) {
+            SearchPageKey key = SearchPageKey.parse(entry.getKey());
+            if (key == null || !(entry.getValue() instanceof Page<?> page)) {
+                cache.invalidate(entry.getKey());
+                continue;
+            }
+            if (shouldEvict.test(key.keyword(), (Page<ProductSummaryDTO>) page)
+                    && cache.asMap().remove(entry.getKey(), entry.getValue())) {
+                evicted.add(key);
+            }
+        }
+        return evicted;
+    }
+
+    private Cache<Object, Object> nativeCache(String cacheName) {
+        org.springframework.cache.Cache cache = cacheManager.getCache(cacheName);
+        return cache instanceof CaffeineCache caffeineCache ? caffeineCache.getNativeCache() : null;
+    }
+
+    // Cache không duyệt được khóa (Redis...) thì xóa toàn bộ để không trả dữ liệu cũ
+    private void clearIfPresent(String cacheName) {
+        org.springframework.cache.Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private static boolean containsProduct(Page<ProductSummaryDTO> page, Long id) {
+        return page.getContent().stream().anyMatch(dto -> id.equals(dto.getId()));
+    }
+
+    // Khớp nếu tên chứa nguyên từ khóa (LIKE) hoặc mọi token từ khóa là tiền tố của một token trong tên (chỉ mục)
+    private static boolean matchesKeyword(String keyword, String name) {
+        if (name == null) {
+            return false;
+        }
+        if (name.toLowerCase().contains(keyword.trim().toLowerCase())) {
+            return true;
+        }
+        Set<String> nameTokens = VietnameseTextUtil.indexTokens(name);
+        List<String> queryTokens = VietnameseTextUtil.queryTokens(keyword);
+        return !queryTokens.isEmpty() && queryTokens.stream()
+                .allMatch(q -> nameTokens.stream().anyMatch(t -> t.startsWith(q)));
+    }
+
+    private void rewarmLater(Rewarm keys) {
+        if (!rewarm || keys.isEmpty()) {
+            return;
+        }
+        taskScheduler.schedule(() -> {
+            try {
+                keys.productIds.forEach(productService::getProductById);
+                if (keys.featured) {
+                    productService.getFeaturedProducts();
+                }
+                keys.newestLimits.forEach(productService::getNewestProducts);
+                keys.bestSellingLimits.forEach(productService::getBestSellingProducts);
+                for (SearchPageKey page : keys.searchPages) {
+                    productService.getAllProducts(page.rawKeyword(), PageRequest.of(page.page(), page.size()));
+                }
+            } catch (Exception e) {
+                logger.warn("Không thể nạp lại cache sản phẩm: {}", e.getMessage());
+            }
+        }, Instant.now());
+    }
+
+    private static class Rewarm {
+        private final Set<Long> productIds = new LinkedHashSet<>();
+        private boolean featured;
+        private final Set<Integer> newestLimits = new LinkedHashSet<>();
+        private final Set<Integer> bestSellingLimits = new LinkedHashSet<>();
+        private final List<SearchPageKey> searchPages = new ArrayList<>();
+
+        private boolean isEmpty() {
+            return productIds.isEmpty() && !featured && newestLimits.isEmpty()
+                    && bestSellingLimits.isEmpty() && searchPages.isEmpty();
+        }
+    }
+
+    // keyword đã chuẩn hóa để so khớp; rawKeyword là đúng tham số đã sinh ra khóa, dùng khi nạp lại để ghi đúng khóa cũ
+    private record SearchPageKey(String keyword, String rawKeyword, int page, int size) {
+
+        // Khóa do getAllProducts sinh ra: từ khóa null được ghép thành chuỗi "null"
+        static SearchPageKey parse(Object key) {
+            if (!(key instanceof String raw)) {
+                return null;
+            }
+            int sizeDash = raw.lastIndexOf('-');
+            int pageDash = sizeDash > 0 ? raw.lastIndexOf('-', sizeDash - 1) : -1;
+            if (pageDash < 0) {
+                return null;
+            }
+            try {
+                String rawKeyword = raw.substring(0, pageDash);
+                if ("null".equals(rawKeyword)) {
+                    rawKeyword = null;
+                }
+                String keyword = rawKeyword == null ? "" : rawKeyword.trim();
+                return new SearchPageKey(keyword, rawKeyword, Integer.parseInt(raw.substring(pageDash + 1, sizeDash)),
+                        Integer.parseInt(raw.substring(sizeDash + 1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
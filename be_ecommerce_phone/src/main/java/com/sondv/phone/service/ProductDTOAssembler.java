@@ -0,0 +1,146 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.dto.CategoryDTO;
+import com.sondv.phone.dto.ProductDTO;
+import com.sondv.phone.dto.ProductImageDTO;
+import com.sondv.phone.dto.SupplierDTO;
+import com.sondv.phone.entity.Category;
+import com.sondv.phone.entity.InventoryLog;
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.entity.Supplier;
+import com.sondv.phone.repository.InventoryLogRepository;
+import com.sondv.phone.repository.ProductImageRepository;
+import com.sondv.phone.repository.ProductRepository;
+import com.sondv.phone.util.PriceUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Ghép ProductDTO theo lô: số truy vấn cố định cho cả trang thay vì vài truy vấn cho mỗi sản phẩm.
+// Sản phẩm đầu vào nên được nạp kèm category, supplier, inventory (entity graph "Product.listing").
+@Component
+@RequiredArgsConstructor
+public class ProductDTOAssembler {
+
+    private final ProductRepository productRepository;
+    private final ProductImageRepository productImageRepository;
+    private final InventoryLogRepository inventoryLogRepository;
+
+    // Danh sách: 1 truy vấn GROUP BY đếm sản phẩm theo danh mục + 1 truy vấn ảnh theo danh sách id, không kèm lịch sử tồn kho
+    public List<ProductDTO> toDTOs(List<Product> products) {
+        if (products.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Integer> categoryCounts = countProductsByCategory(products);
+        Map<Long, List<ProductImageDTO>> images = loadImages(products);
+        LocalDateTime now = LocalDateTime.now();
+        return products.stream()
+                .map(product -> toDTO(product, categoryCounts, images.getOrDefault(product.getId(), new ArrayList<>()), null, now))
+                .collect(Collectors.toList());
+    }
+
+    public Page<ProductDTO> toDTOPage(Page<Product> page) {
+        return new PageImpl<>(toDTOs(page.getContent()), page.getPageable(), page.getTotalElements());
+    }
+
+    // Chi tiết một sản phẩm: kèm lịch sử tồn kho
+    public ProductDTO toDetailDTO(Product product) {
+        List<Product> single = List.of(product);
+        List<InventoryLog> logs = inventoryLogRepository.findByProductId(product.getId());
+        return toDTO(product, countProductsByCategory(single),
+                loadImages(single).getOrDefault(product.getId(), new ArrayList<>()), logs, LocalDateTime.now());
+    }
+
+    // Chi tiết nhiều sản phẩm (cùng dạng với toDetailDTO): thêm đúng 1 truy vấn lịch sử tồn kho cho cả lô
+    public List<ProductDTO> toDetailDTOs(List<Product> products) {
+        if (products.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Integer> categoryCounts = countProductsByCategory(products);
+        Map<Long, List<ProductImageDTO>> images = loadImages(products);
+        Map<Long, List<InventoryLog>> logs = inventoryLogRepository.findByProductIdIn(
+                        products.stream().map(Product::getId).collect(Collectors.toList())).stream()
+                .collect(Collectors.groupingBy(log -> log.getProduct().getId()));
+        LocalDateTime now = LocalDateTime.now();
+        return products.stream()
+                .map(product -> toDTO(product, categoryCounts, images.getOrDefault(product.getId(), new ArrayList<>()),
+                        logs.getOrDefault(product.getId(), new ArrayList<>()), now))
+                .collect(Collectors.toList());
+    }
+
+    private ProductDTO toDTO(Product product, Map<Long, Integer> categoryCounts, List<ProductImageDTO> images,
+                             List<InventoryLog> inventoryLogs, LocalDateTime now) {
+        BigDecimal currentPrice = PriceUtil.currentPrice(product, now);
+
+        return ProductDTO.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .description(product.getDescription())
+                .costPrice(product.getCostPrice())
+                .sellingPrice(product.getSellingPrice())
+                .discountedPrice(currentPrice.compareTo(product.getSellingPrice()) < 0 ? currentPrice : null)
+                .discountStartDate(product.getDiscountStartDate())
+                .discountEndDate(product.getDiscountEndDate())
+                .isFeatured(product.isFeatured())
+                .stock(product.getStock())
+                .soldQuantity(product.getSoldQuantity())
+                .rating(product.getRating())
+                .ratingCount(product.getRatingCount())
+                .category(mapCategoryToDTO(product.getCategory(), categoryCounts))
+                .supplier(mapSupplierToDTO(product.getSupplier()))
+                .images(images)
+                .inventory(product.getInventory())
+                .inventoryLogs(inventoryLogs)
+                .build();
+    }
+
+    private Map<Long, Integer> countProductsByCategory(List<Product> products) {
+        Set<Long> categoryIds = products.stream()
+                .map(Product::getCategory)
+                .filter(Objects::nonNull)
+                .map(Category::getId)
+                .collect(Collectors.toSet());
+        Map<Long, Integer> counts = new HashMap<>();
+        if (categoryIds.isEmpty()) {
+            return counts;
+        }
+        for (Object[] row : productRepository.countByCategoryIds(categoryIds)) {
+            counts.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        return counts;
+    }
+
+    private Map<Long, List<ProductImageDTO>> loadImages(List<Product> products) {
+        List<Long> productIds = products.stream().map(Product::getId).collect(Collectors.toList());
+        Map<Long, List<ProductImageDTO>> images = new HashMap<>();
+        for (Object[] row : productImageRepository.findImageRowsByProductIds(productIds)) {
+            images.computeIfAbsent((Long) row[0], k -> new ArrayList<>())
+                    .add(ProductImageDTO.builder().id((Long) row[1]).imageUrl((String) row[2]).build());
+        }
+        return images;
+    }
+
+    private CategoryDTO mapCategoryToDTO(Category category, Map<Long, Integer> categoryCounts) {
+        return CategoryDTO.builder()
+                .id(category.getId())
+                .name(category.getName())
+                .productCount(categoryCounts.getOrDefault(category.getId(), 0))
+                .build();
+    }
+
+    private SupplierDTO mapSupplierToDTO(Supplier supplier) {
+        return SupplierDTO.builder()
+                .id(supplier.getId())
+                .name(supplier.getName())
+                .email(supplier.getEmail())
+                .phone(supplier.getPhone())
+                .address(supplier.getAddress())
+                .build();
+    }
+}
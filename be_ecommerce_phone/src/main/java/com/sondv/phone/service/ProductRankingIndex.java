@@ -0,0 +1,123 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
+import com.sondv.phone.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+// Vòng đệm N sản phẩm mới nhất cho widget trang chủ, cập nhật theo sự kiện sản phẩm;
+// chỉ khi một phần tử trong vòng bị xóa mới nạp lại bằng truy vấn LIMIT. Bán chạy nằm ở BestSellerLeaderboard.
+@Service
+@RequiredArgsConstructor
+public class ProductRankingIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductRankingIndex.class);
+
+    public static final int CAPACITY = 50;
+
+    private final ProductRepository productRepository;
+
+    private final NewestRing newest = new NewestRing(CAPACITY);
+
+    // id của tối đa limit sản phẩm mới nhất; null nếu limit vượt quá sức chứa (dùng truy vấn LIMIT thay thế)
+    public long[] newestIds(int limit) {
+        if (limit > CAPACITY) {
+            return null;
+        }
+        synchronized (newest) {
+            if (newest.stale) {
+                newest.load(productRepository.findNewestIds(PageRequest.of(0, CAPACITY)));
+            }
+            return newest.first(limit);
+        }
+    }
+
+    // Chạy trước bộ điều phối cache để danh sách nạp lại đã phản ánh thay đổi
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Long id = event.getProductId();
+        switch (event.getType()) {
+            case CREATED -> {
+                synchronized (newest) {
+                    newest.push(id);
+                }
+            }
+            case DELETED -> {
+                synchronized (newest) {
+                    newest.remove(id);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event) {
+        if (event.isWholeCatalog()) {
+            synchronized (newest) {
+                newest.stale = true;
+            }
+        }
+    }
+
+    // Vòng đệm id giảm dần: sản phẩm mới luôn có id lớn nhất nên chỉ cần ghi đè phần tử cũ nhất
+    static final class NewestRing {
+        private final long[] buffer;
+        private int head;
+        private int size;
+        boolean stale = true;
+
+        NewestRing(int capacity) {
+            this.buffer = new long[capacity];
+        }
+
+        void load(List<Long> idsDescending) {
+            head = 0;
+            size = 0;
+            for (int i = idsDescending.size() - 1; i >= 0; i--) {
+                push(idsDescending.get(i));
+            }
+            stale = false;
+            logger.debug("Đã nạp {} sản phẩm mới nhất", size);
+        }
+
+        void push(long id) {
+            if (stale) {
+                return;
+            }
+            head = (head - 1 + buffer.length) % buffer.length;
+            buffer[head] = id;
+            size = Math.min(size + 1, buffer.length);
+        }
+
+        void remove(long id) {
+            for (int i = 0; i < size; i++) {
+                if (buffer[(head + i) % buffer.length] == id) {
+                    // Khoảng trống ở cuối chỉ lấp được bằng cơ sở dữ liệu
+                    stale = true;
+                    return;
+                }
+            }
+        }
+
+        long[] first(int limit) {
+            int n = Math.min(limit, size);
+            long[] ids = new long[n];
+            for (int i = 0; i < n; i++) {
+                ids[i] = buffer[(head + i) % buffer.length];
+            }
+            return ids;
+        }
+    }
+}
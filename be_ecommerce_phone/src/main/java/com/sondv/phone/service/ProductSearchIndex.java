@@ -0,0 +1,255 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
+import com.sondv.phone.repository.ProductRepository;
+import com.sondv.phone.util.VietnameseTextUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Chỉ mục đảo ngược cho tìm kiếm sản phẩm: token (đã bỏ dấu) -> danh sách id sản phẩm đã sắp xếp
+@Service
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+    private static final long[] EMPTY = new long[0];
+
+    private final ProductRepository productRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, long[]> postings = new TreeMap<>();
+    private final Map<Long, Set<String>> tokensByProduct = new HashMap<>();
+    private volatile boolean ready = false;
+
+    @PostConstruct
+    public void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("Không thể khởi tạo chỉ mục tìm kiếm, dùng truy vấn LIKE thay thế", e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild() {
+        List<Object[]> rows = productRepository.findAllIdAndName();
+        Map<String, List<Long>> built = new HashMap<>();
+        Map<Long, Set<String>> tokens = new HashMap<>();
+        for (Object[] row : rows) {
+            Long id = (Long) row[0];
+            Set<String> productTokens = VietnameseTextUtil.indexTokens((String) row[1]);
+            tokens.put(id, productTokens);
+            for (String token : productTokens) {
+                built.computeIfAbsent(token, k -> new ArrayList<>()).add(id);
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            built.forEach((token, ids) -> postings.put(token, ids.stream().mapToLong(Long::longValue).sorted().toArray()));
+            tokensByProduct.clear();
+            tokensByProduct.putAll(tokens);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Đã lập chỉ mục tìm kiếm cho {} sản phẩm ({} token)", tokens.size(), built.size());
+    }
+
+    // Chỉ tên sản phẩm được lập chỉ mục nên bỏ qua các thay đổi khác
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            remove(event.getProductId());
+        } else if (event.hasChanged(ProductChangedEvent.NAME)) {
+            upsert(event.getProduct());
+        }
+    }
+
+    // Nhập hàng loạt thay đổi tên của rất nhiều sản phẩm: dựng lại một lần thay vì cập nhật từng sản phẩm
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event) {
+        if (event.isWholeCatalog() && event.hasChanged(ProductChangedEvent.NAME)) {
+            rebuild();
+        }
+    }
+
+    public void upsert(Product product) {
+        Long id = product.getId();
+        Set<String> newTokens = VietnameseTextUtil.indexTokens(product.getName());
+        lock.writeLock().lock();
+        try {
+            removeTokens(id);
+            for (String token : newTokens) {
+                postings.merge(token, new long[]{id}, ProductSearchIndex::insert);
+            }
+            tokensByProduct.put(id, newTokens);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeTokens(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Id khớp mọi từ khóa (so khớp tiền tố), sắp xếp tăng dần
+    public long[] match(String query) {
+        List<String> queryTokens = VietnameseTextUtil.queryTokens(query);
+        if (queryTokens.isEmpty()) {
+            return EMPTY;
+        }
+        lock.readLock().lock();
+        try {
+            long[] result = null;
+            for (String token : queryTokens) {
+                long[] ids = prefixUnion(token);
+                result = result == null ? ids : intersect(result, ids);
+                if (result.length == 0) {
+                    break;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Id khớp, ưu tiên sản phẩm khớp nguyên token nhiều hơn, cùng điểm thì theo id tăng dần
+    public long[] search(String query) {
+        long[] matched = match(query);
+        if (matched.length <= 1) {
+            return matched;
+        }
+        List<String> queryTokens = VietnameseTextUtil.queryTokens(query);
+        int[] scores = new int[matched.length];
+        lock.readLock().lock();
+        try {
+            for (String token : queryTokens) {
+                long[] exact = postings.getOrDefault(token, EMPTY);
+                for (int i = 0; i < matched.length; i++) {
+                    if (Arrays.binarySearch(exact, matched[i]) >= 0) {
+                        scores[i]++;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        long[] keys = new long[matched.length];
+        for (int i = 0; i < matched.length; i++) {
+            keys[i] = ((long) (queryTokens.size() - scores[i]) << 32) | i;
+        }
+        Arrays.sort(keys);
+        long[] ranked = new long[matched.length];
+        for (int i = 0; i < keys.length; i++) {
+            ranked[i] = matched[(int) keys[i]];
+        }
+        return ranked;
+    }
+
+    private long[] prefixUnion(String prefix) {
+        SortedMap<String, long[]> range = postings.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (range.isEmpty()) {
+            return EMPTY;
+        }
+        if (range.size() == 1) {
+            return range.values().iterator().next();
+        }
+        int total = 0;
+        for (long[] ids : range.values()) {
+            total += ids.length;
+        }
+        long[] merged = new long[total];
+        int pos = 0;
+        for (long[] ids : range.values()) {
+            System.arraycopy(ids, 0, merged, pos, ids.length);
+            pos += ids.length;
+        }
+        Arrays.sort(merged);
+        int unique = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (i == 0 || merged[i] != merged[i - 1]) {
+                merged[unique++] = merged[i];
+            }
+        }
+        return Arrays.copyOf(merged, unique);
+    }
+
+    private void removeTokens(Long productId) {
+        Set<String> oldTokens = tokensByProduct.remove(productId);
+        if (oldTokens == null) {
+            return;
+        }
+        for (String token : oldTokens) {
+            long[] ids = postings.get(token);
+            if (ids == null) {
+                continue;
+            }
+            int pos = Arrays.binarySearch(ids, productId);
+            if (pos < 0) {
+                continue;
+            }
+            if (ids.length == 1) {
+                postings.remove(token);
+            } else {
+                long[] next = new long[ids.length - 1];
+                System.arraycopy(ids, 0, next, 0, pos);
+                System.arraycopy(ids, pos + 1, next, pos, ids.length - pos - 1);
+                postings.put(token, next);
+            }
+        }
+    }
+
+    private static long[] insert(long[] ids, long[] single) {
+        long id = single[0];
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos >= 0) {
+            return ids;
+        }
+        int insertAt = -pos - 1;
+        long[] next = new long[ids.length + 1];
+        System.arraycopy(ids, 0, next, 0, insertAt);
+        next[insertAt] = id;
+        System.arraycopy(ids, insertAt, next, insertAt + 1, ids.length - insertAt);
+        return next;
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] out = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, k);
+    }
+}
@@ -2,23 +2,29 @@ package com.sondv.phone.service;
 
 import com.sondv.phone.dto.*;
 import com.sondv.phone.entity.*;
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
 import com.sondv.phone.repository.*;
+import com.sondv.phone.util.PriceUtil;
+import com.sondv.phone.util.ProductCursor;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.*;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,6 +33,9 @@ public class ProductService {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductService.class);
 
+    private static final int DISCOUNT_CHUNK_SIZE = 1000;
+    private static final int MAX_BATCH_IDS = 100;
+
     private final ProductRepository productRepository;
     private final ProductImageRepository productImageRepository;
     private final CategoryRepository categoryRepository;
@@ -34,49 +43,87 @@ public class ProductService {
     private final InventoryRepository inventoryRepository;
     private final InventoryLogRepository inventoryLogRepository;
     private final CloudinaryService cloudinaryService;
-    private final PreloadCacheService preloadCacheService;
+    private final CatalogIndexService catalogIndexService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductDTOAssembler productDTOAssembler;
+    private final ProductRankingIndex productRankingIndex;
+    private final BestSellerLeaderboard bestSellerLeaderboard;
+    private final RelatedProductsIndex relatedProductsIndex;
+    private final StockReservationLedger stockReservationLedger;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
 
     // Lấy danh sách sản phẩm với phân trang
     @Cacheable(value = "products", key = "#searchKeyword + '-' + #pageable.pageNumber + '-' + #pageable.pageSize", unless = "#result == null || #result.isEmpty()")
-    public Page<ProductDTO> getAllProducts(String searchKeyword, Pageable pageable) {
-        Page<Product> productPage;
-        if (searchKeyword != null && !searchKeyword.trim().isEmpty()) {
-            productPage = productRepository.findByNameContainingIgnoreCase(searchKeyword.trim(), pageable);
-        } else {
-            productPage = productRepository.findAll(pageable);
+    public Page<ProductSummaryDTO> getAllProducts(String searchKeyword, Pageable pageable) {
+        boolean hasKeyword = searchKeyword != null && !searchKeyword.trim().isEmpty();
+        if (hasKeyword && productSearchIndex.isReady()) {
+            return searchWithIndex(searchKeyword, pageable);
+        }
+        if (hasKeyword) {
+            return productRepository.findSummariesByName(searchKeyword.trim(), pageable);
+        }
+        return productRepository.findAllSummaries(pageable);
+    }
+
+    // Tìm theo chỉ mục đảo ngược; nếu client yêu cầu sắp xếp thì để cơ sở dữ liệu phân trang trên tập id đã khớp
+    private Page<ProductSummaryDTO> searchWithIndex(String searchKeyword, Pageable pageable) {
+        long[] ids = productSearchIndex.search(searchKeyword);
+        if (pageable.getSort().isSorted()) {
+            List<Long> idList = Arrays.stream(ids).boxed().collect(Collectors.toList());
+            return productRepository.findSummariesByIdIn(idList, pageable);
         }
-        return productPage.map(this::mapToDTOWithDiscountCheck);
+        int start = (int) Math.min(pageable.getOffset(), ids.length);
+        int end = Math.min(start + pageable.getPageSize(), ids.length);
+        return new PageImpl<>(loadSummariesInOrder(Arrays.copyOfRange(ids, start, end)), pageable, ids.length);
     }
 
     // Lấy sản phẩm nổi bật
     @Cacheable(value = "featuredProducts")
-    public List<ProductDTO> getFeaturedProducts() {
-        List<Product> products = productRepository.findByIsFeaturedTrue();
-        return products.stream().map(this::mapToDTOWithDiscountCheck).collect(Collectors.toList());
+    public List<ProductSummaryDTO> getFeaturedProducts() {
+        return productRepository.findFeaturedSummaries();
     }
 
     // Lấy sản phẩm mới nhất
     @Cacheable(value = "newestProducts", key = "#limit")
-    public List<ProductDTO> getNewestProducts(int limit) {
+    public List<ProductSummaryDTO> getNewestProducts(int limit) {
         if (limit <= 0) {
             throw new IllegalArgumentException("Giới hạn phải lớn hơn 0");
         }
-        List<Product> products = productRepository.findAllByOrderByIdDesc().stream()
-                .limit(limit)
-                .collect(Collectors.toList());
-        return products.stream().map(this::mapToDTOWithDiscountCheck).collect(Collectors.toList());
+        long[] ids = productRankingIndex.newestIds(limit);
+        if (ids != null) {
+            return loadSummariesInOrder(ids);
+        }
+        return productRepository.findSummaries(PageRequest.of(0, limit, Sort.by(Sort.Direction.DESC, "id")));
     }
 
-    // Lấy sản phẩm bán chạy
+    // Lấy sản phẩm bán chạy toàn thời gian
     @Cacheable(value = "bestSellingProducts", key = "#limit")
-    public List<ProductDTO> getBestSellingProducts(int limit) {
+    public List<ProductSummaryDTO> getBestSellingProducts(int limit) {
         if (limit <= 0) {
             throw new IllegalArgumentException("Giới hạn phải lớn hơn 0");
         }
-        List<Product> products = productRepository.findTop5ByOrderBySoldQuantityDesc().stream()
-                .limit(limit)
-                .collect(Collectors.toList());
-        return products.stream().map(this::mapToDTOWithDiscountCheck).collect(Collectors.toList());
+        List<Long> ids = bestSellerLeaderboard.topIds(BestSellerLeaderboard.Window.ALL_TIME, limit);
+        // Bảng xếp hạng chỉ chứa sản phẩm đã bán; thiếu thì để cơ sở dữ liệu bổ sung theo thứ tự soldQuantity
+        if (ids.size() == limit) {
+            return loadSummariesInOrder(ids.stream().mapToLong(Long::longValue).toArray());
+        }
+        return productRepository.findSummaries(PageRequest.of(0, limit,
+                Sort.by(Sort.Direction.DESC, "soldQuantity").and(Sort.by(Sort.Direction.ASC, "id"))));
+    }
+
+    // Bán chạy trong cửa sổ trượt 24h/7 ngày/30 ngày
+    @Cacheable(value = "bestSellingProducts", key = "#window.param + '-' + #limit")
+    public List<ProductSummaryDTO> getBestSellingProducts(BestSellerLeaderboard.Window window, int limit) {
+        if (window == BestSellerLeaderboard.Window.ALL_TIME) {
+            return getBestSellingProducts(limit);
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Giới hạn phải lớn hơn 0");
+        }
+        List<Long> ids = bestSellerLeaderboard.topIds(window, limit);
+        return loadSummariesInOrder(ids.stream().mapToLong(Long::longValue).toArray());
     }
 
     // Lấy sản phẩm theo ID
@@ -85,11 +132,59 @@ public class ProductService {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("ID sản phẩm không hợp lệ");
         }
-        return productRepository.findById(id).map(this::mapToDTOWithDiscountCheck);
+        return productRepository.findById(id).map(productDTOAssembler::toDetailDTO);
+    }
+
+    // Tra cứu nhiều sản phẩm cho giỏ hàng/yêu thích: lấy từ cache "product" trước, các id còn thiếu nạp bằng
+    // một truy vấn IN (kèm số truy vấn phụ cố định của ProductDTOAssembler) rồi ghi lại vào cache
+    public ProductBatchResponse getProductsByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách ID sản phẩm không được trống");
+        }
+        LinkedHashSet<Long> uniqueIds = new LinkedHashSet<>(ids);
+        if (uniqueIds.size() > MAX_BATCH_IDS) {
+            throw new IllegalArgumentException("Tối đa " + MAX_BATCH_IDS + " sản phẩm mỗi lần tra cứu");
+        }
+        if (uniqueIds.stream().anyMatch(id -> id == null || id <= 0)) {
+            throw new IllegalArgumentException("ID sản phẩm không hợp lệ");
+        }
+
+        Cache cache = cacheManager.getCache("product");
+        Map<Long, ProductDTO> found = new HashMap<>();
+        List<Long> toLoad = new ArrayList<>();
+        for (Long id : uniqueIds) {
+            ProductDTO cached = cache != null ? cache.get(id, ProductDTO.class) : null;
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                toLoad.add(id);
+            }
+        }
+        if (!toLoad.isEmpty()) {
+            List<ProductDTO> loaded = productDTOAssembler.toDetailDTOs(productRepository.findAllById(toLoad));
+            for (ProductDTO dto : loaded) {
+                found.put(dto.getId(), dto);
+                if (cache != null) {
+                    cache.put(dto.getId(), dto);
+                }
+            }
+        }
+
+        List<ProductDTO> products = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : uniqueIds) {
+            ProductDTO dto = found.get(id);
+            if (dto != null) {
+                products.add(dto);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new ProductBatchResponse(products, missing);
     }
 
     // Lấy sản phẩm tương tự
-    public List<ProductDTO> getRelatedProducts(Long productId, int limit) {
+    public List<ProductSummaryDTO> getRelatedProducts(Long productId, int limit) {
         if (productId == null || productId <= 0) {
             throw new IllegalArgumentException("ID sản phẩm không hợp lệ");
         }
@@ -97,80 +192,229 @@ public class ProductService {
             throw new IllegalArgumentException("Giới hạn phải lớn hơn 0");
         }
 
+        // Đọc danh sách tính sẵn trong bộ nhớ, chỉ còn một truy vấn lấy thông tin hiển thị
+        if (relatedProductsIndex.isReady() && limit <= RelatedProductsIndex.MAX_NEIGHBORS) {
+            long[] ids = relatedProductsIndex.neighbors(productId, limit);
+            if (ids != null) {
+                return loadSummariesInOrder(ids);
+            }
+        }
+
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new IllegalArgumentException("Sản phẩm không tồn tại với ID: " + productId));
 
         // Tính khoảng giá ±20%
-        BigDecimal currentPrice = getCurrentPrice(product, LocalDateTime.now());
+        BigDecimal currentPrice = product.getEffectivePrice() != null ? product.getEffectivePrice() : PriceUtil.currentPrice(product);
         BigDecimal minPrice = currentPrice.multiply(BigDecimal.valueOf(0.8));
         BigDecimal maxPrice = currentPrice.multiply(BigDecimal.valueOf(1.2));
 
         // Lấy sản phẩm tương tự
         Pageable pageable = PageRequest.of(0, limit);
-        List<Product> relatedProducts = productRepository.findRelatedProducts(
+        return productRepository.findRelatedSummaries(
                 product.getCategory().getId(),
                 productId,
                 minPrice,
                 maxPrice,
                 pageable
         );
-
-        return relatedProducts.stream()
-                .map(this::mapToDTOWithDiscountCheck)
-                .collect(Collectors.toList());
     }
 
-    public Page<ProductDTO> getFilteredProducts(String searchKeyword, BigDecimal minPrice, BigDecimal maxPrice, String sortBy, Pageable pageable) {
-        List<Product> products;
+    public Page<ProductSummaryDTO> getFilteredProducts(String searchKeyword, BigDecimal minPrice, BigDecimal maxPrice, String sortBy, Pageable pageable) {
+        boolean hasKeyword = searchKeyword != null && !searchKeyword.trim().isEmpty();
+        if (catalogIndexService.isReady() && (!hasKeyword || productSearchIndex.isReady())) {
+            long[] candidateIds = hasKeyword ? productSearchIndex.match(searchKeyword) : null;
+            CatalogIndexService.Result result = catalogIndexService.query(
+                    candidateIds, minPrice, maxPrice, sortBy, pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(loadSummariesInOrder(result.ids()), pageable, result.total());
+        }
 
-        if (searchKeyword != null && !searchKeyword.trim().isEmpty()) {
-            products = productRepository.findByNameContainingIgnoreCase(searchKeyword.trim(), Pageable.unpaged()).getContent();
-        } else {
-            products = productRepository.findAll();
+        // Lọc và sắp xếp theo cột effective_price ngay trong cơ sở dữ liệu
+        String keyword = hasKeyword ? searchKeyword.trim() : null;
+        Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), toSort(sortBy));
+        return productRepository.findSummariesByEffectivePriceRange(keyword, minPrice, maxPrice, sortedPageable);
+    }
+
+    // Trang quản trị cần đủ thông tin (giá vốn, danh mục, nhà cung cấp, tồn kho) nên dùng ProductDTO đầy đủ
+    public Page<ProductDTO> getProductsForAdmin(String searchKeyword, BigDecimal minPrice, BigDecimal maxPrice, String sortBy, Pageable pageable) {
+        boolean hasKeyword = searchKeyword != null && !searchKeyword.trim().isEmpty();
+        if (catalogIndexService.isReady() && (!hasKeyword || productSearchIndex.isReady())) {
+            long[] candidateIds = hasKeyword ? productSearchIndex.match(searchKeyword) : null;
+            CatalogIndexService.Result result = catalogIndexService.query(
+                    candidateIds, minPrice, maxPrice, sortBy, pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(productDTOAssembler.toDTOs(loadEntitiesInOrder(result.ids())), pageable, result.total());
         }
 
-        LocalDateTime now = LocalDateTime.now();
-        if (minPrice != null || maxPrice != null) {
-            products = products.stream()
-                    .filter(p -> {
-                        BigDecimal currentPrice = getCurrentPrice(p, now);
-                        boolean matchesMin = minPrice == null || currentPrice.compareTo(minPrice) >= 0;
-                        boolean matchesMax = maxPrice == null || currentPrice.compareTo(maxPrice) <= 0;
-                        return matchesMin && matchesMax;
-                    })
-                    .collect(Collectors.toList());
+        String keyword = hasKeyword ? searchKeyword.trim() : null;
+        Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), toSort(sortBy));
+        return productDTOAssembler.toDTOPage(
+                productRepository.findByEffectivePriceRange(keyword, minPrice, maxPrice, sortedPageable));
+    }
+
+    // Tìm kiếm theo facet trên chỉ mục bộ nhớ: trang kết quả và số đếm của mọi bộ lọc trong cùng một lượt duyệt bitset
+    public ProductSearchResponse searchProducts(ProductSearchCriteria criteria, Pageable pageable) {
+        String searchKeyword = criteria.getSearchKeyword();
+        boolean hasKeyword = searchKeyword != null && !searchKeyword.trim().isEmpty();
+        if (!catalogIndexService.isReady() || (hasKeyword && !productSearchIndex.isReady())) {
+            throw new IllegalStateException("Chỉ mục tìm kiếm đang được nạp, vui lòng thử lại sau");
+        }
+        long[] candidateIds = hasKeyword ? productSearchIndex.match(searchKeyword) : null;
+
+        Map<String, Set<String>> selections = new LinkedHashMap<>();
+        selections.put(FacetBitmaps.CATEGORY, toValues(criteria.getCategoryId()));
+        selections.put(FacetBitmaps.SUPPLIER, toValues(criteria.getSupplierId()));
+        selections.put(FacetBitmaps.PRICE, toValues(criteria.getPriceBucket()));
+        selections.put(FacetBitmaps.IN_STOCK, toValues(criteria.getInStock()));
+        selections.put(FacetBitmaps.FEATURED, toValues(criteria.getFeatured()));
+        selections.put(FacetBitmaps.HAS_DISCOUNT, toValues(criteria.getHasDiscount()));
+
+        CatalogIndexService.FacetResult result = catalogIndexService.facetSearch(
+                candidateIds, selections, criteria.getSortBy(), pageable.getOffset(), pageable.getPageSize());
+
+        // Tên danh mục/nhà cung cấp cho phần facet: mỗi loại một truy vấn theo danh sách id
+        Map<String, String> categoryNames = categoryRepository.findAllById(toIds(result.counts().get(FacetBitmaps.CATEGORY))).stream()
+                .collect(Collectors.toMap(c -> String.valueOf(c.getId()), Category::getName));
+        Map<String, String> supplierNames = supplierRepository.findAllById(toIds(result.counts().get(FacetBitmaps.SUPPLIER))).stream()
+                .collect(Collectors.toMap(sp -> String.valueOf(sp.getId()), Supplier::getName));
+
+        Map<String, List<ProductSearchResponse.FacetValue>> facets = new LinkedHashMap<>();
+        result.counts().forEach((facet, counts) -> {
+            Map<String, String> labels = switch (facet) {
+                case FacetBitmaps.CATEGORY -> categoryNames;
+                case FacetBitmaps.SUPPLIER -> supplierNames;
+                default -> Map.of();
+            };
+            facets.put(facet, counts.entrySet().stream()
+                    .map(e -> new ProductSearchResponse.FacetValue(e.getKey(), labels.get(e.getKey()), e.getValue()))
+                    .collect(Collectors.toList()));
+        });
+
+        return new ProductSearchResponse(loadSummariesInOrder(result.ids()), pageable.getPageNumber(),
+                pageable.getPageSize(), result.total(), facets);
+    }
+
+    private static Set<String> toValues(Collection<?> values) {
+        if (values == null) {
+            return Set.of();
         }
+        return values.stream().filter(Objects::nonNull).map(String::valueOf).collect(Collectors.toSet());
+    }
+
+    private static Set<String> toValues(Boolean value) {
+        return value != null ? Set.of(value.toString()) : Set.of();
+    }
+
+    private static List<Long> toIds(Map<String, Integer> counts) {
+        return counts.keySet().stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    private Sort toSort(String sortBy) {
+        return switch (sortBy != null ? sortBy.toLowerCase() : "") {
+            case "newest" -> Sort.by(Sort.Direction.DESC, "id");
+            case "bestselling" -> Sort.by(Sort.Order.desc("soldQuantity"), Sort.Order.asc("id"));
+            case "priceasc" -> Sort.by(Sort.Order.asc("effectivePrice"), Sort.Order.asc("id"));
+            case "pricedesc" -> Sort.by(Sort.Order.desc("effectivePrice"), Sort.Order.asc("id"));
+            default -> Sort.by(Sort.Direction.ASC, "id");
+        };
+    }
 
-        switch (sortBy != null ? sortBy.toLowerCase() : "") {
-            case "newest":
-                products.sort((a, b) -> b.getId().compareTo(a.getId()));
-                break;
-            case "bestselling":
-                products.sort((a, b) -> b.getSoldQuantity().compareTo(a.getSoldQuantity()));
-                break;
-            case "priceasc":
-                products.sort((a, b) -> getCurrentPrice(a, now).compareTo(getCurrentPrice(b, now)));
-                break;
-            case "pricedesc":
-                products.sort((a, b) -> getCurrentPrice(b, now).compareTo(getCurrentPrice(a, now)));
-                break;
+    // Danh sách sản phẩm theo con trỏ (keyset), sắp xếp theo id tăng dần
+    public CursorPageResponse<ProductSummaryDTO> getAllProductsAfter(String searchKeyword, String cursor, int size) {
+        ProductCursor after = ProductCursor.decode(cursor, ProductCursor.SORT_ID);
+        long lastId = after != null ? after.id() : 0L;
+        boolean hasKeyword = searchKeyword != null && !searchKeyword.trim().isEmpty();
+        List<ProductSummaryDTO> products;
+        if (hasKeyword && productSearchIndex.isReady()) {
+            long[] ids = productSearchIndex.match(searchKeyword);
+            int pos = Arrays.binarySearch(ids, lastId);
+            int start = pos >= 0 ? pos + 1 : -pos - 1;
+            int end = Math.min(start + size + 1, ids.length);
+            products = loadSummariesInOrder(Arrays.copyOfRange(ids, Math.min(start, end), end));
+        } else {
+            String keyword = hasKeyword ? searchKeyword.trim() : null;
+            products = productRepository.findSummaryPageAfterId(keyword, null, null, lastId, PageRequest.of(0, size + 1));
         }
+        return toCursorPage(products, ProductCursor.SORT_ID, size);
+    }
 
-        int start = (int) pageable.getOffset();
-        if (start >= products.size()) {
-            return new PageImpl<>(List.of(), pageable, products.size());
+    // Lọc sản phẩm theo con trỏ (keyset): trang sâu không phải bỏ qua offset bản ghi
+    public CursorPageResponse<ProductSummaryDTO> getFilteredProductsAfter(String searchKeyword, BigDecimal minPrice, BigDecimal maxPrice,
+                                                                          String sortBy, String cursor, int size) {
+        String sort = ProductCursor.normalizeSort(sortBy);
+        ProductCursor after = ProductCursor.decode(cursor, sort);
+        boolean hasKeyword = searchKeyword != null && !searchKeyword.trim().isEmpty();
+        if (catalogIndexService.isReady() && (!hasKeyword || productSearchIndex.isReady())) {
+            long[] candidateIds = hasKeyword ? productSearchIndex.match(searchKeyword) : null;
+            long[] ids = catalogIndexService.queryAfter(candidateIds, minPrice, maxPrice, sort, after, size + 1);
+            return toCursorPage(loadSummariesInOrder(ids), sort, size);
+        }
+
+        String keyword = hasKeyword ? searchKeyword.trim() : null;
+        Long lastId = after != null ? after.id() : null;
+        BigDecimal lastKey = after != null ? after.key() : null;
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<ProductSummaryDTO> products = switch (sort) {
+            case ProductCursor.SORT_NEWEST -> productRepository.findSummaryPageBeforeId(
+                    keyword, minPrice, maxPrice, lastId != null ? lastId : Long.MAX_VALUE, limit);
+            case ProductCursor.SORT_BESTSELLING -> productRepository.findSummaryPageBySoldQuantity(
+                    keyword, minPrice, maxPrice, lastKey != null ? lastKey.intValue() : null, lastId != null ? lastId : 0L, limit);
+            case ProductCursor.SORT_PRICE_ASC -> productRepository.findSummaryPageByPriceAsc(
+                    keyword, minPrice, maxPrice, lastKey, lastId != null ? lastId : 0L, limit);
+            case ProductCursor.SORT_PRICE_DESC -> productRepository.findSummaryPageByPriceDesc(
+                    keyword, minPrice, maxPrice, lastKey, lastId != null ? lastId : 0L, limit);
+            default -> productRepository.findSummaryPageAfterId(
+                    keyword, minPrice, maxPrice, lastId != null ? lastId : 0L, limit);
+        };
+        return toCursorPage(products, sort, size);
+    }
+
+    // Truy vấn lấy dư một bản ghi để biết còn trang sau; con trỏ được lấy từ bản ghi cuối của trang hiện tại
+    private CursorPageResponse<ProductSummaryDTO> toCursorPage(List<ProductSummaryDTO> products, String sort, int size) {
+        boolean hasNext = products.size() > size;
+        List<ProductSummaryDTO> page = hasNext ? new ArrayList<>(products.subList(0, size)) : products;
+        String nextCursor = null;
+        if (hasNext) {
+            ProductSummaryDTO last = page.get(page.size() - 1);
+            nextCursor = new ProductCursor(sort, cursorKey(last, sort), last.getId()).encode();
         }
-        int end = Math.min(start + pageable.getPageSize(), products.size());
+        return new CursorPageResponse<>(page, page.size(), nextCursor, hasNext);
+    }
 
-        List<ProductDTO> productDTOs = products.subList(start, end).stream()
-                .map(this::mapToDTOWithDiscountCheck)
+    private BigDecimal cursorKey(ProductSummaryDTO product, String sort) {
+        return switch (sort) {
+            case ProductCursor.SORT_BESTSELLING -> BigDecimal.valueOf(product.getSoldQuantity() != null ? product.getSoldQuantity() : 0);
+            case ProductCursor.SORT_PRICE_ASC, ProductCursor.SORT_PRICE_DESC -> product.currentPrice();
+            default -> null;
+        };
+    }
+
+    // Nạp bản rút gọn theo danh sách id (một truy vấn) và giữ nguyên thứ tự
+    private List<ProductSummaryDTO> loadSummariesInOrder(long[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        List<Long> idList = Arrays.stream(ids).boxed().collect(Collectors.toList());
+        Map<Long, ProductSummaryDTO> byId = productRepository.findSummariesByIds(idList).stream()
+                .collect(Collectors.toMap(ProductSummaryDTO::getId, Function.identity()));
+        return idList.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
+    }
 
-        return new PageImpl<>(productDTOs, pageable, products.size());
+    private List<Product> loadEntitiesInOrder(long[] ids) {
+        if (ids.length == 0) {
+            return List.of();
+        }
+        List<Long> idList = Arrays.stream(ids).boxed().collect(Collectors.toList());
+        Map<Long, Product> byId = productRepository.findAllById(idList).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return idList.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Transactional
-    @CacheEvict(value = "products", allEntries = true)
     public ProductDTO createProduct(Product product) {
         logger.info("Creating product: {}", product.getName());
 
@@ -201,12 +445,11 @@ public class ProductService {
         inventoryLogRepository.save(log);
 
         saveProductImages(savedProduct, product.getImages());
-        preloadCacheService.preloadProductCache();
-        return mapToDTOWithDiscountCheck(savedProduct);
+        eventPublisher.publishEvent(ProductChangedEvent.created(savedProduct));
+        return productDTOAssembler.toDetailDTO(savedProduct);
     }
 
     @Transactional
-    @CacheEvict(value = "products", allEntries = true)
     public ProductDTO updateProduct(Long id, Product updatedProduct) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("ID sản phẩm không hợp lệ");
@@ -216,6 +459,8 @@ public class ProductService {
             validateProduct(updatedProduct);
             validateCategoryAndSupplier(updatedProduct);
 
+            String previousName = product.getName();
+            Set<String> changedFields = changedFields(product, updatedProduct);
             product.setName(updatedProduct.getName());
             product.setDescription(updatedProduct.getDescription());
             product.setCostPrice(updatedProduct.getCostPrice());
@@ -234,7 +479,8 @@ public class ProductService {
 
             Product savedProduct = productRepository.save(product);
 
-            Inventory inventory = inventoryRepository.findByProductId(id)
+            // Khóa dòng inventory như adjustInventory để không đè lên lần gộp sổ giữ hàng đang chạy
+            Inventory inventory = inventoryRepository.findByProductIdForUpdate(id)
                     .orElseGet(() -> {
                         Inventory newInventory = new Inventory();
                         newInventory.setProduct(savedProduct);
@@ -243,6 +489,9 @@ public class ProductService {
 
             int oldQuantity = inventory.getQuantity();
             int newQuantity = savedProduct.getStock() != null ? savedProduct.getStock() : 0;
+            if (stockReservationLedger.isActive() && !stockReservationLedger.adjust(id, newQuantity - oldQuantity)) {
+                throw new IllegalArgumentException("Tồn kho mới thấp hơn số lượng đang được giữ cho đơn hàng");
+            }
             inventory.setQuantity(newQuantity);
             inventory.setLastUpdated(LocalDateTime.now());
             inventoryRepository.save(inventory);
@@ -258,13 +507,12 @@ public class ProductService {
                 log.setTimestamp(LocalDateTime.now());
                 inventoryLogRepository.save(log);
             }
-            preloadCacheService.preloadProductCache();
-            return mapToDTOWithDiscountCheck(savedProduct);
+            eventPublisher.publishEvent(ProductChangedEvent.updated(savedProduct, previousName, changedFields));
+            return productDTOAssembler.toDetailDTO(savedProduct);
         }).orElseThrow(() -> new IllegalArgumentException("Sản phẩm không tồn tại với ID: " + id));
     }
 
     @Transactional
-    @CacheEvict(value = "products", allEntries = true)
     public void deleteProduct(Long id) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("ID sản phẩm không hợp lệ");
@@ -274,111 +522,170 @@ public class ProductService {
                 .orElseThrow(() -> new IllegalArgumentException("Sản phẩm không tồn tại với ID: " + id));
 
         productRepository.deleteById(id);
-        preloadCacheService.preloadProductCache();
+        eventPublisher.publishEvent(ProductChangedEvent.deleted(product));
     }
 
-    @Transactional
-    public void applyDiscountToAll(BigDecimal percentage, BigDecimal fixedAmount, LocalDateTime startDateTime, LocalDateTime endDateTime) {
-        if (percentage == null && fixedAmount == null) {
-            throw new IllegalArgumentException("Phải cung cấp ít nhất một giá trị giảm giá (phần trăm hoặc cố định)");
-        }
-        if (startDateTime == null || endDateTime == null || startDateTime.isAfter(endDateTime)) {
-            throw new IllegalArgumentException("Thời gian giảm giá không hợp lệ");
-        }
+    // Áp dụng giảm giá cho toàn bộ danh mục bằng UPDATE theo từng khoảng id, mỗi khoảng một transaction ngắn
+    // để không giữ khóa cả bảng; cuối cùng làm mới chỉ mục và cache một lần.
+    public BulkDiscountResult applyDiscountToAll(BigDecimal percentage, BigDecimal fixedAmount, LocalDateTime startDateTime, LocalDateTime endDateTime) {
+        validateDiscount(percentage, fixedAmount, startDateTime, endDateTime);
+        long startedAt = System.nanoTime();
 
-        logger.info("Áp dụng giảm giá cho tất cả sản phẩm: percentage={}, fixedAmount={}, startDateTime={}, endDateTime={}",
-                percentage, fixedAmount, startDateTime, endDateTime);
-
-        List<Product> products = productRepository.findAll();
-        if (products == null || products.isEmpty()) {
+        List<Object[]> bounds = productRepository.findIdBounds();
+        Object[] range = bounds.isEmpty() ? null : bounds.get(0);
+        if (range == null || range[0] == null) {
             logger.warn("Không tìm thấy sản phẩm để áp dụng giảm giá");
-            return;
-        }
-
-        for (Product product : products) {
-            if (product.getSellingPrice() == null) {
-                logger.error("Selling price is null for product: {}", product.getId());
-                continue;
+            return new BulkDiscountResult(0, 0, elapsedMillis(startedAt), "Không có sản phẩm nào để áp dụng giảm giá");
+        }
+
+        BigDecimal factor = discountFactor(percentage);
+        BigDecimal fixed = fixedAmount != null ? fixedAmount.max(BigDecimal.ZERO) : BigDecimal.ZERO;
+        boolean active = isActiveNow(startDateTime, endDateTime);
+        long minId = (Long) range[0];
+        long maxId = (Long) range[1];
+        int rows = 0;
+        int chunks = 0;
+        try {
+            for (long fromId = minId; fromId <= maxId; fromId += DISCOUNT_CHUNK_SIZE) {
+                long from = fromId;
+                long to = Math.min(fromId + DISCOUNT_CHUNK_SIZE - 1, maxId);
+                Integer updated = transactionTemplate.execute(status -> productRepository.applyDiscountInIdRange(
+                        from, to, factor, fixed, startDateTime, endDateTime, active));
+                rows += updated != null ? updated : 0;
+                chunks++;
+            }
+        } catch (RuntimeException e) {
+            throw partialDiscountFailure(rows, chunks, e);
+        } finally {
+            // Các lô đã commit riêng: kể cả khi dừng giữa chừng vẫn phải làm mới chỉ mục/cache cho phần đã áp dụng
+            if (chunks > 0) {
+                eventPublisher.publishEvent(ProductsBulkChangedEvent.wholeCatalog(Set.of(ProductChangedEvent.DISCOUNT)));
             }
-            BigDecimal newPrice = calculateDiscount(product.getSellingPrice(), percentage, fixedAmount);
-            logger.info("Giá giảm mới của {}: từ {} → {}", product.getName(), product.getSellingPrice(), newPrice);
-            product.setDiscountedPrice(newPrice);
-            product.setDiscountStartDate(startDateTime);
-            product.setDiscountEndDate(endDateTime);
         }
 
-        productRepository.saveAll(products);
-        logger.info("Đã áp dụng giảm giá cho {} sản phẩm", products.size());
+        long elapsed = elapsedMillis(startedAt);
+        logger.info("Đã áp dụng giảm giá cho {} sản phẩm trong {} lô, {} ms: percentage={}, fixedAmount={}, {} → {}",
+                rows, chunks, elapsed, percentage, fixedAmount, startDateTime, endDateTime);
+        return new BulkDiscountResult(rows, chunks, elapsed, "Đã áp dụng giảm giá cho tất cả sản phẩm!");
     }
 
-    @Transactional
-    public void applyDiscountToSelected(List<Long> productIds, BigDecimal percentage, BigDecimal fixedAmount, LocalDateTime startDateTime, LocalDateTime endDateTime) {
+    public BulkDiscountResult applyDiscountToSelected(List<Long> productIds, BigDecimal percentage, BigDecimal fixedAmount, LocalDateTime startDateTime, LocalDateTime endDateTime) {
         if (productIds == null || productIds.isEmpty()) {
             throw new IllegalArgumentException("Danh sách sản phẩm không được trống");
         }
+        validateDiscount(percentage, fixedAmount, startDateTime, endDateTime);
+        long startedAt = System.nanoTime();
+
+        BigDecimal factor = discountFactor(percentage);
+        BigDecimal fixed = fixedAmount != null ? fixedAmount.max(BigDecimal.ZERO) : BigDecimal.ZERO;
+        boolean active = isActiveNow(startDateTime, endDateTime);
+        List<Long> ids = productIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        int rows = 0;
+        int chunks = 0;
+        List<Long> appliedIds = new ArrayList<>();
+        try {
+            for (int i = 0; i < ids.size(); i += DISCOUNT_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(i, Math.min(i + DISCOUNT_CHUNK_SIZE, ids.size()));
+                Integer updated = transactionTemplate.execute(status -> productRepository.applyDiscountToIds(
+                        chunk, factor, fixed, startDateTime, endDateTime, active));
+                rows += updated != null ? updated : 0;
+                chunks++;
+                appliedIds.addAll(chunk);
+            }
+        } catch (RuntimeException e) {
+            throw partialDiscountFailure(rows, chunks, e);
+        } finally {
+            // Một truy vấn nạp lại các sản phẩm của những lô đã commit để chỉ làm mới đúng các mục chỉ mục/cache của chúng
+            if (rows > 0) {
+                eventPublisher.publishEvent(new ProductsBulkChangedEvent(productRepository.findAllById(appliedIds), Set.of(ProductChangedEvent.DISCOUNT)));
+            }
+        }
+        if (rows == 0) {
+            throw new IllegalArgumentException("Không tìm thấy sản phẩm nào để áp dụng giảm giá");
+        }
+
+        long elapsed = elapsedMillis(startedAt);
+        logger.info("Đã áp dụng giảm giá cho {} sản phẩm được chọn trong {} lô, {} ms", rows, chunks, elapsed);
+        return new BulkDiscountResult(rows, chunks, elapsed, "Đã áp dụng giảm giá cho các sản phẩm được chọn!");
+    }
+
+    // Lô đầu tiên lỗi thì giữ nguyên lỗi gốc; đã có lô commit thì báo rõ phần đã áp dụng để admin xử lý tiếp
+    private RuntimeException partialDiscountFailure(int rows, int chunks, RuntimeException cause) {
+        if (chunks == 0) {
+            return cause;
+        }
+        logger.error("Giảm giá dừng giữa chừng: {} sản phẩm trong {} lô đã được áp dụng", rows, chunks, cause);
+        return new IllegalStateException("Giảm giá dừng giữa chừng sau khi đã áp dụng cho " + rows
+                + " sản phẩm (" + chunks + " lô): " + cause.getMessage(), cause);
+    }
+
+    private void validateDiscount(BigDecimal percentage, BigDecimal fixedAmount, LocalDateTime startDateTime, LocalDateTime endDateTime) {
         if (percentage == null && fixedAmount == null) {
             throw new IllegalArgumentException("Phải cung cấp ít nhất một giá trị giảm giá (phần trăm hoặc cố định)");
         }
         if (startDateTime == null || endDateTime == null || startDateTime.isAfter(endDateTime)) {
             throw new IllegalArgumentException("Thời gian giảm giá không hợp lệ");
         }
+    }
 
-        List<Product> products = productRepository.findAllById(productIds);
-        if (products.isEmpty()) {
-            throw new IllegalArgumentException("Không tìm thấy sản phẩm nào để áp dụng giảm giá");
+    private static BigDecimal discountFactor(BigDecimal percentage) {
+        if (percentage == null || percentage.compareTo(BigDecimal.ZERO) <= 0) {
+            return BigDecimal.ONE;
         }
+        return BigDecimal.ONE.subtract(percentage.divide(BigDecimal.valueOf(100)));
+    }
 
-        for (Product product : products) {
-            if (product.getSellingPrice() == null) {
-                logger.warn("Selling price is null for product: {}", product.getId());
-                continue;
-            }
-            BigDecimal newPrice = calculateDiscount(product.getSellingPrice(), percentage, fixedAmount);
-            product.setDiscountedPrice(newPrice);
-            product.setDiscountStartDate(startDateTime);
-            product.setDiscountEndDate(endDateTime);
-        }
+    private static boolean isActiveNow(LocalDateTime startDateTime, LocalDateTime endDateTime) {
+        LocalDateTime now = LocalDateTime.now();
+        return !startDateTime.isAfter(now) && !endDateTime.isBefore(now);
+    }
 
-        productRepository.saveAll(products);
+    private static long elapsedMillis(long startedAt) {
+        return (System.nanoTime() - startedAt) / 1_000_000;
     }
 
-    @Transactional
-    @Scheduled(cron = "0 * * * * *")
-    public void clearExpiredDiscounts() {
-        LocalDateTime now = LocalDateTime.now();
-        List<Product> expiredProducts = productRepository.findByDiscountEndDateBefore(now);
-        if (!expiredProducts.isEmpty()) {
-            for (Product product : expiredProducts) {
-                product.setDiscountedPrice(null);
-                product.setDiscountStartDate(null);
-                product.setDiscountEndDate(null);
-            }
-            productRepository.saveAll(expiredProducts);
-            logger.info("Đã xóa giảm giá cho {} sản phẩm hết hạn", expiredProducts.size());
+    public ProductImageDTO addProductImage(Long productId, MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("File ảnh không được trống");
         }
+        return addProductImages(productId, List.of(file)).get(0);
     }
 
-    @Transactional
-    public ProductImageDTO addProductImage(Long productId, MultipartFile file) {
+    // Upload song song ngoài transaction (không giữ kết nối DB trong lúc chờ Cloudinary),
+    // sau đó ghi mọi ProductImage bằng một lô JDBC và phát một sự kiện IMAGES
+    public List<ProductImageDTO> addProductImages(Long productId, List<MultipartFile> files) {
         if (productId == null || productId <= 0) {
             throw new IllegalArgumentException("ID sản phẩm không hợp lệ");
         }
-        if (file == null || file.isEmpty()) {
-            throw new IllegalArgumentException("File ảnh không được trống");
+        List<MultipartFile> images = files == null ? List.of() : files.stream()
+                .filter(file -> file != null && !file.isEmpty())
+                .toList();
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách ảnh không được trống");
+        }
+        if (!productRepository.existsById(productId)) {
+            throw new IllegalArgumentException("Sản phẩm không tồn tại với ID: " + productId);
         }
 
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new IllegalArgumentException("Sản phẩm không tồn tại với ID: " + productId));
-
-        String imageUrl = cloudinaryService.uploadImageToCloudinary(file);
-        if (imageUrl == null || imageUrl.trim().isEmpty()) {
+        List<String> imageUrls = cloudinaryService.uploadImagesToCloudinary(images).stream()
+                .filter(url -> url != null && !url.trim().isEmpty())
+                .toList();
+        if (imageUrls.isEmpty()) {
             throw new IllegalStateException("Không thể upload ảnh lên Cloudinary");
         }
+        if (imageUrls.size() < images.size()) {
+            logger.warn("Chỉ upload được {}/{} ảnh cho sản phẩm {}", imageUrls.size(), images.size(), productId);
+        }
 
-        ProductImage productImage = new ProductImage();
-        productImage.setImageUrl(imageUrl);
-        productImage.setProduct(product);
-        return mapProductImageToDTO(productImageRepository.save(productImage));
+        return transactionTemplate.execute(status -> {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new IllegalArgumentException("Sản phẩm không tồn tại với ID: " + productId));
+            List<ProductImageDTO> saved = productImageRepository.insertAll(product, imageUrls).stream()
+                    .map(this::mapProductImageToDTO)
+                    .collect(Collectors.toList());
+            eventPublisher.publishEvent(ProductChangedEvent.updated(product, product.getName(), Set.of(ProductChangedEvent.IMAGES)));
+            return saved;
+        });
     }
 
     @Transactional
@@ -390,9 +697,41 @@ public class ProductService {
         ProductImage productImage = productImageRepository.findById(imageId)
                 .orElseThrow(() -> new IllegalArgumentException("Ảnh sản phẩm không tồn tại với ID: " + imageId));
         productImageRepository.delete(productImage);
+        Product product = productImage.getProduct();
+        eventPublisher.publishEvent(ProductChangedEvent.updated(product, product.getName(), Set.of(ProductChangedEvent.IMAGES)));
+    }
+
+    // So sánh trước khi ghi đè để bộ điều phối cache chỉ xóa những gì bị ảnh hưởng
+    private Set<String> changedFields(Product current, Product updated) {
+        Set<String> fields = new HashSet<>();
+        if (!Objects.equals(current.getName(), updated.getName())) {
+            fields.add(ProductChangedEvent.NAME);
+        }
+        if (!Objects.equals(current.getDescription(), updated.getDescription())) {
+            fields.add(ProductChangedEvent.DESCRIPTION);
+        }
+        if (!sameAmount(current.getSellingPrice(), updated.getSellingPrice())) {
+            fields.add(ProductChangedEvent.PRICE);
+        }
+        if (!sameAmount(current.getDiscountedPrice(), updated.getDiscountedPrice())
+                || !Objects.equals(current.getDiscountStartDate(), updated.getDiscountStartDate())
+                || !Objects.equals(current.getDiscountEndDate(), updated.getDiscountEndDate())) {
+            fields.add(ProductChangedEvent.DISCOUNT);
+        }
+        if (current.isFeatured() != updated.isFeatured()) {
+            fields.add(ProductChangedEvent.FEATURED);
+        }
+        if (updated.getStock() != null && !Objects.equals(current.getStock(), updated.getStock())) {
+            fields.add(ProductChangedEvent.STOCK);
+        }
+        return fields;
+    }
+
+    private static boolean sameAmount(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
     }
 
-    private void validateProduct(Product product) {
+    static void validateProduct(Product product) {
         if (product == null) {
             throw new IllegalArgumentException("Thông tin sản phẩm không được trống");
         }
@@ -428,24 +767,6 @@ public class ProductService {
         }
     }
 
-    private BigDecimal calculateDiscount(BigDecimal originalPrice, BigDecimal percentage, BigDecimal fixedAmount) {
-        if (originalPrice == null) {
-            throw new IllegalArgumentException("Giá gốc không được trống");
-        }
-
-        BigDecimal discounted = originalPrice;
-
-        if (percentage != null && percentage.compareTo(BigDecimal.ZERO) > 0) {
-            discounted = originalPrice.multiply(BigDecimal.ONE.subtract(percentage.divide(BigDecimal.valueOf(100))));
-        }
-
-        if (fixedAmount != null && fixedAmount.compareTo(BigDecimal.ZERO) > 0) {
-            discounted = discounted.subtract(fixedAmount);
-        }
-
-        return discounted.max(BigDecimal.ZERO);
-    }
-
     private void saveProductImages(Product product, List<ProductImage> images) {
         if (images == null || images.isEmpty()) {
             logger.info("📸 Không có ảnh để lưu cho sản phẩm: {}", product.getName());
@@ -462,70 +783,6 @@ public class ProductService {
         }
     }
 
-    private ProductDTO mapToDTOWithDiscountCheck(Product product) {
-        LocalDateTime now = LocalDateTime.now();
-        BigDecimal currentPrice = getCurrentPrice(product, now);
-
-        return ProductDTO.builder()
-                .id(product.getId())
-                .name(product.getName())
-                .description(product.getDescription())
-                .costPrice(product.getCostPrice())
-                .sellingPrice(product.getSellingPrice())
-                .discountedPrice(currentPrice.compareTo(product.getSellingPrice()) < 0 ? currentPrice : null)
-                .discountStartDate(product.getDiscountStartDate())
-                .discountEndDate(product.getDiscountEndDate())
-                .isFeatured(product.isFeatured())
-                .stock(product.getStock())
-                .soldQuantity(product.getSoldQuantity())
-                .rating(product.getRating())
-                .ratingCount(product.getRatingCount())
-                .category(mapCategoryToDTO(product.getCategory()))
-                .supplier(mapSupplierToDTO(product.getSupplier()))
-                .images(
-                        Optional.ofNullable(product.getImages())
-                                .orElse(List.of())
-                                .stream()
-                                .map(this::mapProductImageToDTO)
-                                .collect(Collectors.toList())
-                )
-                .inventory(Optional.ofNullable(product.getInventory()).orElse(null))
-                .inventoryLogs(
-                        Optional.ofNullable(product.getInventoryLogs())
-                                .orElse(List.of())
-                )
-                .build();
-    }
-
-    private BigDecimal getCurrentPrice(Product product, LocalDateTime now) {
-        if (product.getDiscountedPrice() != null &&
-                product.getDiscountStartDate() != null &&
-                product.getDiscountEndDate() != null &&
-                !now.isBefore(product.getDiscountStartDate()) &&
-                !now.isAfter(product.getDiscountEndDate())) {
-            return product.getDiscountedPrice();
-        }
-        return product.getSellingPrice();
-    }
-
-    private CategoryDTO mapCategoryToDTO(Category category) {
-        return CategoryDTO.builder()
-                .id(category.getId())
-                .name(category.getName())
-                .productCount(category.getProducts().size()) // ✅ đồng bộ chuẩn
-                .build();
-    }
-
-    private SupplierDTO mapSupplierToDTO(Supplier supplier) {
-        return SupplierDTO.builder()
-                .id(supplier.getId())
-                .name(supplier.getName())
-                .email(supplier.getEmail())
-                .phone(supplier.getPhone())
-                .address(supplier.getAddress())
-                .build();
-    }
-
     private ProductImageDTO mapProductImageToDTO(ProductImage image) {
         return ProductImageDTO.builder()
                 .id(image.getId())
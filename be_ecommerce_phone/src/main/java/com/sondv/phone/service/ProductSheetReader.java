@@ -0,0 +1,164 @@
+package com.sondv.phone.service;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+// Đọc tuần tự từng dòng của file CSV hoặc sheet đầu tiên của XLSX mà không dựng cả bảng trong bộ nhớ.
+// XLSX đọc bằng SAX (XSSFSheetXMLHandler) thay vì XSSFWorkbook vốn nạp toàn bộ file thành đối tượng.
+final class ProductSheetReader {
+
+    @FunctionalInterface
+    interface RowHandler {
+        // rowNumber bắt đầu từ 1 như trong Excel (dòng 1 là tiêu đề)
+        void row(int rowNumber, List<String> cells);
+    }
+
+    private ProductSheetReader() {
+    }
+
+    static void readCsv(InputStream input, RowHandler handler) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        reader.mark(1);
+        // Excel lưu CSV UTF-8 kèm BOM
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        boolean pending = false;
+        int rowNumber = 1;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        cell.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    cell.append((char) c);
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> {
+                    quoted = true;
+                    pending = true;
+                }
+                case ',' -> {
+                    cells.add(cell.toString());
+                    cell.setLength(0);
+                    pending = true;
+                }
+                case '\r' -> {
+                    // \r\n hoặc \r đơn đều kết thúc dòng
+                    reader.mark(1);
+                    if (reader.read() != '\n') {
+                        reader.reset();
+                    }
+                    rowNumber = endRow(handler, rowNumber, cells, cell, pending);
+                    pending = false;
+                }
+                case '\n' -> {
+                    rowNumber = endRow(handler, rowNumber, cells, cell, pending);
+                    pending = false;
+                }
+                default -> {
+                    cell.append((char) c);
+                    pending = true;
+                }
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("File CSV không hợp lệ: thiếu dấu \" đóng ở dòng " + rowNumber);
+        }
+        endRow(handler, rowNumber, cells, cell, pending);
+    }
+
+    static void readXlsx(InputStream input, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(input)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IllegalArgumentException("File Excel không có sheet nào");
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                // Locale.ROOT: số có định dạng nghìn luôn dùng dấu phẩy, dễ bỏ đi khi đọc
+                parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), null, strings,
+                        new SheetRows(handler), new DataFormatter(Locale.ROOT), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IllegalArgumentException("File Excel không hợp lệ: " + e.getMessage(), e);
+        }
+    }
+
+    private static int endRow(RowHandler handler, int rowNumber, List<String> cells, StringBuilder cell, boolean pending) {
+        if (pending) {
+            cells.add(cell.toString());
+            handler.row(rowNumber, new ArrayList<>(cells));
+        }
+        cells.clear();
+        cell.setLength(0);
+        return rowNumber + 1;
+    }
+
+    // XSSFSheetXMLHandler bỏ qua ô trống nên đặt ô theo chỉ số cột trong tham chiếu (A1, C1...)
+    private static final class SheetRows implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final RowHandler handler;
+        private final List<String> cells = new ArrayList<>();
+
+        private SheetRows(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (!cells.isEmpty()) {
+                handler.row(rowNum + 1, new ArrayList<>(cells));
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cells.size();
+            if (cellReference != null) {
+                column = new CellReference(cellReference).getCol();
+            }
+            while (cells.size() < column) {
+                cells.add("");
+            }
+            cells.add(formattedValue == null ? "" : formattedValue);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.dto.ProductSuggestionDTO;
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
+import com.sondv.phone.repository.ProductRepository;
+import com.sondv.phone.util.VietnameseTextUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Trie tiền tố cho /api/products/suggest: khóa là tên đã bỏ dấu bắt đầu từ mỗi từ ("samsung galaxy s24",
+// "galaxy s24", "s24"), mỗi nút giữ sẵn top-K id theo số lượng bán nên một lần gợi ý chỉ là đi theo tiền tố.
+@Service
+@RequiredArgsConstructor
+public class ProductSuggestIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSuggestIndex.class);
+
+    public static final int MAX_SUGGESTIONS = 10;
+    // Giới hạn độ sâu để trie không phình theo tên dài; tiền tố dài hơn được cắt bớt khi tra cứu
+    private static final int MAX_KEY_LENGTH = 40;
+    private static final long[] NO_IDS = new long[0];
+
+    private final ProductRepository productRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node();
+    private final Map<Long, String> names = new HashMap<>();
+    private final Map<Long, Integer> weights = new HashMap<>();
+    private final Map<Long, List<String>> keysByProduct = new HashMap<>();
+    private volatile boolean ready = false;
+    // Thay đổi đến trong lúc rebuild đang đọc DB, phát lại theo thứ tự lên trie mới khi hoán đổi
+    private final Set<List<Runnable>> pendingRebuilds = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    @PostConstruct
+    public void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("Không thể khởi tạo trie gợi ý sản phẩm", e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild() {
+        List<Runnable> pending = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            pendingRebuilds.add(pending);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            rebuild(pending);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                pendingRebuilds.remove(pending);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void rebuild(List<Runnable> pending) {
+        Node built = new Node();
+        Map<Long, String> builtNames = new HashMap<>();
+        Map<Long, Integer> builtWeights = new HashMap<>();
+        Map<Long, List<String>> builtKeys = new HashMap<>();
+        for (Object[] row : productRepository.findAllIdNameAndSoldQuantity()) {
+            Long id = (Long) row[0];
+            String name = (String) row[1];
+            List<String> keys = keysOf(name);
+            builtNames.put(id, name);
+            builtWeights.put(id, row[2] != null ? ((Number) row[2]).intValue() : 0);
+            builtKeys.put(id, keys);
+            for (String key : keys) {
+                Node node = built;
+                for (int i = 0; i < key.length(); i++) {
+                    node = node.childOrCreate(key.charAt(i));
+                }
+                node.terminals = insert(node.terminals, id);
+            }
+        }
+        computeTops(built, builtWeights);
+        lock.writeLock().lock();
+        try {
+            root = built;
+            names.clear();
+            names.putAll(builtNames);
+            weights.clear();
+            weights.putAll(builtWeights);
+            keysByProduct.clear();
+            keysByProduct.putAll(builtKeys);
+            pendingRebuilds.remove(pending);
+            pending.forEach(Runnable::run);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Đã dựng trie gợi ý cho {} sản phẩm", builtNames.size());
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        switch (event.getType()) {
+            case CREATED -> upsert(event.getProduct());
+            case DELETED -> remove(event.getProductId());
+            case UPDATED -> {
+                if (event.hasChanged(ProductChangedEvent.NAME)) {
+                    upsert(event.getProduct());
+                } else if (event.hasChanged(ProductChangedEvent.SOLD_QUANTITY)) {
+                    reweight(event.getProduct());
+                }
+            }
+        }
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event) {
+        if (event.isWholeCatalog()) {
+            rebuild();
+        } else if (event.hasChanged(ProductChangedEvent.SOLD_QUANTITY)) {
+            event.getProducts().forEach(this::reweight);
+        }
+    }
+
+    // Tối đa limit sản phẩm có tên chứa một từ bắt đầu bằng q (không phân biệt dấu), bán chạy trước
+    public List<ProductSuggestionDTO> suggest(String query, int limit) {
+        String key = String.join(" ", VietnameseTextUtil.queryTokens(query));
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            key = key.substring(0, MAX_KEY_LENGTH);
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            int size = Math.min(limit, node.top.length);
+            List<ProductSuggestionDTO> suggestions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                long id = node.top[i];
+                suggestions.add(new ProductSuggestionDTO(id, names.get(id)));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void upsert(Product product) {
+        Long id = product.getId();
+        List<String> newKeys = keysOf(product.getName());
+        lock.writeLock().lock();
+        try {
+            recordPending(() -> upsert(product));
+            List<String> oldKeys = keysByProduct.getOrDefault(id, List.of());
+            names.put(id, product.getName());
+            weights.put(id, product.getSoldQuantity() != null ? product.getSoldQuantity() : 0);
+            keysByProduct.put(id, newKeys);
+            for (String key : oldKeys) {
+                updatePath(key, id, false);
+            }
+            for (String key : newKeys) {
+                updatePath(key, id, true);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            recordPending(() -> remove(productId));
+            List<String> oldKeys = keysByProduct.remove(productId);
+            if (oldKeys == null) {
+                return;
+            }
+            // Gỡ khỏi các nút trước khi bỏ trọng số vì việc sắp xếp lại top-K còn cần tới nó
+            for (String key : oldKeys) {
+                updatePath(key, productId, false);
+            }
+            names.remove(productId);
+            weights.remove(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Số lượng bán đổi chỉ làm đổi thứ tự trên các nhánh của sản phẩm đó
+    private void reweight(Product product) {
+        Long id = product.getId();
+        int weight = product.getSoldQuantity() != null ? product.getSoldQuantity() : 0;
+        lock.writeLock().lock();
+        try {
+            recordPending(() -> reweight(product));
+            List<String> keys = keysByProduct.get(id);
+            Integer previous = weights.get(id);
+            if (keys == null || previous == null || previous == weight) {
+                return;
+            }
+            weights.put(id, weight);
+            for (String key : keys) {
+                updatePath(key, null, true);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Gọi khi đang giữ write lock
+    private void recordPending(Runnable change) {
+        for (List<Runnable> pending : pendingRebuilds) {
+            pending.add(change);
+        }
+    }
+
+    // Thêm/gỡ id ở nút cuối của khóa (id == null: chỉ sắp lại) rồi tính lại top-K từ dưới lên, cắt các nút rỗng
+    private void updatePath(String key, Long id, boolean add) {
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            Node next = add ? path[i].childOrCreate(key.charAt(i)) : path[i].child(key.charAt(i));
+            if (next == null) {
+                return;
+            }
+            path[i + 1] = next;
+        }
+        Node end = path[key.length()];
+        if (id != null) {
+            end.terminals = add ? insert(end.terminals, id) : delete(end.terminals, id);
+        }
+        for (int i = key.length(); i >= 0; i--) {
+            Node node = path[i];
+            node.top = topOf(node, weights);
+            if (i > 0 && node.top.length == 0) {
+                path[i - 1].removeChild(key.charAt(i - 1));
+            }
+        }
+    }
+
+    private static void computeTops(Node node, Map<Long, Integer> weights) {
+        for (Node child : node.children) {
+            computeTops(child, weights);
+        }
+        node.top = topOf(node, weights);
+    }
+
+    // Gộp id kết thúc tại nút với top-K của các nút con, bỏ trùng (một sản phẩm có thể có nhiều khóa trong cùng nhánh)
+    private static long[] topOf(Node node, Map<Long, Integer> weights) {
+        int total = node.terminals.length;
+        for (Node child : node.children) {
+            total += child.top.length;
+        }
+        if (total == 0) {
+            return NO_IDS;
+        }
+        long[] candidates = Arrays.copyOf(node.terminals, total);
+        int n = node.terminals.length;
+        for (Node child : node.children) {
+            System.arraycopy(child.top, 0, candidates, n, child.top.length);
+            n += child.top.length;
+        }
+        Arrays.sort(candidates);
+        int distinct = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            if (i == 0 || candidates[i] != candidates[i - 1]) {
+                candidates[distinct++] = candidates[i];
+            }
+        }
+        if (distinct <= 1) {
+            return Arrays.copyOf(candidates, distinct);
+        }
+        Long[] boxed = new Long[distinct];
+        for (int i = 0; i < distinct; i++) {
+            boxed[i] = candidates[i];
+        }
+        Arrays.sort(boxed, Comparator.comparingInt((Long id) -> -weights.getOrDefault(id, 0)).thenComparingLong(id -> id));
+        long[] top = new long[Math.min(MAX_SUGGESTIONS, distinct)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = boxed[i];
+        }
+        return top;
+    }
+
+    // "Samsung Galaxy S24" -> "samsung galaxy s24", "galaxy s24", "s24"
+    private static List<String> keysOf(String name) {
+        List<String> tokens = VietnameseTextUtil.queryTokens(name);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String key = String.join(" ", tokens.subList(i, tokens.size()));
+            keys.add(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+        }
+        return new ArrayList<>(keys);
+    }
+
+    private static long[] insert(long[] ids, long id) {
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos >= 0) {
+            return ids;
+        }
+        int at = -pos - 1;
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, at);
+        result[at] = id;
+        System.arraycopy(ids, at, result, at + 1, ids.length - at);
+        return result;
+    }
+
+    private static long[] delete(long[] ids, long id) {
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos < 0) {
+            return ids;
+        }
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, pos);
+        System.arraycopy(ids, pos + 1, result, pos, ids.length - pos - 1);
+        return result;
+    }
+
+    // Nút trie gọn: nhãn con là mảng char đã sắp xếp thay vì HashMap
+    private static final class Node {
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        long[] terminals = NO_IDS;
+        long[] top = NO_IDS;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            Node node = new Node();
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newLabels[at] = c;
+            newChildren[at] = node;
+            System.arraycopy(labels, at, newLabels, at + 1, labels.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            labels = newLabels;
+            children = newChildren;
+            return node;
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(labels, i + 1, newLabels, i, labels.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.sondv.phone.service;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+
+// Mỗi khóa là một chuỗi "fingerprint\nstatus\nbody"; SET NX với TTL để nhiều instance cùng tôn trọng một khóa
+class RedisIdempotencyStore implements IdempotencyStore {
+
+    private final StringRedisTemplate redisTemplate;
+
+    RedisIdempotencyStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public boolean claim(String key, String fingerprint, Duration ttl) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, encode(new Entry(fingerprint, 0, "")), ttl));
+    }
+
+    @Override
+    public Entry get(String key) {
+        String value = redisTemplate.opsForValue().get(key);
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split("\n", 3);
+        return new Entry(parts[0], Integer.parseInt(parts[1]), parts.length > 2 ? parts[2] : "");
+    }
+
+    @Override
+    public void complete(String key, Entry entry, Duration ttl) {
+        redisTemplate.opsForValue().set(key, encode(entry), ttl);
+    }
+
+    @Override
+    public void release(String key) {
+        redisTemplate.delete(key);
+    }
+
+    @Override
+    public void purgeExpired() {
+        // Redis tự xóa theo TTL
+    }
+
+    private static String encode(Entry entry) {
+        return entry.fingerprint() + "\n" + entry.status() + "\n" + entry.body();
+    }
+}
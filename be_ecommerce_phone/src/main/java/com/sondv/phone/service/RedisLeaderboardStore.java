@@ -0,0 +1,113 @@
+package com.sondv.phone.service;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.*;
+
+// Bảng xếp hạng trên Redis ZSET: ZINCRBY trong MULTI/EXEC khi ghi, ZREVRANGEBYSCORE khi đọc,
+// trượt cửa sổ bằng ZUNIONSTORE với trọng số -1 cho bucket giờ vừa rơi ra
+class RedisLeaderboardStore implements LeaderboardStore {
+
+    private static final String PREFIX = "leaderboard:sold:";
+    // Bucket giữ lâu hơn cửa sổ dài nhất một chút để kịp trừ sau khi ứng dụng khởi động lại
+    private static final Duration BUCKET_TTL = Duration.ofDays(32);
+
+    private final StringRedisTemplate redisTemplate;
+
+    RedisLeaderboardStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public void add(Map<Long, Long> deltas, long hour, Collection<BestSellerLeaderboard.Window> targets) {
+        String bucketKey = bucketKey(hour);
+        boolean rolling = targets.stream().anyMatch(BestSellerLeaderboard.Window::isRolling);
+        boolean hasNegative = deltas.values().stream().anyMatch(delta -> delta < 0);
+        redisTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public List<Object> execute(RedisOperations operations) throws DataAccessException {
+                operations.multi();
+                deltas.forEach((id, delta) -> {
+                    String member = id.toString();
+                    if (rolling) {
+                        operations.opsForZSet().incrementScore(bucketKey, member, delta);
+                    }
+                    for (BestSellerLeaderboard.Window window : targets) {
+                        operations.opsForZSet().incrementScore(key(window), member, delta);
+                    }
+                });
+                if (rolling) {
+                    operations.expire(bucketKey, BUCKET_TTL);
+                }
+                // Giữ điểm âm để các lần cộng/trừ sau vẫn cân, chỉ dọn thành viên có điểm đúng bằng 0
+                if (hasNegative) {
+                    for (BestSellerLeaderboard.Window window : targets) {
+                        operations.opsForZSet().removeRangeByScore(key(window), 0, 0);
+                    }
+                }
+                return operations.exec();
+            }
+        });
+    }
+
+    @Override
+    public void expire(BestSellerLeaderboard.Window window, long hour) {
+        // Khóa theo (cửa sổ, giờ) để nhiều instance không trừ cùng một bucket hai lần
+        Boolean claimed = redisTemplate.opsForValue().setIfAbsent(
+                key(window) + ":expired:" + hour, "1", BUCKET_TTL);
+        if (!Boolean.TRUE.equals(claimed)) {
+            return;
+        }
+        String windowKey = key(window);
+        redisTemplate.opsForZSet().unionAndStore(windowKey, List.of(bucketKey(hour)), windowKey,
+                Aggregate.SUM, Weights.of(1, -1));
+        redisTemplate.opsForZSet().removeRangeByScore(windowKey, 0, 0);
+    }
+
+    @Override
+    public long expiredThrough(BestSellerLeaderboard.Window window) {
+        String value = redisTemplate.opsForValue().get(key(window) + ":expired-through");
+        return value != null ? Long.parseLong(value) : -1L;
+    }
+
+    @Override
+    public void markExpired(BestSellerLeaderboard.Window window, long hour) {
+        redisTemplate.opsForValue().set(key(window) + ":expired-through", Long.toString(hour));
+    }
+
+    @Override
+    public void dropBucket(long hour) {
+        redisTemplate.delete(bucketKey(hour));
+    }
+
+    @Override
+    public List<Long> top(BestSellerLeaderboard.Window window, int limit) {
+        // Số lượng là số nguyên: điểm >= 1 loại các sản phẩm đang âm hoặc bằng 0
+        Set<String> members = redisTemplate.opsForZSet().reverseRangeByScore(key(window), 1, Double.POSITIVE_INFINITY, 0, limit);
+        List<Long> ids = new ArrayList<>();
+        if (members != null) {
+            members.forEach(member -> ids.add(Long.parseLong(member)));
+        }
+        return ids;
+    }
+
+    @Override
+    public boolean claimSeed() {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(PREFIX + "seeded", "1"));
+    }
+
+    private static String key(BestSellerLeaderboard.Window window) {
+        return PREFIX + window.getParam();
+    }
+
+    private static String bucketKey(long hour) {
+        return PREFIX + "h:" + hour;
+    }
+}
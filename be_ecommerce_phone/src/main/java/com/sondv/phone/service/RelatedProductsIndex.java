@@ -0,0 +1,228 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Danh sách sản phẩm liên quan tính sẵn: mỗi sản phẩm giữ tối đa K id (long[]) cùng danh mục,
+// xếp theo độ gần giá và độ bán chạy. Dựng nền từ CatalogIndexService, chỉ dựng lại các danh mục vừa thay đổi.
+@Service
+@RequiredArgsConstructor
+public class RelatedProductsIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(RelatedProductsIndex.class);
+
+    public static final int MAX_NEIGHBORS = 20;
+
+    // Chỉ chấm điểm những ứng viên gần giá nhất thay vì cả danh mục
+    private static final int CANDIDATE_WINDOW = MAX_NEIGHBORS * 4;
+    // Khoảng giá ±20% được ưu tiên như truy vấn cũ
+    private static final double PRICE_BAND = 0.2;
+    private static final double POPULARITY_WEIGHT = 0.1;
+    // Gom các thay đổi liên tiếp (ví dụ áp giảm giá hàng loạt) thành một lần dựng lại
+    private static final Duration REBUILD_DELAY = Duration.ofSeconds(1);
+
+    private final CatalogIndexService catalogIndexService;
+    private final TaskScheduler taskScheduler;
+    private final CatalogVersionService catalogVersionService;
+
+    private final Map<Long, long[]> neighbors = new ConcurrentHashMap<>();
+    private final Map<Long, Long> categoryByProduct = new ConcurrentHashMap<>();
+
+    private final Set<Long> dirtyCategories = new HashSet<>();
+    private boolean fullRebuildPending;
+    private boolean rebuildScheduled;
+    private volatile boolean ready = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        synchronized (this) {
+            fullRebuildPending = true;
+        }
+        scheduleRebuild();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // null nếu sản phẩm chưa có trong chỉ mục (nơi gọi dùng truy vấn cơ sở dữ liệu)
+    public long[] neighbors(long productId, int limit) {
+        long[] ids = neighbors.get(productId);
+        if (ids == null) {
+            return null;
+        }
+        return ids.length <= limit ? ids : Arrays.copyOf(ids, limit);
+    }
+
+    // Sau CatalogIndexService để đọc được giá/doanh số mới
+    @Order(10)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        boolean relevant = event.getType() != ProductChangedEvent.Type.UPDATED
+                || event.hasChanged(ProductChangedEvent.PRICE)
+                || event.hasChanged(ProductChangedEvent.DISCOUNT)
+                || event.hasChanged(ProductChangedEvent.SOLD_QUANTITY);
+        if (!relevant) {
+            return;
+        }
+        Long previousCategory = categoryByProduct.get(event.getProductId());
+        Long category = categoryOf(event.getProduct());
+        if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            neighbors.remove(event.getProductId());
+            categoryByProduct.remove(event.getProductId());
+        }
+        markDirty(previousCategory, category);
+    }
+
+    @Order(10)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event) {
+        if (event.isWholeCatalog()) {
+            synchronized (this) {
+                fullRebuildPending = true;
+            }
+        } else {
+            for (Product product : event.getProducts()) {
+                markDirty(categoryByProduct.get(product.getId()), categoryOf(product));
+            }
+        }
+        scheduleRebuild();
+    }
+
+    private void markDirty(Long... categoryIds) {
+        synchronized (this) {
+            for (Long categoryId : categoryIds) {
+                if (categoryId != null) {
+                    dirtyCategories.add(categoryId);
+                }
+            }
+        }
+        scheduleRebuild();
+    }
+
+    private synchronized void scheduleRebuild() {
+        if (rebuildScheduled || (!fullRebuildPending && dirtyCategories.isEmpty())) {
+            return;
+        }
+        rebuildScheduled = true;
+        taskScheduler.schedule(this::rebuildPending, Instant.now().plus(REBUILD_DELAY));
+    }
+
+    private void rebuildPending() {
+        Set<Long> categories;
+        synchronized (this) {
+            categories = fullRebuildPending ? null : new HashSet<>(dirtyCategories);
+            fullRebuildPending = false;
+            dirtyCategories.clear();
+            rebuildScheduled = false;
+        }
+        try {
+            if (!catalogIndexService.isReady()) {
+                throw new IllegalStateException("Chỉ mục sản phẩm chưa sẵn sàng");
+            }
+            long started = System.nanoTime();
+            Map<Long, CatalogIndexService.CategorySlice> slices = catalogIndexService.categorySlices(categories);
+            int products = 0;
+            for (Map.Entry<Long, CatalogIndexService.CategorySlice> entry : slices.entrySet()) {
+                products += rebuildCategory(entry.getKey(), entry.getValue());
+            }
+            if (categories == null) {
+                // Bỏ các sản phẩm không còn trong danh mục nào
+                Set<Long> live = new HashSet<>();
+                slices.values().forEach(slice -> Arrays.stream(slice.ids()).forEach(live::add));
+                neighbors.keySet().retainAll(live);
+                categoryByProduct.keySet().retainAll(live);
+                ready = true;
+            }
+            // Danh sách dựng lại sau sự kiện nên ETag của /related phải đổi thêm một lần nữa
+            catalogVersionService.bump(CatalogVersionService.RELATED);
+            logger.debug("Đã tính sản phẩm liên quan cho {} sản phẩm ({} danh mục) trong {} ms",
+                    products, slices.size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            logger.error("Không thể tính danh sách sản phẩm liên quan", e);
+            synchronized (this) {
+                if (categories == null) {
+                    fullRebuildPending = true;
+                } else {
+                    dirtyCategories.addAll(categories);
+                }
+            }
+            scheduleRebuild();
+        }
+    }
+
+    private int rebuildCategory(long categoryId, CatalogIndexService.CategorySlice slice) {
+        int n = slice.ids().length;
+        // Sắp theo giá để ứng viên gần giá nhất nằm liền kề
+        Integer[] byPrice = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            byPrice[i] = i;
+        }
+        Arrays.sort(byPrice, Comparator.comparingLong((Integer i) -> slice.prices()[i]).thenComparingLong(i -> slice.ids()[i]));
+        int maxSold = 0;
+        for (int sold : slice.soldQuantities()) {
+            maxSold = Math.max(maxSold, sold);
+        }
+        double popularityScale = Math.log1p(maxSold);
+
+        for (int rank = 0; rank < n; rank++) {
+            int self = byPrice[rank];
+            long price = Math.max(slice.prices()[self], 1L);
+            int[] candidates = nearestByPrice(byPrice, rank, slice.prices());
+            // Điểm đánh theo vị trí ứng viên nên mỗi sản phẩm chỉ tốn O(CANDIDATE_WINDOW), không theo cỡ danh mục
+            Integer[] ordered = new Integer[candidates.length];
+            double[] scores = new double[candidates.length];
+            for (int c = 0; c < candidates.length; c++) {
+                int j = candidates[c];
+                ordered[c] = c;
+                double distance = Math.abs(slice.prices()[j] - price) / (double) price;
+                double popularity = popularityScale > 0 ? Math.log1p(slice.soldQuantities()[j]) / popularityScale : 0;
+                // Trong khoảng ±20% luôn đứng trước ngoài khoảng; trong cùng nhóm ưu tiên gần giá và bán chạy
+                scores[c] = (distance <= PRICE_BAND ? 0 : 1) + distance - POPULARITY_WEIGHT * popularity;
+            }
+            Arrays.sort(ordered, Comparator.comparingDouble((Integer c) -> scores[c])
+                    .thenComparingLong(c -> slice.ids()[candidates[c]]));
+            long[] ids = new long[Math.min(MAX_NEIGHBORS, ordered.length)];
+            for (int k = 0; k < ids.length; k++) {
+                ids[k] = slice.ids()[candidates[ordered[k]]];
+            }
+            neighbors.put(slice.ids()[self], ids);
+            categoryByProduct.put(slice.ids()[self], categoryId);
+        }
+        return n;
+    }
+
+    // Mở rộng hai phía từ vị trí của sản phẩm trong mảng đã sắp theo giá
+    private static int[] nearestByPrice(Integer[] byPrice, int rank, long[] prices) {
+        int n = byPrice.length;
+        int size = Math.min(CANDIDATE_WINDOW, n - 1);
+        int[] candidates = new int[size];
+        long price = prices[byPrice[rank]];
+        int lo = rank - 1;
+        int hi = rank + 1;
+        for (int c = 0; c < size; c++) {
+            boolean takeLow = hi >= n || (lo >= 0 && price - prices[byPrice[lo]] <= prices[byPrice[hi]] - price);
+            candidates[c] = takeLow ? byPrice[lo--] : byPrice[hi++];
+        }
+        return candidates;
+    }
+
+    private static Long categoryOf(Product product) {
+        return product != null && product.getCategory() != null ? product.getCategory().getId() : null;
+    }
+}
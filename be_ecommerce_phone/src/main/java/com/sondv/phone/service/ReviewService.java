@@ -3,11 +3,13 @@ package com.sondv.phone.service;
 import com.sondv.phone.dto.ProductReviewSummaryDTO;
 import com.sondv.phone.dto.ReviewResponse;
 import com.sondv.phone.entity.*;
+import com.sondv.phone.event.ProductChangedEvent;
 import com.sondv.phone.repository.*;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -16,6 +18,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +27,7 @@ public class ReviewService {
     private final ReviewRepository reviewRepository;
     private final OrderDetailRepository orderDetailRepository;
     private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public Review addReview(Review review) {
@@ -79,6 +83,7 @@ public class ReviewService {
         product.setRating(avgRating != null ? avgRating : 0.0);
         product.setRatingCount(count != null ? count.intValue() : 0);
         productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.updated(product, product.getName(), Set.of(ProductChangedEvent.RATING)));
     }
 
     @Cacheable(value = "pagedReviews", key = "#productId + '-' + #pageable.pageNumber + '-' + #pageable.pageSize")
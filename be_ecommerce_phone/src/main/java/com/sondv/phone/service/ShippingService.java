@@ -22,6 +22,7 @@ public class ShippingService {
 
     private final ShippingRepository shippingRepository;
     private final OrderRepository orderRepository;
+    private final OrderCacheGenerations orderCacheGenerations;
     private static final List<String> VALID_CARRIERS = List.of("GHN", "GHTK", "VNPOST");
 
     // Bảng phí tĩnh theo vùng và carrier
@@ -110,6 +111,7 @@ public class ShippingService {
         order.setShippingInfo(shippingInfo);
         order.setStatus(OrderStatus.SHIPPED);
         orderRepository.save(order);
+        orderCacheGenerations.onOrderChanged(order);
 
         return shippingRepository.save(shippingInfo);
     }
@@ -129,6 +131,7 @@ public class ShippingService {
         shippingInfo.setCarrier(carrier);
         shippingInfo.setTrackingNumber(trackingNumber);
         shippingInfo.setEstimatedDelivery(estimatedDelivery);
+        orderCacheGenerations.onOrderChanged(shippingInfo.getOrder());
         return shippingRepository.save(shippingInfo);
     }
 
@@ -140,6 +143,7 @@ public class ShippingService {
         order.setShippingInfo(null);
         order.setStatus(OrderStatus.CANCELLED);
         orderRepository.save(order);
+        orderCacheGenerations.onOrderChanged(order);
         shippingRepository.delete(shippingInfo);
     }
 }
\ No newline at end of file
@@ -0,0 +1,196 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.event.ProductChangedEvent;
+import com.sondv.phone.event.ProductsBulkChangedEvent;
+import com.sondv.phone.repository.ProductRepository;
+import com.sondv.phone.repository.StockLedgerRepository;
+import com.sondv.phone.util.TransactionUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Sổ giữ hàng trong bộ nhớ cho flash sale: mỗi sản phẩm một bộ đếm CAS nên cấp/từ chối giữ hàng không chạm dòng
+// inventory nóng. Đơn hàng chỉ ghi bút toán vào stock_ledger (cùng transaction, nên bút toán tồn tại khi và chỉ khi
+// đơn commit); luồng nền gộp bút toán vào inventory/products/inventory_logs theo lô. Khởi động lại sau sự cố thì gộp
+// hết bút toán còn sót trước khi nhận giữ hàng. Bộ đếm nằm trong một JVM: chỉ bật khi chạy một instance.
+@Service
+@RequiredArgsConstructor
+public class StockReservationLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationLedger.class);
+
+    private static final int FLUSH_BATCH = 2000;
+
+    private final StockLedgerRepository stockLedgerRepository;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${inventory.ledger.enabled:false}")
+    private boolean enabled;
+
+    private final Map<Long, AtomicInteger> counters = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isActive() {
+        return enabled && ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (enabled) {
+            reconcile();
+        }
+    }
+
+    // Gộp toàn bộ bút toán còn lại rồi dựng lại bộ đếm từ CSDL
+    public synchronized void reconcile() {
+        ready = false;
+        int applied = 0;
+        int batch;
+        while ((batch = flushBatch()) > 0) {
+            applied += batch;
+        }
+        counters.clear();
+        stockLedgerRepository.loadAvailable()
+                .forEach((productId, quantity) -> counters.put(productId, new AtomicInteger(quantity)));
+        ready = true;
+        logger.info("Sổ giữ hàng sẵn sàng: {} sản phẩm, đã gộp {} sản phẩm còn bút toán", counters.size(), applied);
+    }
+
+    // Giữ theo id tăng dần; thiếu hàng thì trả lại phần đã giữ và trả về id sản phẩm thiếu, đủ hàng trả về null
+    public Long tryReserve(SortedMap<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> reserved = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> item : quantities.entrySet()) {
+            AtomicInteger counter = counter(item.getKey());
+            if (counter == null || !decrement(counter, item.getValue())) {
+                release(reserved);
+                return item.getKey();
+            }
+            reserved.add(item);
+        }
+        return null;
+    }
+
+    public void release(SortedMap<Long, Integer> quantities) {
+        release(quantities.entrySet());
+    }
+
+    // Điều chỉnh kho trực tiếp đã commit: cộng vào bộ đếm nếu đã nạp, chưa nạp thì lần nạp sau đọc từ CSDL
+    public void onAdjusted(Long productId, int quantityChange) {
+        AtomicInteger counter = counters.get(productId);
+        if (counter != null) {
+            counter.addAndGet(quantityChange);
+        }
+    }
+
+    // Điều chỉnh kho trong transaction hiện tại theo chênh lệch, không bỏ bộ đếm (bỏ đi thì nạp lại sẽ mất phần
+    // đơn đang giữ chưa commit): phần giảm giữ ngay trên sổ và trả lại nếu rollback, phần tăng cộng vào sau khi
+    // commit. Trả về false nếu phần giảm đã bị đơn chưa gộp giữ hết.
+    public boolean adjust(Long productId, int quantityChange) {
+        if (quantityChange < 0) {
+            SortedMap<Long, Integer> taken = new TreeMap<>(Map.of(productId, -quantityChange));
+            if (tryReserve(taken) != null) {
+                return false;
+            }
+            TransactionUtil.afterRollback(() -> release(taken));
+        } else if (quantityChange > 0) {
+            TransactionUtil.afterCommit(() -> onAdjusted(productId, quantityChange));
+        }
+        return true;
+    }
+
+    public Integer available(Long productId) {
+        AtomicInteger counter = counter(productId);
+        return counter == null ? null : counter.get();
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.ledger.flush-interval-ms:200}")
+    public synchronized void flush() {
+        if (!isActive()) {
+            return;
+        }
+        try {
+            while (flushBatch() > 0) {
+                // còn bút toán thì gộp tiếp
+            }
+        } catch (Exception e) {
+            // Bút toán vẫn nằm trong stock_ledger, lần sau gộp lại
+            logger.warn("Không gộp được sổ giữ hàng: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // READ_COMMITTED: chỉ thấy bút toán của đơn đã commit và tránh gap lock của REPEATABLE READ trên InnoDB
+    private int flushBatch() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        Integer applied = transactionTemplate.execute(status -> {
+            List<Long> productIds = stockLedgerRepository.applyPending(FLUSH_BATCH);
+            if (!productIds.isEmpty()) {
+                eventPublisher.publishEvent(new ProductsBulkChangedEvent(
+                        productRepository.findAllById(productIds), Set.of(ProductChangedEvent.STOCK)));
+            }
+            return productIds.size();
+        });
+        return applied == null ? 0 : applied;
+    }
+
+    // Truy vấn DB nằm ngoài computeIfAbsent để không khóa bin của ConcurrentHashMap trong lúc chờ DB;
+    // hai luồng cùng nạp thì luồng đến sau dùng bộ đếm đã có
+    private AtomicInteger counter(Long productId) {
+        AtomicInteger counter = counters.get(productId);
+        if (counter != null) {
+            return counter;
+        }
+        Integer quantity = stockLedgerRepository.loadAvailable(productId);
+        if (quantity == null) {
+            return null;
+        }
+        AtomicInteger loaded = new AtomicInteger(quantity);
+        AtomicInteger existing = counters.putIfAbsent(productId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private static boolean decrement(AtomicInteger counter, int quantity) {
+        int current;
+        do {
+            current = counter.get();
+            if (current < quantity) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current - quantity));
+        return true;
+    }
+
+    private void release(Collection<Map.Entry<Long, Integer>> items) {
+        for (Map.Entry<Long, Integer> item : items) {
+            AtomicInteger counter = counters.get(item.getKey());
+            if (counter != null) {
+                counter.addAndGet(item.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.sondv.phone.util;
+
+import com.sondv.phone.entity.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Quy tắc giá hiện hành duy nhất: giá khuyến mãi nếu now nằm trong [discountStartDate, discountEndDate], ngược lại giá bán
+public class PriceUtil {
+
+    public static boolean isDiscountActive(Product product, LocalDateTime now) {
+        return product.getDiscountedPrice() != null
+                && product.getDiscountStartDate() != null
+                && product.getDiscountEndDate() != null
+                && !now.isBefore(product.getDiscountStartDate())
+                && !now.isAfter(product.getDiscountEndDate());
+    }
+
+    public static BigDecimal currentPrice(Product product, LocalDateTime now) {
+        return isDiscountActive(product, now) ? product.getDiscountedPrice() : product.getSellingPrice();
+    }
+
+    public static BigDecimal currentPrice(Product product) {
+        return currentPrice(product, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,49 @@
+package com.sondv.phone.util;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Con trỏ phân trang keyset: kiểu sắp xếp + giá trị khóa sắp xếp + id của bản ghi cuối trang trước.
+// Mã hóa base64url để client chỉ coi là chuỗi mờ.
+public record ProductCursor(String sort, BigDecimal key, long id) {
+
+    public static final String SORT_ID = "id";
+    public static final String SORT_NEWEST = "newest";
+    public static final String SORT_BESTSELLING = "bestselling";
+    public static final String SORT_PRICE_ASC = "priceasc";
+    public static final String SORT_PRICE_DESC = "pricedesc";
+
+    // Chuẩn hóa sortBy của /filtered về một trong các kiểu sắp xếp hỗ trợ con trỏ
+    public static String normalizeSort(String sortBy) {
+        String sort = sortBy != null ? sortBy.toLowerCase() : "";
+        return switch (sort) {
+            case SORT_NEWEST, SORT_BESTSELLING, SORT_PRICE_ASC, SORT_PRICE_DESC -> sort;
+            default -> SORT_ID;
+        };
+    }
+
+    public String encode() {
+        String raw = sort + "|" + (key != null ? key.toPlainString() : "") + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Con trỏ rỗng nghĩa là trang đầu tiên; con trỏ của kiểu sắp xếp khác bị từ chối
+    public static ProductCursor decode(String cursor, String expectedSort) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != 3 || !parts[0].equals(expectedSort)) {
+                throw new IllegalArgumentException("Con trỏ phân trang không hợp lệ");
+            }
+            BigDecimal key = parts[1].isEmpty() ? null : new BigDecimal(parts[1]);
+            return new ProductCursor(parts[0], key, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException cũng là IllegalArgumentException
+            throw new IllegalArgumentException("Con trỏ phân trang không hợp lệ");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.sondv.phone.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+public class VietnameseTextUtil {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+    private static final Pattern LETTER_DIGIT_BOUNDARY = Pattern.compile("(?<=[a-z])(?=[0-9])|(?<=[0-9])(?=[a-z])");
+
+    // Bỏ dấu tiếng Việt và chuyển về chữ thường: "Điện Thoại" -> "dien thoai"
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("");
+        return stripped.replace('đ', 'd').replace('Đ', 'D').toLowerCase(Locale.ROOT);
+    }
+
+    // Tách từ khóa tìm kiếm: chỉ bỏ dấu và tách theo ký tự không phải chữ/số
+    public static List<String> queryTokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_ALPHANUMERIC.split(fold(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Tách tên sản phẩm để lập chỉ mục, thêm các biến thể hãng/model:
+    // "Galaxy S24 Ultra" -> galaxy, s24, s, 24, ultra; "iPhone 15" -> iphone, 15, iphone15
+    public static Set<String> indexTokens(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        String previous = null;
+        for (String token : queryTokens(text)) {
+            tokens.add(token);
+            String[] parts = LETTER_DIGIT_BOUNDARY.split(token);
+            if (parts.length > 1) {
+                for (String part : parts) {
+                    tokens.add(part);
+                }
+            }
+            if (previous != null && isLetters(previous) && isDigits(token)) {
+                tokens.add(previous + token);
+            }
+            previous = token;
+        }
+        return tokens;
+    }
+
+    private static boolean isLetters(String token) {
+        return token.chars().allMatch(c -> c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isDigits(String token) {
+        return token.chars().allMatch(c -> c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,117 @@
+package com.sondv.phone.controller;
+
+import com.sondv.phone.entity.RoleName;
+import com.sondv.phone.entity.User;
+import com.sondv.phone.repository.UserRepository;
+import com.sondv.phone.security.JwtAuthenticationEntryPoint;
+import com.sondv.phone.security.JwtUtil;
+import com.sondv.phone.security.SecurityConfig;
+import com.sondv.phone.security.oauth2.handler.FacebookOAuth2LoginSuccessHandler;
+import com.sondv.phone.security.oauth2.handler.GoogleOAuth2LoginSuccessHandler;
+import com.sondv.phone.security.oauth2.service.FacebookOAuth2UserService;
+import com.sondv.phone.security.oauth2.service.GoogleOidcUserService;
+import com.sondv.phone.service.*;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.oauth2.client.servlet.OAuth2ClientAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Các GET chỉ dành cho ADMIN nằm dưới /api/products (vốn permitAll cho GET); @PreAuthorize không có tác dụng
+// vì không bật method security nên quyền phải được chặn ở SecurityConfig
+@WebMvcTest(controllers = ProductController.class, excludeAutoConfiguration = OAuth2ClientAutoConfiguration.class)
+@Import({SecurityConfig.class, JwtAuthenticationEntryPoint.class})
+class ProductControllerSecurityTest {
+
+	private static final String ADMIN_TOKEN = "admin-token-value";
+	private static final String CUSTOMER_TOKEN = "customer-token-value";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockBean
+	private ProductService productService;
+	@MockBean
+	private CatalogResponseCache catalogResponseCache;
+	@MockBean
+	private CatalogVersionService catalogVersionService;
+	@MockBean
+	private ProductSuggestIndex productSuggestIndex;
+	@MockBean
+	private ProductBulkService productBulkService;
+	@MockBean
+	private JwtUtil jwtUtil;
+	@MockBean
+	private UserRepository userRepository;
+	@MockBean
+	private RedisTemplate<String, String> redisTemplate;
+	@MockBean
+	private ClientRegistrationRepository clientRegistrationRepository;
+	@MockBean
+	private GoogleOidcUserService googleOidcUserService;
+	@MockBean
+	private FacebookOAuth2UserService facebookOAuth2UserService;
+	@MockBean
+	private GoogleOAuth2LoginSuccessHandler googleOAuth2LoginSuccessHandler;
+	@MockBean
+	private FacebookOAuth2LoginSuccessHandler facebookOAuth2LoginSuccessHandler;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		// Bộ giới hạn tần suất luôn cho qua
+		when(redisTemplate.opsForValue()).thenReturn(mock(ValueOperations.class));
+		signIn(ADMIN_TOKEN, "admin@example.com", RoleName.ADMIN);
+		signIn(CUSTOMER_TOKEN, "khach@example.com", RoleName.CUSTOMER);
+	}
+
+	@Test
+	void adminProductListRejectsAnonymousAndCustomers() throws Exception {
+		mockMvc.perform(get("/api/products/admin"))
+				.andExpect(status().isUnauthorized());
+		mockMvc.perform(get("/api/products/admin").cookie(new Cookie("auth_token", CUSTOMER_TOKEN)))
+				.andExpect(status().isForbidden());
+		mockMvc.perform(get("/api/products/admin").cookie(new Cookie("auth_token", ADMIN_TOKEN)))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void bulkExportRejectsAnonymousAndCustomers() throws Exception {
+		mockMvc.perform(get("/api/products/bulk/export"))
+				.andExpect(status().isUnauthorized());
+		mockMvc.perform(get("/api/products/bulk/export").cookie(new Cookie("auth_token", CUSTOMER_TOKEN)))
+				.andExpect(status().isForbidden());
+		mockMvc.perform(get("/api/products/bulk/export").cookie(new Cookie("auth_token", ADMIN_TOKEN)))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void publicProductListStaysOpen() throws Exception {
+		mockMvc.perform(get("/api/products"))
+				.andExpect(status().isOk());
+	}
+
+	private void signIn(String token, String email, RoleName role) {
+		User user = new User();
+		user.setEmail(email);
+		user.setRoles(Set.of(role));
+		when(jwtUtil.isTokenValid(token)).thenReturn(true);
+		when(jwtUtil.extractUsername(token)).thenReturn(email);
+		when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+	}
+}
@@ -0,0 +1,82 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.repository.OrderDetailRepository;
+import com.sondv.phone.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.*;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+// Bảng xếp hạng giữ trong bộ nhớ, thời gian do test điều khiển để trượt cửa sổ
+class BestSellerLeaderboardTest {
+
+	private static final long IPHONE = 1L;
+	private static final long SAMSUNG = 2L;
+
+	private BestSellerLeaderboard leaderboard;
+	private Instant now;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		leaderboard = new BestSellerLeaderboard(mock(ProductRepository.class), mock(OrderDetailRepository.class),
+				mock(ObjectProvider.class), mock(CatalogVersionService.class));
+		now = Instant.parse("2026-03-01T10:30:00Z");
+		leaderboard.setClock(Clock.fixed(now, ZoneOffset.UTC));
+		leaderboard.init();
+	}
+
+	@Test
+	void cancelledSaleNeverReappearsAfterSlidingOutOfTheWindow() {
+		LocalDateTime completedAt = LocalDateTime.ofInstant(now, ZoneOffset.UTC);
+		leaderboard.record(Map.of(IPHONE, 5L, SAMSUNG, 3L), completedAt);
+
+		// Hủy đơn iPhone hai giờ sau khi hoàn thành
+		advanceHours(2);
+		leaderboard.record(Map.of(IPHONE, -5L), completedAt);
+
+		assertThat(leaderboard.topIds(BestSellerLeaderboard.Window.LAST_24H, 10)).containsExactly(SAMSUNG);
+		assertThat(leaderboard.topIds(BestSellerLeaderboard.Window.ALL_TIME, 10)).containsExactly(SAMSUNG);
+
+		// Giờ hoàn thành đã rơi khỏi 24h nhưng giờ hủy thì chưa: không được trừ hay cộng lại phần đã hủy
+		advanceHours(23);
+		assertThat(leaderboard.topIds(BestSellerLeaderboard.Window.LAST_24H, 10)).isEmpty();
+
+		advanceHours(3);
+		assertThat(leaderboard.topIds(BestSellerLeaderboard.Window.LAST_24H, 10)).isEmpty();
+		assertThat(leaderboard.topIds(BestSellerLeaderboard.Window.LAST_7D, 10)).containsExactly(SAMSUNG);
+		assertThat(leaderboard.topIds(BestSellerLeaderboard.Window.ALL_TIME, 10)).containsExactly(SAMSUNG);
+	}
+
+	@Test
+	void cancellingAfterTheSaleLeftAWindowOnlyChangesTheWindowsStillHoldingIt() {
+		LocalDateTime completedAt = LocalDateTime.ofInstant(now, ZoneOffset.UTC);
+		leaderboard.record(Map.of(IPHONE, 5L), completedAt);
+
+		advanceHours(30);
+		leaderboard.record(Map.of(IPHONE, -5L), completedAt);
+		advanceHours(30);
+
+		assertThat(leaderboard.topIds(BestSellerLeaderboard.Window.LAST_24H, 10)).isEmpty();
+		assertThat(leaderboard.topIds(BestSellerLeaderboard.Window.LAST_7D, 10)).isEmpty();
+		assertThat(leaderboard.topIds(BestSellerLeaderboard.Window.ALL_TIME, 10)).isEmpty();
+
+		// Bán lại sau đó vẫn được tính đúng, không bị điểm cũ kéo xuống
+		leaderboard.record(Map.of(IPHONE, 2L), LocalDateTime.ofInstant(now, ZoneOffset.UTC));
+		assertThat(leaderboard.topIds(BestSellerLeaderboard.Window.LAST_24H, 10)).containsExactly(IPHONE);
+		assertThat(leaderboard.topIds(BestSellerLeaderboard.Window.LAST_7D, 10)).containsExactly(IPHONE);
+	}
+
+	private void advanceHours(int hours) {
+		for (int i = 0; i < hours; i++) {
+			now = now.plus(Duration.ofHours(1));
+			leaderboard.setClock(Clock.fixed(now, ZoneOffset.UTC));
+			leaderboard.rollover();
+		}
+	}
+}
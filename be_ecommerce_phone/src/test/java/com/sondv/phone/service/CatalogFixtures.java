@@ -0,0 +1,62 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.*;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+
+// Dữ liệu danh mục dùng chung cho các test @DataJpaTest: danh mục, nhà cung cấp, sản phẩm kèm tồn kho
+final class CatalogFixtures {
+
+	private CatalogFixtures() {
+	}
+
+	// Xóa sản phẩm và dữ liệu phụ thuộc khi test chạy ngoài transaction nên dữ liệu đã commit thật
+	static void deleteCatalog(TestEntityManager entityManager) {
+		for (String entity : new String[]{"InventoryLog", "Inventory", "Product", "Supplier", "Category"}) {
+			entityManager.getEntityManager().createQuery("DELETE FROM " + entity).executeUpdate();
+		}
+	}
+
+	static Category persistCategory(TestEntityManager entityManager, String name) {
+		Category category = new Category();
+		category.setName(name);
+		return entityManager.persist(category);
+	}
+
+	static Supplier persistSupplier(TestEntityManager entityManager) {
+		Supplier supplier = new Supplier();
+		supplier.setName("FPT");
+		supplier.setEmail("fpt@example.com");
+		supplier.setPhone("0900000000");
+		supplier.setAddress("Hà Nội");
+		return entityManager.persist(supplier);
+	}
+
+	static Product newProduct(String name, int stock, Category category, Supplier supplier) {
+		Product product = new Product();
+		product.setName(name);
+		product.setCostPrice(BigDecimal.valueOf(10_000_000));
+		product.setSellingPrice(BigDecimal.valueOf(12_000_000));
+		product.setStock(stock);
+		product.setCategory(category);
+		product.setSupplier(supplier);
+		return product;
+	}
+
+	static Inventory persistInventory(TestEntityManager entityManager, Product product, int quantity) {
+		Inventory inventory = new Inventory();
+		inventory.setProduct(product);
+		inventory.setQuantity(quantity);
+		return entityManager.persist(inventory);
+	}
+
+	// Sản phẩm kèm dòng inventory cùng số lượng; category/supplier được nạp lại trong persistence context hiện tại
+	static Long persistProduct(TestEntityManager entityManager, String name, int stock, Category category, Supplier supplier) {
+		Product product = newProduct(name, stock,
+				entityManager.find(Category.class, category.getId()), entityManager.find(Supplier.class, supplier.getId()));
+		entityManager.persist(product);
+		persistInventory(entityManager, product, stock);
+		return product.getId();
+	}
+}
@@ -0,0 +1,46 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CatalogIndexServiceTest {
+
+	private final ProductRepository productRepository = mock(ProductRepository.class);
+	private final CatalogIndexService index = new CatalogIndexService(productRepository);
+
+	@Test
+	void changesArrivingWhileRebuildReadsTheCatalogAreKept() {
+		index.upsert(product(1L, "20000000"));
+		index.upsert(product(2L, "15000000"));
+
+		// Sự kiện sau commit đến giữa lúc đọc DB và lúc hoán đổi ảnh chụp
+		when(productRepository.findAll()).thenAnswer(invocation -> {
+			List<Product> read = List.of(product(1L, "20000000"), product(2L, "15000000"));
+			index.upsert(product(3L, "9000000"));
+			index.upsert(product(1L, "18000000"));
+			index.remove(2L);
+			return read;
+		});
+		index.rebuild();
+
+		CatalogIndexService.Result result = index.query(null, null, null, "priceAsc", 0, 10);
+		assertThat(result.ids()).containsExactly(3L, 1L);
+		assertThat(index.query(null, new BigDecimal("18000000"), new BigDecimal("18000000"), null, 0, 10).ids())
+				.containsExactly(1L);
+	}
+
+	private static Product product(Long id, String price) {
+		Product product = new Product();
+		product.setId(id);
+		product.setSellingPrice(new BigDecimal(price));
+		return product;
+	}
+}
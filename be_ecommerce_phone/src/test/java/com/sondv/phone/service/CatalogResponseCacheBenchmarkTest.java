@@ -0,0 +1,113 @@
+package com.sondv.phone.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sondv.phone.config.JacksonConfig;
+import com.sondv.phone.dto.ProductSummaryDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+// So sánh CPU cho mỗi request giữa đường cũ (đối tượng đã có trong Caffeine, Jackson + nén gzip mỗi lần)
+// và bộ đệm byte[] mã hóa sẵn. Phần đo chạy khi bật: mvn test -Dtest=CatalogResponseCacheBenchmarkTest -Dbenchmark=true
+class CatalogResponseCacheBenchmarkTest {
+
+	private static final int WIDGET_SIZE = 20;
+	private static final int WARMUP = 20_000;
+	private static final int ITERATIONS = 100_000;
+
+	private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+	private CatalogVersionService versionService;
+	private CatalogResponseCache cache;
+	private List<ProductSummaryDTO> widget;
+	private MockHttpServletRequest request;
+
+	@BeforeEach
+	void setUp() {
+		versionService = new CatalogVersionService(mock(ProductRankingIndex.class));
+		cache = new CatalogResponseCache(versionService, objectMapper, true);
+		widget = new ArrayList<>();
+		for (int i = 0; i < WIDGET_SIZE; i++) {
+			widget.add(new ProductSummaryDTO((long) i, "Điện thoại " + i, "Mô tả sản phẩm số " + i + " với màn hình lớn và pin bền",
+					BigDecimal.valueOf(10_000_000 + i * 1000L), i % 3 == 0 ? BigDecimal.valueOf(9_000_000) : null,
+					"https://res.cloudinary.com/demo/image/upload/phone-" + i + ".jpg", 4.5, 120 + i, 300 - i, i % 2 == 0, true));
+		}
+		request = new MockHttpServletRequest("GET", "/api/products/featured");
+		request.addHeader("Accept-Encoding", "gzip, deflate, br");
+	}
+
+	@Test
+	void servesSameJsonAsJacksonAndReloadsOnlyWhenVersionChanges() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		ResponseEntity<byte[]> first = cache.respond(CatalogVersionService.FEATURED, "", request, () -> {
+			loads.incrementAndGet();
+			return widget;
+		});
+		cache.respond(CatalogVersionService.FEATURED, "", request, () -> {
+			loads.incrementAndGet();
+			return widget;
+		});
+		assertThat(loads).hasValue(1);
+		assertThat(first.getHeaders().getFirst("Content-Encoding")).isEqualTo("gzip");
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(first.getBody()))) {
+			assertThat(in.readAllBytes()).isEqualTo(objectMapper.writeValueAsBytes(widget));
+		}
+
+		MockHttpServletRequest identity = new MockHttpServletRequest("GET", "/api/products/featured");
+		ResponseEntity<byte[]> plain = cache.respond(CatalogVersionService.FEATURED, "", identity, () -> widget);
+		assertThat(plain.getHeaders().getFirst("Content-Encoding")).isNull();
+		assertThat(plain.getBody()).isEqualTo(objectMapper.writeValueAsBytes(widget));
+
+		versionService.bump(CatalogVersionService.FEATURED);
+		cache.respond(CatalogVersionService.FEATURED, "", request, () -> {
+			loads.incrementAndGet();
+			return widget;
+		});
+		assertThat(loads).hasValue(2);
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void preEncodedBytesUseLessCpuThanSerializingEachRequest() throws Exception {
+		long serializeNanos = cpuNanosPerRequest(() -> CatalogResponseCache.gzip(objectMapper.writeValueAsBytes(widget)));
+		long cachedNanos = cpuNanosPerRequest(() -> cache.respond(CatalogVersionService.FEATURED, "", request, () -> widget).getBody());
+
+		System.out.printf("Jackson + gzip mỗi request: %,d ns CPU/request%n", serializeNanos);
+		System.out.printf("byte[] mã hóa sẵn:          %,d ns CPU/request (nhanh hơn %.1f lần)%n",
+				cachedNanos, (double) serializeNanos / Math.max(cachedNanos, 1));
+		assertThat(cachedNanos * 3).isLessThan(serializeNanos);
+	}
+
+	private static long cpuNanosPerRequest(Request request) throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long sink = 0;
+		for (int i = 0; i < WARMUP; i++) {
+			sink += request.body().length;
+		}
+		long start = threads.getCurrentThreadCpuTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			sink += request.body().length;
+		}
+		long elapsed = threads.getCurrentThreadCpuTime() - start;
+		assertThat(sink).isPositive();
+		return elapsed / ITERATIONS;
+	}
+
+	@FunctionalInterface
+	private interface Request {
+		byte[] body() throws Exception;
+	}
+}
@@ -0,0 +1,61 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.config.AppConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloudinaryServiceTest {
+
+	private static final int THREADS = 3;
+	private static final int IMAGE_SIZE = 256 * 1024;
+
+	private StubUploadServer uploadServer;
+	private CloudinaryService cloudinaryService;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		uploadServer = new StubUploadServer(100);
+		AppConfig appConfig = new AppConfig();
+		cloudinaryService = new CloudinaryService(
+				appConfig.restTemplate(Duration.ofSeconds(2), Duration.ofSeconds(5)), THREADS, 16, uploadServer.uploadUrl(), "preset");
+	}
+
+	@AfterEach
+	void tearDown() {
+		cloudinaryService.shutdown();
+		uploadServer.close();
+	}
+
+	@Test
+	void uploadsInParallelOnBoundedExecutor() {
+		List<MultipartFile> files = new ArrayList<>();
+		for (int i = 0; i < 9; i++) {
+			files.add(new MockMultipartFile("files", "image-" + i + ".jpg", "image/jpeg", new byte[IMAGE_SIZE]));
+		}
+
+		List<String> urls = cloudinaryService.uploadImagesToCloudinary(files);
+
+		assertThat(urls).hasSize(9).doesNotContainNull().allMatch(url -> url.startsWith("https://stub.local/"));
+		assertThat(uploadServer.requests()).isEqualTo(9);
+		assertThat(uploadServer.bytesReceived()).isGreaterThan(9L * IMAGE_SIZE);
+		// Chạy song song nhưng không vượt quá số luồng của executor
+		assertThat(uploadServer.peakInFlight()).isGreaterThan(1).isLessThanOrEqualTo(THREADS);
+	}
+
+	@Test
+	void failedUploadLeavesNullInPlace() {
+		uploadServer.close();
+		List<String> urls = cloudinaryService.uploadImagesToCloudinary(
+				List.of(new MockMultipartFile("files", "a.jpg", "image/jpeg", new byte[16])));
+		assertThat(urls).containsExactly((String) null);
+	}
+}
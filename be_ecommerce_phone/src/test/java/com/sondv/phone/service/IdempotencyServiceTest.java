@@ -0,0 +1,159 @@
+package com.sondv.phone.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sondv.phone.exception.ApiException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+// Chạy trên InMemoryIdempotencyStore (không có Redis); hai service dùng chung một store giả lập hai instance
+class IdempotencyServiceTest {
+
+	private static final String SCOPE = "order";
+	private static final Long USER_ID = 7L;
+	private static final String KEY = "a1b2c3";
+	private static final Map<String, Object> REQUEST = Map.of("productId", 1, "quantity", 2);
+
+	private final InMemoryIdempotencyStore store = new InMemoryIdempotencyStore();
+	private final IdempotencyService idempotencyService = newService(5_000);
+	private final ExecutorService pool = Executors.newFixedThreadPool(2);
+	private final AtomicInteger runs = new AtomicInteger();
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	void concurrentDuplicateWaitsForAndReplaysTheFirstResult() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		Future<ResponseEntity<?>> first = pool.submit(() -> idempotencyService.execute(SCOPE, USER_ID, KEY, REQUEST, () -> {
+			started.countDown();
+			await(proceed);
+			runs.incrementAndGet();
+			return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("orderId", 42));
+		}));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		Future<ResponseEntity<?>> duplicate = pool.submit(() -> idempotencyService.execute(SCOPE, USER_ID, KEY, REQUEST, () -> {
+			runs.incrementAndGet();
+			return ResponseEntity.ok("không được chạy");
+		}));
+		// Bản trùng phải đứng chờ chứ không tự chạy
+		Thread.sleep(100);
+		assertThat(duplicate).isNotDone();
+		proceed.countDown();
+
+		ResponseEntity<?> original = first.get(5, TimeUnit.SECONDS);
+		ResponseEntity<?> replayed = duplicate.get(5, TimeUnit.SECONDS);
+		assertThat(runs).hasValue(1);
+		assertThat(original.getHeaders().containsKey("Idempotent-Replayed")).isFalse();
+		assertThat(replayed.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(replayed.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+		assertThat(replayed.getBody()).isEqualTo("{\"orderId\":42}");
+
+		// Gửi lại sau khi đã xong cũng nhận lại phản hồi đã lưu
+		ResponseEntity<?> later = idempotencyService.execute(SCOPE, USER_ID, KEY, REQUEST, this::created);
+		assertThat(runs).hasValue(1);
+		assertThat(later.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+	}
+
+	@Test
+	void differentBodyWithTheSameKeyIsRejected() {
+		idempotencyService.execute(SCOPE, USER_ID, KEY, REQUEST, this::created);
+
+		assertThatThrownBy(() -> idempotencyService.execute(SCOPE, USER_ID, KEY,
+				Map.of("productId", 1, "quantity", 3), this::created))
+				.isInstanceOfSatisfying(ApiException.class, e -> assertThat(e.getStatus()).isEqualTo(422));
+		assertThat(runs).hasValue(1);
+	}
+
+	@Test
+	void errorResponseReleasesTheKeySoTheRetryRunsAgain() {
+		ResponseEntity<?> rejected = idempotencyService.execute(SCOPE, USER_ID, KEY, REQUEST, () -> {
+			runs.incrementAndGet();
+			return ResponseEntity.badRequest().body(Map.of("message", "Hết hàng"));
+		});
+		assertThat(rejected.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+
+		ResponseEntity<?> retried = idempotencyService.execute(SCOPE, USER_ID, KEY, REQUEST, this::created);
+		assertThat(runs).hasValue(2);
+		assertThat(retried.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(retried.getHeaders().containsKey("Idempotent-Replayed")).isFalse();
+	}
+
+	@Test
+	void exceptionReleasesTheKeySoTheRetryRunsAgain() {
+		assertThatThrownBy(() -> idempotencyService.execute(SCOPE, USER_ID, KEY, REQUEST, () -> {
+			runs.incrementAndGet();
+			throw new IllegalStateException("Không đủ tồn kho");
+		})).isInstanceOf(IllegalStateException.class);
+
+		ResponseEntity<?> retried = idempotencyService.execute(SCOPE, USER_ID, KEY, REQUEST, this::created);
+		assertThat(runs).hasValue(2);
+		assertThat(retried.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+	}
+
+	@Test
+	void waitingPastTheTimeoutReturnsConflict() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		Future<ResponseEntity<?>> first = pool.submit(() -> idempotencyService.execute(SCOPE, USER_ID, KEY, REQUEST, () -> {
+			started.countDown();
+			await(proceed);
+			return created();
+		}));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		try {
+			// Cùng instance: chờ future của yêu cầu đang chạy
+			ReflectionTestUtils.setField(idempotencyService, "waitTimeoutMillis", 200L);
+			assertThatThrownBy(() -> idempotencyService.execute(SCOPE, USER_ID, KEY, REQUEST, this::created))
+					.isInstanceOfSatisfying(ApiException.class, e -> assertThat(e.getStatus()).isEqualTo(409));
+
+			// Instance khác: thăm dò bản ghi đang xử lý trong store chung
+			IdempotencyService otherInstance = newService(200);
+			assertThatThrownBy(() -> otherInstance.execute(SCOPE, USER_ID, KEY, REQUEST, this::created))
+					.isInstanceOfSatisfying(ApiException.class, e -> assertThat(e.getStatus()).isEqualTo(409));
+		} finally {
+			proceed.countDown();
+		}
+		assertThat(first.get(5, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(runs).hasValue(1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private IdempotencyService newService(long waitTimeoutMillis) {
+		IdempotencyService service = new IdempotencyService(mock(ObjectProvider.class), new ObjectMapper());
+		ReflectionTestUtils.setField(service, "store", store);
+		ReflectionTestUtils.setField(service, "ttlSeconds", 900L);
+		ReflectionTestUtils.setField(service, "inFlightTtlSeconds", 60L);
+		ReflectionTestUtils.setField(service, "waitTimeoutMillis", waitTimeoutMillis);
+		return service;
+	}
+
+	private ResponseEntity<?> created() {
+		runs.incrementAndGet();
+		return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("orderId", runs.get()));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.*;
+import com.sondv.phone.repository.InventoryLogRepository;
+import com.sondv.phone.repository.InventoryRepository;
+import com.sondv.phone.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Chạy không bọc transaction của test để mỗi luồng commit thật và tranh chấp khóa dòng trên cùng một CSDL H2
+@DataJpaTest(properties = {
+		"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+		"spring.datasource.url=jdbc:h2:mem:inventory-reservation;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ActiveProfiles("test")
+@Import({InventoryService.class, StockReservationLedger.class})
+class InventoryReservationTest {
+
+	private static final int STOCK = 10;
+	private static final int BUYERS = 40;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private InventoryService inventoryService;
+
+	@Autowired
+	private InventoryRepository inventoryRepository;
+
+	@Autowired
+	private InventoryLogRepository inventoryLogRepository;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@MockBean
+	private NotificationService notificationService;
+
+	private TransactionTemplate transactionTemplate;
+	private Category category;
+	private Supplier supplier;
+
+	@BeforeEach
+	void setUp() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.executeWithoutResult(status -> {
+			CatalogFixtures.deleteCatalog(entityManager);
+			category = CatalogFixtures.persistCategory(entityManager, "Điện thoại");
+			supplier = CatalogFixtures.persistSupplier(entityManager);
+		});
+	}
+
+	@Test
+	void concurrentCheckoutsNeverSellMoreThanStock() throws Exception {
+		Long productId = persistProduct("iPhone 15", STOCK);
+
+		ExecutorService pool = Executors.newFixedThreadPool(BUYERS);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger sold = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+		List<Future<?>> buyers = IntStream.range(0, BUYERS)
+				.mapToObj(i -> pool.submit(() -> {
+					start.await();
+					try {
+						transactionTemplate.executeWithoutResult(status ->
+								inventoryService.reserveStock(Map.of(productId, 1), "Tạo đơn hàng", (long) i));
+						sold.incrementAndGet();
+					} catch (IllegalStateException e) {
+						rejected.incrementAndGet();
+					}
+					return null;
+				}))
+				.collect(Collectors.toList());
+		start.countDown();
+		for (Future<?> buyer : buyers) {
+			buyer.get(30, TimeUnit.SECONDS);
+		}
+		pool.shutdown();
+
+		assertThat(sold).hasValue(STOCK);
+		assertThat(rejected).hasValue(BUYERS - STOCK);
+		assertThat(inventoryRepository.findByProductId(productId)).get()
+				.extracting(Inventory::getQuantity).isEqualTo(0);
+		assertThat(productRepository.findById(productId)).get()
+				.extracting(Product::getStock).isEqualTo(0);
+
+		// Mỗi lần giữ hàng thành công để lại đúng một dòng nhật ký, các lần trừ nối tiếp nhau 10 -> 9 -> ... -> 0
+		List<InventoryLog> logs = inventoryLogRepository.findByProductId(productId);
+		assertThat(logs).hasSize(STOCK);
+		assertThat(logs).allSatisfy(log -> assertThat(log.getOldQuantity() - log.getNewQuantity()).isEqualTo(1));
+		assertThat(logs.stream().map(InventoryLog::getNewQuantity))
+				.containsExactlyInAnyOrderElementsOf(IntStream.range(0, STOCK).boxed().toList());
+	}
+
+	@Test
+	void shortItemRollsBackTheWholeOrder() {
+		Long available = persistProduct("Samsung S24", 5);
+		Long soldOut = persistProduct("Pixel 8", 0);
+
+		assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status ->
+				inventoryService.reserveStock(Map.of(available, 2, soldOut, 1), "Tạo đơn hàng", 1L)))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("Pixel 8");
+
+		assertThat(inventoryRepository.findByProductId(available)).get()
+				.extracting(Inventory::getQuantity).isEqualTo(5);
+		assertThat(inventoryLogRepository.findByProductId(available)).isEmpty();
+	}
+
+	private Long persistProduct(String name, int stock) {
+		return transactionTemplate.execute(status ->
+				CatalogFixtures.persistProduct(entityManager, name, stock, category, supplier));
+	}
+}
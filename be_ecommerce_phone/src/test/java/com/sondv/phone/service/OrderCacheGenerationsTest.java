@@ -0,0 +1,42 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.RoleName;
+import com.sondv.phone.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderCacheGenerationsTest {
+
+	private final OrderCacheGenerations generations = new OrderCacheGenerations();
+
+	@Test
+	void changingAnOrderOnlyInvalidatesItsOwnerAndAdminViews() {
+		User owner = user(1L, RoleName.CUSTOMER);
+		User other = user(2L, RoleName.CUSTOMER);
+		User admin = user(3L, RoleName.ADMIN);
+		User staff = user(4L, RoleName.STAFF);
+		String ownerKey = generations.key(owner);
+		String otherKey = generations.key(other);
+		String adminKey = generations.key(admin);
+
+		// ADMIN và STAFF xem cùng một danh sách nên dùng chung khóa
+		assertThat(generations.key(staff)).isEqualTo(adminKey);
+		assertThat(ownerKey).isNotEqualTo(otherKey);
+
+		generations.bump(owner.getId());
+
+		assertThat(generations.key(owner)).isNotEqualTo(ownerKey);
+		assertThat(generations.key(admin)).isNotEqualTo(adminKey);
+		assertThat(generations.key(other)).isEqualTo(otherKey);
+	}
+
+	private static User user(Long id, RoleName role) {
+		User user = new User();
+		user.setId(id);
+		user.setRoles(Set.of(role));
+		return user;
+	}
+}
@@ -0,0 +1,151 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.dto.OrderRequest;
+import com.sondv.phone.entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Số câu lệnh SQL của createOrder không được tăng theo số dòng trong giỏ. Đếm ở DataSource vì các lô JDBC
+// (trừ kho, order_details) không đi qua Hibernate nên thống kê của Hibernate không thấy
+@DataJpaTest(properties = {
+		"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.show-sql=false"
+})
+@ActiveProfiles("test")
+@Import({OrderService.class, InventoryService.class, StockReservationLedger.class, ShippingService.class,
+		OrderCacheGenerations.class, OrderCheckoutStatementCountTest.CountingDataSourceConfig.class})
+class OrderCheckoutStatementCountTest {
+
+	private static final int PRODUCTS = 10;
+	private static final AtomicLong STATEMENTS = new AtomicLong();
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private OrderService orderService;
+
+	@MockBean
+	private NotificationService notificationService;
+
+	@MockBean
+	private BestSellerLeaderboard bestSellerLeaderboard;
+
+	private final List<Long> productIds = new ArrayList<>();
+	private User user;
+
+	@BeforeEach
+	void setUp() {
+		Category category = CatalogFixtures.persistCategory(entityManager, "Điện thoại");
+		Supplier supplier = CatalogFixtures.persistSupplier(entityManager);
+		for (int i = 0; i < PRODUCTS; i++) {
+			Product product = entityManager.persist(CatalogFixtures.newProduct("Điện thoại " + i, 100, category, supplier));
+			CatalogFixtures.persistInventory(entityManager, product, 100);
+			productIds.add(product.getId());
+		}
+
+		user = new User();
+		user.setFullName("Khách");
+		user.setEmail("khach@example.com");
+		user.setPassword("x");
+		user.setRoles(new HashSet<>(Set.of(RoleName.CUSTOMER)));
+		entityManager.persist(user);
+		Customer customer = new Customer();
+		customer.setUser(user);
+		entityManager.persist(customer);
+		entityManager.flush();
+	}
+
+	@Test
+	void checkoutStatementsDoNotGrowWithCartLines() {
+		long oneLine = statementsFor(1);
+		long tenLines = statementsFor(PRODUCTS);
+
+		// khách hàng + user (EAGER) + sản phẩm (IN) + 3 lô trừ kho + đơn + order_details (một lô) + vận chuyển + thanh toán
+		assertThat(oneLine).isLessThanOrEqualTo(10);
+		assertThat(tenLines).isEqualTo(oneLine);
+		assertThat(entityManager.getEntityManager()
+				.createQuery("SELECT COUNT(d) FROM OrderDetail d", Long.class).getSingleResult())
+				.isEqualTo(1L + PRODUCTS);
+	}
+
+	private long statementsFor(int lines) {
+		OrderRequest request = new OrderRequest();
+		request.setProductIds(productIds.subList(0, lines));
+		request.setQuantities(Collections.nCopies(lines, 1));
+		request.setAddress("Hà Nội");
+		request.setPhoneNumber("0900000000");
+		request.setCarrier("GHN");
+
+		entityManager.clear();
+		STATEMENTS.set(0);
+		Order order = orderService.createOrder(user, request);
+		entityManager.flush();
+		long statements = STATEMENTS.get();
+
+		assertThat(order.getOrderDetails()).hasSize(lines).allSatisfy(detail -> assertThat(detail.getId()).isNotNull());
+		return statements;
+	}
+
+	// Bọc DataSource để đếm mọi câu lệnh được chuẩn bị trên kết nối, một lô JDBC tính là một câu
+	@TestConfiguration
+	static class CountingDataSourceConfig {
+
+		@Bean
+		static BeanPostProcessor countingDataSource() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					if (!(bean instanceof DataSource)) {
+						return bean;
+					}
+					return proxy(bean, (method, result) -> method.getName().equals("getConnection")
+							? proxy(result, (connectionMethod, statement) -> {
+								if (connectionMethod.getName().startsWith("prepare")
+										|| connectionMethod.getName().equals("createStatement")) {
+									STATEMENTS.incrementAndGet();
+								}
+								return statement;
+							})
+							: result);
+				}
+			};
+		}
+
+		private static Object proxy(Object target, ResultMapper mapper) {
+			return Proxy.newProxyInstance(target.getClass().getClassLoader(), ClassUtils.getAllInterfaces(target),
+					(proxy, method, args) -> {
+						try {
+							return mapper.map(method, method.invoke(target, args));
+						} catch (InvocationTargetException e) {
+							throw e.getTargetException();
+						}
+					});
+		}
+
+		@FunctionalInterface
+		private interface ResultMapper {
+			Object map(Method method, Object result);
+		}
+	}
+}
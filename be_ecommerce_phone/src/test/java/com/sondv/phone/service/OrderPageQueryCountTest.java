@@ -0,0 +1,182 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.dto.OrderDetailResponse;
+import com.sondv.phone.dto.OrderResponse;
+import com.sondv.phone.entity.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Số câu lệnh SQL để dựng một trang OrderResponse không được tăng theo số đơn trong trang
+@DataJpaTest(properties = {
+		"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"spring.jpa.show-sql=false"
+})
+@ActiveProfiles("test")
+@Import({OrderService.class, InventoryService.class, StockReservationLedger.class, ShippingService.class,
+		OrderCacheGenerations.class})
+class OrderPageQueryCountTest {
+
+	private static final int ORDERS = 20;
+	private static final int CUSTOMERS = 5;
+	private static final int PRODUCTS = 10;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private OrderService orderService;
+
+	@MockBean
+	private NotificationService notificationService;
+
+	@MockBean
+	private BestSellerLeaderboard bestSellerLeaderboard;
+
+	private Statistics statistics;
+	private User admin;
+	private User firstCustomer;
+
+	@BeforeEach
+	void setUp() {
+		statistics = entityManager.getEntityManager().getEntityManagerFactory()
+				.unwrap(SessionFactory.class).getStatistics();
+
+		Category category = CatalogFixtures.persistCategory(entityManager, "Điện thoại");
+		Supplier supplier = CatalogFixtures.persistSupplier(entityManager);
+
+		List<Product> products = new ArrayList<>();
+		for (int i = 0; i < PRODUCTS; i++) {
+			Product product = entityManager.persist(CatalogFixtures.newProduct("Điện thoại " + i, 100, category, supplier));
+			for (int j = 0; j < 2; j++) {
+				entityManager.persist(new ProductImage(null, "https://img/" + i + "-" + j + ".jpg", product));
+			}
+			products.add(product);
+		}
+
+		List<Customer> customers = new ArrayList<>();
+		for (int i = 0; i < CUSTOMERS; i++) {
+			User user = new User();
+			user.setFullName("Khách " + i);
+			user.setEmail("khach" + i + "@example.com");
+			user.setPassword("x");
+			user.setRoles(new HashSet<>(Set.of(RoleName.CUSTOMER)));
+			entityManager.persist(user);
+			Customer customer = new Customer();
+			customer.setUser(user);
+			entityManager.persist(customer);
+			customers.add(customer);
+		}
+		firstCustomer = customers.get(0).getUser();
+
+		for (int i = 0; i < ORDERS; i++) {
+			Order order = new Order();
+			order.setCustomer(customers.get(i % CUSTOMERS));
+			order.setTotalPrice(BigDecimal.valueOf(24_000_000));
+			order.setShippingFee(BigDecimal.valueOf(30_000));
+			order.setCreatedAt(LocalDateTime.now().minusMinutes(i));
+			entityManager.persist(order);
+
+			for (int j = 0; j < 2; j++) {
+				OrderDetail detail = new OrderDetail();
+				detail.setOrder(order);
+				detail.setProduct(products.get((i + j) % PRODUCTS));
+				detail.setQuantity(1);
+				detail.setPrice(BigDecimal.valueOf(12_000_000));
+				entityManager.persist(detail);
+				if (j == 0) {
+					Review review = new Review();
+					review.setOrderDetail(detail);
+					review.setRating(5);
+					review.setComment("Tốt");
+					entityManager.persist(review);
+				}
+			}
+
+			ShippingInfo shippingInfo = new ShippingInfo();
+			shippingInfo.setOrder(order);
+			shippingInfo.setAddress("Hà Nội");
+			shippingInfo.setPhoneNumber("0900000000");
+			shippingInfo.setCarrier("GHN");
+			shippingInfo.setShippingFee(BigDecimal.valueOf(30_000));
+			entityManager.persist(shippingInfo);
+
+			Payment payment = new Payment();
+			payment.setOrder(order);
+			payment.setPaymentMethod(PaymentMethod.COD);
+			payment.setStatus(i % 2 == 0 ? PaymentStatus.PAID : PaymentStatus.PENDING);
+			entityManager.persist(payment);
+		}
+
+		admin = new User();
+		admin.setId(-1L);
+		admin.setRoles(Set.of(RoleName.ADMIN));
+		entityManager.flush();
+	}
+
+	@Test
+	void adminPageUsesConstantNumberOfStatements() {
+		long smallPage = statementsFor(admin, 5);
+		Page<OrderResponse> page = loadPage(admin, ORDERS);
+		long fullPage = statistics.getPrepareStatementCount();
+
+		// id của trang + COUNT + đơn + chi tiết + ảnh đầu tiên
+		assertThat(fullPage).isLessThanOrEqualTo(5);
+		assertThat(fullPage).isEqualTo(smallPage);
+
+		assertThat(page.getTotalElements()).isEqualTo(ORDERS);
+		assertThat(page.getContent()).hasSize(ORDERS);
+		assertThat(page.getContent()).isSortedAccordingTo(
+				Comparator.comparing(OrderResponse::getCreatedAt).reversed());
+		assertThat(page.getContent()).allSatisfy(order -> {
+			assertThat(order.getCustomer().getFullName()).startsWith("Khách");
+			assertThat(order.getShippingInfo().getCarrier()).isEqualTo("GHN");
+			assertThat(order.getPayment()).isNotNull();
+			assertThat(order.getPaymentMethod()).isEqualTo("COD");
+			assertThat(order.getOrderDetails()).hasSize(2);
+			assertThat(order.getOrderDetails()).extracting(OrderDetailResponse::getProductImage)
+					.allSatisfy(url -> assertThat(url).endsWith("-0.jpg"));
+			assertThat(order.getOrderDetails().get(0).getReview().getRating()).isEqualTo(5);
+			assertThat(order.getOrderDetails().get(1).getReview()).isNull();
+		});
+	}
+
+	@Test
+	void customerPageOnlyAddsTheCustomerLookup() {
+		long statements = statementsFor(firstCustomer, 20);
+		Page<OrderResponse> page = loadPage(firstCustomer, 20);
+
+		// Tra khách hàng tốn hai câu (customers + users EAGER); trang chưa đầy nên không cần COUNT
+		assertThat(statements).isLessThanOrEqualTo(6);
+		assertThat(page.getContent()).hasSize(ORDERS / CUSTOMERS);
+		assertThat(page.getContent()).allSatisfy(order ->
+				assertThat(order.getCustomer().getFullName()).isEqualTo("Khách 0"));
+	}
+
+	private long statementsFor(User user, int size) {
+		loadPage(user, size);
+		return statistics.getPrepareStatementCount();
+	}
+
+	private Page<OrderResponse> loadPage(User user, int size) {
+		entityManager.clear();
+		statistics.clear();
+		return orderService.getPaginatedOrders(user, 1, size, "createdAt", "desc",
+				null, null, null, null, null, null);
+	}
+}
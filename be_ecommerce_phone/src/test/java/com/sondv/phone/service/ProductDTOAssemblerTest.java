@@ -0,0 +1,115 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.dto.ProductDTO;
+import com.sondv.phone.entity.*;
+import com.sondv.phone.repository.ProductRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"spring.jpa.show-sql=false"
+})
+@ActiveProfiles("test")
+@Import(ProductDTOAssembler.class)
+class ProductDTOAssemblerTest {
+
+	private static final int PAGE_SIZE = 20;
+
+	// Truy vấn trang (kèm category, supplier, inventory) + COUNT tổng + đếm theo danh mục + ảnh
+	private static final long MAX_STATEMENTS_PER_PAGE = 4;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private ProductDTOAssembler productDTOAssembler;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		Category phones = CatalogFixtures.persistCategory(entityManager, "Điện thoại");
+		Category tablets = CatalogFixtures.persistCategory(entityManager, "Máy tính bảng");
+		Supplier supplier = CatalogFixtures.persistSupplier(entityManager);
+
+		for (int i = 0; i < PAGE_SIZE; i++) {
+			Product product = CatalogFixtures.newProduct("Sản phẩm " + i, 10, i % 2 == 0 ? phones : tablets, supplier);
+			product.setCostPrice(BigDecimal.valueOf(1_000_000));
+			product.setSellingPrice(BigDecimal.valueOf(1_500_000 + i));
+			entityManager.persist(product);
+
+			for (int j = 0; j < 2; j++) {
+				ProductImage image = new ProductImage();
+				image.setImageUrl("https://img.example.com/" + i + "-" + j + ".jpg");
+				image.setProduct(product);
+				entityManager.persist(image);
+			}
+
+			CatalogFixtures.persistInventory(entityManager, product, 10);
+
+			for (int j = 0; j < 3; j++) {
+				InventoryLog log = new InventoryLog();
+				log.setProduct(product);
+				log.setOldQuantity(j);
+				log.setNewQuantity(j + 1);
+				log.setReason("Nhập kho");
+				log.setUserId(1L);
+				entityManager.persist(log);
+			}
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		statistics = entityManager.getEntityManager().getEntityManagerFactory()
+				.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void pageAssemblyUsesFixedNumberOfStatements() {
+		Page<Product> page = productRepository.findAll(PageRequest.of(0, PAGE_SIZE));
+		List<ProductDTO> dtos = productDTOAssembler.toDTOs(page.getContent());
+
+		assertThat(dtos).hasSize(PAGE_SIZE);
+		assertThat(dtos).allSatisfy(dto -> {
+			assertThat(dto.getImages()).hasSize(2);
+			assertThat(dto.getCategory().getProductCount()).isEqualTo(PAGE_SIZE / 2);
+			assertThat(dto.getSupplier().getName()).isEqualTo("FPT");
+			assertThat(dto.getInventory().getQuantity()).isEqualTo(10);
+			assertThat(dto.getInventoryLogs()).isNull();
+		});
+		assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+	}
+
+	@Test
+	void statementCountDoesNotGrowWithPageSize() {
+		productDTOAssembler.toDTOs(productRepository.findAll(PageRequest.of(0, 5)).getContent());
+		long smallPage = statistics.getPrepareStatementCount();
+
+		entityManager.clear();
+		statistics.clear();
+		productDTOAssembler.toDTOs(productRepository.findAll(PageRequest.of(0, PAGE_SIZE)).getContent());
+		long fullPage = statistics.getPrepareStatementCount();
+
+		assertThat(fullPage).isEqualTo(smallPage);
+	}
+}
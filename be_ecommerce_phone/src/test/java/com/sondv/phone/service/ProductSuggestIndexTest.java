@@ -0,0 +1,46 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.dto.ProductSuggestionDTO;
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductSuggestIndexTest {
+
+	private final ProductRepository productRepository = mock(ProductRepository.class);
+	private final ProductSuggestIndex index = new ProductSuggestIndex(productRepository);
+
+	@Test
+	void changesArrivingWhileRebuildReadsTheCatalogAreKept() {
+		// Sự kiện sau commit đến giữa lúc đọc DB và lúc hoán đổi trie
+		when(productRepository.findAllIdNameAndSoldQuantity()).thenAnswer(invocation -> {
+			List<Object[]> rows = new ArrayList<>();
+			rows.add(new Object[]{1L, "Samsung Galaxy S24", 5});
+			rows.add(new Object[]{2L, "Samsung Galaxy A55", 3});
+			index.upsert(product(3L, "Samsung Galaxy Z Fold6", 1));
+			index.remove(2L);
+			index.upsert(product(1L, "Samsung Galaxy S24 Ultra", 5));
+			return rows;
+		});
+		index.rebuild();
+
+		assertThat(index.suggest("samsung", 10)).extracting(ProductSuggestionDTO::getId).containsExactly(1L, 3L);
+		assertThat(index.suggest("ultra", 10)).extracting(ProductSuggestionDTO::getId).containsExactly(1L);
+		assertThat(index.suggest("a55", 10)).isEmpty();
+	}
+
+	private static Product product(Long id, String name, int soldQuantity) {
+		Product product = new Product();
+		product.setId(id);
+		product.setName(name);
+		product.setSoldQuantity(soldQuantity);
+		return product;
+	}
+}
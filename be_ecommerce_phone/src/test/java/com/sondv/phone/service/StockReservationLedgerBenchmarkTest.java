@@ -0,0 +1,267 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.*;
+import com.sondv.phone.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Sổ giữ hàng bật sẵn, luồng gộp theo lịch bị đẩy ra xa để test tự gọi flush(). Phần so sánh với đường trừ kho
+// trực tiếp trên dòng inventory chạy khi bật: mvn test -Dtest=StockReservationLedgerBenchmarkTest -Dbenchmark=true
+@DataJpaTest(properties = {
+		"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+		"spring.datasource.url=jdbc:h2:mem:stock-ledger;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.show-sql=false",
+		"inventory.ledger.enabled=true",
+		"inventory.ledger.flush-interval-ms=3600000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ActiveProfiles("test")
+@Import({InventoryService.class, StockReservationLedger.class})
+class StockReservationLedgerBenchmarkTest {
+
+	private static final int STOCK = 10;
+	private static final int BUYERS = 40;
+	private static final int THREADS = 32;
+	private static final int ORDERS = 4_000;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private InventoryService inventoryService;
+
+	@Autowired
+	private StockReservationLedger ledger;
+
+	@Autowired
+	private InventoryRepository inventoryRepository;
+
+	@Autowired
+	private InventoryLogRepository inventoryLogRepository;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private StockLedgerRepository stockLedgerRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@MockBean
+	private NotificationService notificationService;
+
+	private TransactionTemplate transactionTemplate;
+	private Category category;
+	private Supplier supplier;
+
+	@BeforeEach
+	void setUp() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.executeWithoutResult(status -> {
+			stockLedgerRepository.deleteAllInBatch();
+			CatalogFixtures.deleteCatalog(entityManager);
+			category = CatalogFixtures.persistCategory(entityManager, "Điện thoại");
+			supplier = CatalogFixtures.persistSupplier(entityManager);
+		});
+		ledger.reconcile();
+	}
+
+	@Test
+	void concurrentReservationsNeverOversellAndFlushWritesNetDelta() throws Exception {
+		Long productId = persistProduct("iPhone 15", STOCK);
+
+		AtomicInteger sold = new AtomicInteger();
+		runConcurrently(BUYERS, BUYERS, i -> {
+			try {
+				transactionTemplate.executeWithoutResult(status ->
+						inventoryService.reserveStock(Map.of(productId, 1), "Tạo đơn hàng", (long) i));
+				sold.incrementAndGet();
+			} catch (IllegalStateException e) {
+				// hết hàng
+			}
+		});
+
+		assertThat(sold).hasValue(STOCK);
+		assertThat(ledger.available(productId)).isZero();
+		// Chưa gộp: dòng inventory chưa bị chạm, bút toán nằm trong stock_ledger
+		assertThat(inventoryRepository.findByProductId(productId)).get()
+				.extracting(Inventory::getQuantity).isEqualTo(STOCK);
+		assertThat(stockLedgerRepository.count()).isEqualTo(STOCK);
+
+		ledger.flush();
+
+		assertThat(stockLedgerRepository.count()).isZero();
+		assertThat(inventoryRepository.findByProductId(productId)).get()
+				.extracting(Inventory::getQuantity).isEqualTo(0);
+		assertThat(productRepository.findById(productId)).get()
+				.extracting(Product::getStock).isEqualTo(0);
+		List<InventoryLog> logs = inventoryLogRepository.findByProductId(productId);
+		assertThat(logs).hasSize(STOCK);
+		assertThat(logs).allSatisfy(log -> assertThat(log.getOldQuantity() - log.getNewQuantity()).isEqualTo(1));
+		assertThat(logs.stream().map(InventoryLog::getNewQuantity))
+				.containsExactlyInAnyOrderElementsOf(IntStream.range(0, STOCK).boxed().toList());
+	}
+
+	@Test
+	void rolledBackOrderReturnsItsReservation() {
+		Long productId = persistProduct("Samsung S24", 5);
+
+		transactionTemplate.executeWithoutResult(status -> {
+			inventoryService.reserveStock(Map.of(productId, 2), "Tạo đơn hàng", 1L);
+			status.setRollbackOnly();
+		});
+
+		assertThat(ledger.available(productId)).isEqualTo(5);
+		assertThat(stockLedgerRepository.count()).isZero();
+	}
+
+	@Test
+	void stockEditKeepsReservationsThatAreStillInFlight() {
+		Long productId = persistProduct("iPhone 15 Pro", 5);
+		// Đơn đang giữ 2 chiếc, transaction của đơn chưa kết thúc
+		SortedMap<Long, Integer> inFlight = new TreeMap<>(Map.of(productId, 2));
+		assertThat(ledger.tryReserve(inFlight)).isNull();
+
+		// Admin sửa tồn kho 5 -> 8 như ProductService.updateProduct
+		transactionTemplate.executeWithoutResult(status -> {
+			assertThat(ledger.adjust(productId, 3)).isTrue();
+			Inventory inventory = inventoryRepository.findByProductIdForUpdate(productId).orElseThrow();
+			inventory.setQuantity(8);
+			inventoryRepository.save(inventory);
+		});
+		assertThat(ledger.available(productId)).isEqualTo(6);
+
+		// Không được hạ tồn kho xuống dưới phần đơn đang giữ
+		transactionTemplate.executeWithoutResult(status ->
+				assertThat(ledger.adjust(productId, -7)).isFalse());
+		assertThat(ledger.available(productId)).isEqualTo(6);
+
+		// Đơn rollback trả lại đúng 2 chiếc, không thổi phồng tồn kho
+		ledger.release(inFlight);
+		assertThat(ledger.available(productId)).isEqualTo(8);
+		ledger.reconcile();
+		assertThat(ledger.available(productId)).isEqualTo(8);
+	}
+
+	@Test
+	void reconcileAppliesEntriesLeftByACrash() {
+		Long productId = persistProduct("Pixel 8", 5);
+		// Bút toán đã commit cùng đơn nhưng tiến trình dừng trước khi kịp gộp
+		transactionTemplate.executeWithoutResult(status ->
+				stockLedgerRepository.append(new TreeMap<>(Map.of(productId, 2)), "Tạo đơn hàng", 1L));
+
+		ledger.reconcile();
+
+		assertThat(stockLedgerRepository.count()).isZero();
+		assertThat(inventoryRepository.findByProductId(productId)).get()
+				.extracting(Inventory::getQuantity).isEqualTo(3);
+		assertThat(ledger.available(productId)).isEqualTo(3);
+		assertThat(inventoryLogRepository.findByProductId(productId)).singleElement()
+				.satisfies(log -> {
+					assertThat(log.getOldQuantity()).isEqualTo(5);
+					assertThat(log.getNewQuantity()).isEqualTo(3);
+				});
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void ledgerOutperformsRowLockUnderContention() throws Exception {
+		Long direct = persistProduct("Hot SKU (trừ trực tiếp)", ORDERS);
+		Long ledgered = persistProduct("Hot SKU (sổ giữ hàng)", ORDERS);
+		ledger.reconcile();
+		SortedMap<Long, Integer> directItem = new TreeMap<>(Map.of(direct, 1));
+
+		// Đường hiện tại: UPDATE có điều kiện trên dòng inventory + đồng bộ products + nhật ký, giữ khóa dòng đến commit
+		long[] directLatency = new long[ORDERS];
+		long directNanos = runConcurrently(THREADS, ORDERS, i -> {
+			long start = System.nanoTime();
+			transactionTemplate.executeWithoutResult(status -> {
+				assertThat(inventoryRepository.decrementIfAvailable(directItem, "Tạo đơn hàng", 1L)).isEmpty();
+				productRepository.findAllById(directItem.keySet());
+			});
+			directLatency[i] = System.nanoTime() - start;
+		});
+
+		long[] ledgerLatency = new long[ORDERS];
+		long ledgerNanos = runConcurrently(THREADS, ORDERS, i -> {
+			long start = System.nanoTime();
+			transactionTemplate.executeWithoutResult(status ->
+					inventoryService.reserveStock(Map.of(ledgered, 1), "Tạo đơn hàng", 1L));
+			ledgerLatency[i] = System.nanoTime() - start;
+		});
+		long flushStart = System.nanoTime();
+		ledger.flush();
+		long flushNanos = System.nanoTime() - flushStart;
+
+		assertThat(inventoryRepository.findByProductId(direct)).get().extracting(Inventory::getQuantity).isEqualTo(0);
+		assertThat(inventoryRepository.findByProductId(ledgered)).get().extracting(Inventory::getQuantity).isEqualTo(0);
+
+		report("Trừ trực tiếp trên dòng inventory", directNanos, directLatency);
+		report("Sổ giữ hàng + ghi bút toán     ", ledgerNanos, ledgerLatency);
+		System.out.printf("Gộp %,d bút toán vào CSDL: %,d ms%n", ORDERS, flushNanos / 1_000_000);
+		assertThat(ledgerNanos).isLessThan(directNanos);
+	}
+
+	private static void report(String label, long elapsedNanos, long[] latency) {
+		long[] sorted = latency.clone();
+		Arrays.sort(sorted);
+		System.out.printf("%s: %,.0f đơn/giây, p50 %,d µs, p99 %,d µs%n", label,
+				ORDERS * 1e9 / elapsedNanos, sorted[sorted.length / 2] / 1000, sorted[sorted.length * 99 / 100] / 1000);
+	}
+
+	private static long runConcurrently(int threads, int tasks, Task task) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>(tasks);
+		for (int i = 0; i < tasks; i++) {
+			int index = i;
+			futures.add(pool.submit(() -> {
+				start.await();
+				task.run(index);
+				return null;
+			}));
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(60, TimeUnit.SECONDS);
+		}
+		long elapsed = System.nanoTime() - begin;
+		pool.shutdown();
+		return elapsed;
+	}
+
+	@FunctionalInterface
+	private interface Task {
+		void run(int index);
+	}
+
+	private Long persistProduct(String name, int stock) {
+		return transactionTemplate.execute(status ->
+				CatalogFixtures.persistProduct(entityManager, name, stock, category, supplier));
+	}
+}
@@ -0,0 +1,70 @@
+package com.sondv.phone.service;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Máy chủ upload giả thay cho Cloudinary khi test: nhận multipart, giữ chậm mỗi request một chút rồi trả {"url": ...}.
+// Dùng: CLOUDINARY_UPLOAD_URL=server.uploadUrl()
+class StubUploadServer implements AutoCloseable {
+
+	private final HttpServer server;
+	private final long delayMillis;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+	private final AtomicLong bytesReceived = new AtomicLong();
+
+	StubUploadServer(long delayMillis) throws IOException {
+		this.delayMillis = delayMillis;
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+		server.createContext("/upload", exchange -> {
+			int current = inFlight.incrementAndGet();
+			peakInFlight.accumulateAndGet(current, Math::max);
+			try (InputStream body = exchange.getRequestBody()) {
+				bytesReceived.addAndGet(body.transferTo(OutputStream.nullOutputStream()));
+				Thread.sleep(this.delayMillis);
+				int n = requests.incrementAndGet();
+				byte[] response = ("{\"url\":\"https://stub.local/image-" + n + ".jpg\"}").getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, response.length);
+				exchange.getResponseBody().write(response);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				exchange.sendResponseHeaders(500, -1);
+			} finally {
+				inFlight.decrementAndGet();
+				exchange.close();
+			}
+		});
+		server.start();
+	}
+
+	String uploadUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/upload";
+	}
+
+	int requests() {
+		return requests.get();
+	}
+
+	int peakInFlight() {
+		return peakInFlight.get();
+	}
+
+	long bytesReceived() {
+		return bytesReceived.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+}
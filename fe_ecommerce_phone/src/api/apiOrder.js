@@ -24,12 +24,13 @@ const apiOrder = {
         }
     },
 
-    createOrder: async (orderRequest) => {
+    // Cùng một idempotencyKey cho các lần gửi lại (kể cả khi interceptor tự gửi lại sau refresh token) để không tạo đơn trùng
+    createOrder: async (orderRequest, idempotencyKey = crypto.randomUUID()) => {
         try {
             return await axiosInstance.post("/orders", {
                 ...orderRequest,
                 paymentMethod: orderRequest.paymentMethod ? orderRequest.paymentMethod.toUpperCase() : "COD"
-            }, { withCredentials: true }).then((res) => res.data);
+            }, { withCredentials: true, headers: { "Idempotency-Key": idempotencyKey } }).then((res) => res.data);
         } catch (error) {
             throw new Error(error.response?.data?.message || "Lỗi khi tạo đơn hàng");
         }
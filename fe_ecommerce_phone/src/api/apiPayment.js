@@ -2,10 +2,13 @@ import axiosInstance from "./axiosConfig";
 
 const apiPayment = {
     // Tạo thanh toán mới
-    createPayment: async (orderId, paymentMethod) => {
+    createPayment: async (orderId, paymentMethod, idempotencyKey = crypto.randomUUID()) => {
         try {
             const paymentData = { orderId, method: paymentMethod };
-            return await axiosInstance.post("/payments", paymentData, { withCredentials: true })
+            return await axiosInstance.post("/payments", paymentData, {
+                withCredentials: true,
+                headers: { "Idempotency-Key": idempotencyKey },
+            })
                 .then((res) => res.data);
         } catch (error) {
             throw new Error(error.response?.data?.message || "Lỗi khi tạo thanh toán");
@@ -28,6 +28,14 @@ const apiProduct = {
         return response.data;
     },
 
+    // Nhiều sản phẩm trong một request; trả về { products, missing } với missing là các id không còn tồn tại
+    getProductsByIds: async (ids) => {
+        const response = await axiosInstance.get("/products/batch", {
+            params: { ids: ids.join(",") }
+        });
+        return response.data;
+    },
+
     getFeaturedProducts: async (limit = 5) => {
         const response = await axiosInstance.get("/products/featured", {
             params: { limit }
@@ -89,6 +97,37 @@ const apiProduct = {
         return response.data;
     },
 
+    // Gợi ý tên sản phẩm khi gõ vào ô tìm kiếm
+    suggestProducts: async (q, limit = 8) => {
+        const response = await axiosInstance.get("/products/suggest", { params: { q, limit } });
+        return response.data;
+    },
+
+    // Tìm kiếm theo facet: kết quả kèm số lượng cho từng danh mục, nhà cung cấp, khoảng giá, còn hàng, nổi bật, giảm giá
+    searchProducts: async ({ searchKeyword = "", categoryId = [], supplierId = [], priceBucket = [], inStock = null,
+                             featured = null, hasDiscount = null, sortBy = "", page = 0, size = 12 } = {}) => {
+        const params = { searchKeyword, categoryId, supplierId, priceBucket, sortBy, page, size };
+        if (inStock !== null) params.inStock = inStock;
+        if (featured !== null) params.featured = featured;
+        if (hasDiscount !== null) params.hasDiscount = hasDiscount;
+        // Gửi mảng dạng categoryId=1&categoryId=2 để Spring nhận thành List
+        const response = await axiosInstance.get("/products/search", { params, paramsSerializer: { indexes: null } });
+        return response.data;
+    },
+
+    // Danh sách đầy đủ cho trang quản trị (giá vốn, danh mục, nhà cung cấp, tồn kho)
+    getAdminProducts: async ({ searchKeyword = "", minPrice = null, maxPrice = null, sortBy = "", page = 0, size = 10 } = {}) => {
+        const params = { searchKeyword, sortBy, page, size };
+        if (minPrice !== "" && minPrice !== null && !isNaN(minPrice)) {
+            params.minPrice = Number(minPrice);
+        }
+        if (maxPrice !== "" && maxPrice !== null && !isNaN(maxPrice)) {
+            params.maxPrice = Number(maxPrice);
+        }
+        const response = await axiosInstance.get("/products/admin", { params });
+        return response.data;
+    },
+
     createProduct: async (productData) => {
         const response = await axiosInstance.post("/products", productData);
         return response.data;
@@ -128,6 +167,24 @@ const apiProduct = {
         return response.data;
     },
 
+    // Nhập sản phẩm từ file .csv/.xlsx; kết quả gồm số dòng đã nhập và lỗi theo từng dòng
+    importProducts: async (file) => {
+        const formData = new FormData();
+        formData.append("file", file);
+        const response = await axiosInstance.post("/products/bulk/import", formData, {
+            headers: { "Content-Type": "multipart/form-data" }
+        });
+        return response.data;
+    },
+
+    exportProducts: async (format = "csv") => {
+        const response = await axiosInstance.get("/products/bulk/export", {
+            params: { format },
+            responseType: "blob"
+        });
+        return response.data;
+    },
+
     deleteProductImage: async (imageId) => {
         const response = await axiosInstance.delete(`/products/images/${imageId}`);
         return response.status === 204;
@@ -6,7 +6,7 @@ import "react-lazy-load-image-component/src/effects/blur.css";
 import { getAverageRating, getReviewCount } from "../../api/apiReview";
 
 function ProductCard({ product, isFeatured, handleAddToCart, handleBuyNow, formatPrice, showDiscount }) {
-    const imageUrl = product.images?.[0]?.imageUrl || "https://via.placeholder.com/200";
+    const imageUrl = product.imageUrl || product.images?.[0]?.imageUrl || "https://via.placeholder.com/200";
     const isDiscounted = product.discountedPrice && product.discountedPrice < product.sellingPrice;
     const discountPercentage = isDiscounted
         ? (((product.sellingPrice - product.discountedPrice) / product.sellingPrice) * 100).toFixed(0)
@@ -171,7 +171,7 @@ function ProductManagement() {
                 size: ITEMS_PER_PAGE,
             };
 
-            const res = await apiProduct.getFilteredProducts(cleanFilters);
+            const res = await apiProduct.getAdminProducts(cleanFilters);
             setProducts(res.content);
             setTotalPages(res.totalPages);
         } catch (error) {
@@ -127,7 +127,7 @@ function ProductGrid({ category, theme }) {
             name: product.name || "Sản phẩm không tên",
             price: product.discountedPrice ?? product.sellingPrice,
             originalPrice: product.sellingPrice,
-            images: product.images || [],
+            images: product.images || (product.imageUrl ? [{ imageUrl: product.imageUrl }] : []),
         });
     };
 
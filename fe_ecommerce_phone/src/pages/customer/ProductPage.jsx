@@ -123,7 +123,7 @@ function ProductPage() {
             name: product.name || "Sản phẩm không tên",
             price: product.discountedPrice || product.sellingPrice || 0,
             quantity: 1,
-            images: product.images || [],
+            images: product.images || (product.imageUrl ? [{ imageUrl: product.imageUrl }] : []),
         });
 
         const totalItems = cartItems.reduce((sum, item) => sum + item.quantity, 0);
@@ -71,7 +71,7 @@ const SearchPage = () => {
                 name: product.name || "Sản phẩm không tên",
                 price: finalPrice || 0,
                 originalPrice: product.sellingPrice || 0,
-                images: product.images || [],
+                images: product.images || (product.imageUrl ? [{ imageUrl: product.imageUrl }] : []),
             });
         }
 